@@ -1,35 +1,64 @@
 package ru.biosoft.access.core;
 
+import static ru.biosoft.access.core.DataCollectionConfigConstants.CACHE_MAXIMUM_ELEMENT_WEIGHT;
+import static ru.biosoft.access.core.DataCollectionConfigConstants.CACHE_MAXIMUM_SIZE;
+import static ru.biosoft.access.core.DataCollectionConfigConstants.CACHE_WEIGHT_CEILING;
+import static ru.biosoft.access.core.DataCollectionConfigConstants.CACHE_WEIGHT_FLOOR;
 import static ru.biosoft.access.core.DataCollectionConfigConstants.CACHING_STRATEGY;
 import static ru.biosoft.access.core.DataCollectionConfigConstants.CHILDREN_NODE_IMAGE;
 import static ru.biosoft.access.core.DataCollectionConfigConstants.CONFIG_PATH_PROPERTY;
 import static ru.biosoft.access.core.DataCollectionConfigConstants.DATA_COLLECTION_LISTENER;
 import static ru.biosoft.access.core.DataCollectionConfigConstants.DATA_ELEMENT_CLASS_PROPERTY;
+import static ru.biosoft.access.core.DataCollectionConfigConstants.ELEMENT_SIZE_PROPERTY;
+import static ru.biosoft.access.core.DataCollectionConfigConstants.EVENT_COALESCING_WINDOW;
+import static ru.biosoft.access.core.DataCollectionConfigConstants.EVENT_DISPATCH_ASYNC;
+import static ru.biosoft.access.core.DataCollectionConfigConstants.EVENT_QUEUE_CAPACITY;
+import static ru.biosoft.access.core.DataCollectionConfigConstants.EVENT_QUEUE_OVERFLOW;
 import static ru.biosoft.access.core.DataCollectionConfigConstants.FILE_PATH_PROPERTY;
 import static ru.biosoft.access.core.DataCollectionConfigConstants.IS_ROOT;
 import static ru.biosoft.access.core.DataCollectionConfigConstants.MUTABLE;
+import static ru.biosoft.access.core.DataCollectionConfigConstants.NAME_LIST_INDEXED;
 import static ru.biosoft.access.core.DataCollectionConfigConstants.NAME_PROPERTY;
+import static ru.biosoft.access.core.DataCollectionConfigConstants.NEGATIVE_CACHE_SIZE;
 import static ru.biosoft.access.core.DataCollectionConfigConstants.NODE_IMAGE;
+import static ru.biosoft.access.core.DataCollectionConfigConstants.PROPAGATION_COALESCING_WINDOW;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
 
 import javax.annotation.Nonnull;
-import javax.swing.event.EventListenerList;
 
 import com.developmentontheedge.beans.DynamicPropertySet;
 import com.developmentontheedge.beans.PropertiesDPS;
 
+import ru.biosoft.access.core.cache.BloomFilter;
+import ru.biosoft.access.core.cache.BoundedCache;
+import ru.biosoft.access.core.cache.CacheManager;
+import ru.biosoft.access.core.cache.CacheStats;
+import ru.biosoft.access.core.cache.CacheStatsCounter;
+import ru.biosoft.access.core.cache.WeightEstimators;
 import ru.biosoft.exception.ExceptionRegistry;
 import ru.biosoft.exception.InternalException;
 import ru.biosoft.exception.LoggedException;
@@ -160,6 +189,23 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
         if( mutableStr != null )
             mutable = Boolean.parseBoolean(mutableStr);
 
+        setEventCoalescingWindow(getLongProperty(properties, EVENT_COALESCING_WINDOW, 0));
+        setPropagationCoalescingWindow(getLongProperty(properties, PROPAGATION_COALESCING_WINDOW, 0));
+        asyncEventDispatch = Boolean.parseBoolean(properties.getProperty(EVENT_DISPATCH_ASYNC));
+        eventQueueCapacity = (int)getLongProperty(properties, EVENT_QUEUE_CAPACITY, EventDispatcher.DEFAULT_CAPACITY);
+        String overflowPolicy = properties.getProperty(EVENT_QUEUE_OVERFLOW);
+        if( overflowPolicy != null )
+        {
+            try
+            {
+                eventQueueOverflowPolicy = EventDispatcher.OverflowPolicy.valueOf(overflowPolicy.trim().toUpperCase());
+            }
+            catch( IllegalArgumentException e )
+            {
+                log.warning("Invalid " + EVENT_QUEUE_OVERFLOW + " '" + overflowPolicy + "' for '" + DataElementPath.create(this) + "'");
+            }
+        }
+
         // Make data collection info
         makeInfo(properties);
 
@@ -333,6 +379,10 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
     /**
      *
      * Returns <tt>true</tt> if this data collection contains the element with specified name.
+     * The element is not loaded if the answer is known from the cache, from the negative lookup structures
+     * (see {@link #isKnownMissing(String)}) or from the name index (see {@link #isNameListIndexed()}).
+     * Otherwise this implementation loads the element using {@link #get(String)}, so subclasses which can check
+     * the existence cheaper should override it.
      *
      * @param name name of element whose presence in this data collection is to be tested.
      * @return <tt>true</tt> if this data collection contains the element with specified name.
@@ -343,6 +393,12 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
     {
         if( !isValid() )
             return false;
+        if( v_cache != null && v_cache.get(name) != null )
+            return true;
+        if( isKnownMissing(name) )
+            return false;
+        if( isNameListIndexed() )
+            return getNameIndex().contains(name);
         boolean retFlag = false;
         try
         {
@@ -358,6 +414,8 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
     /**
      * Gets data element with specified name.
      * This implementation supports cache and for actual access use {@link #doGet(String)}.
+     * Concurrent requests of the same missing element are coalesced: only one thread calls {@link #doGet(String)},
+     * others wait for its result (or get the same {@link DataElementGetException}).
      * @param name Name of the data element (cannot be <b>null</b>).
      * @return DataElement or <B>null</B> if data element not found in the data collection.
      * @throws java.lang.Exception If error raised in {@link #doGet(String)}
@@ -373,32 +431,268 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
         T de = null;
         if( v_cache != null )
             de = v_cache.get(name);
-        if( de == null )
+        if( de != null )
+        {
+            cacheStats.recordHit();
+            return de;
+        }
+        cacheStats.recordMiss();
+        if( isKnownMissing(name) )
+            return null;
+        return load(name, () -> doGet(name));
+    }
+
+    /**
+     * Load of the element which is in progress. Completed with the loaded element or with {@link DataElementGetException}.
+     */
+    private static class ElementLoad<T> extends CompletableFuture<T>
+    {
+        private final Thread owner = Thread.currentThread();
+    }
+
+    /** Loads which are in progress by element name. */
+    private ConcurrentHashMap<String, ElementLoad<T>> loads = new ConcurrentHashMap<>();
+
+    /**
+     * Loads element using given loader and puts it into the cache.
+     * If the same element is already being loaded by another thread, waits for that load instead of starting new one.
+     * The loaded element is not cached if the element was changed or removed while it was being loaded.
+     *
+     * @param name name of the element
+     * @param loader function which actually creates the element (usually calls {@link #doGet(String)})
+     * @return loaded element or null if loader returned null
+     * @throws DataElementGetException if loader failed or returned element with different name
+     */
+    protected T load(String name, Callable<T> loader) throws DataElementGetException
+    {
+        ElementLoad<T> load = new ElementLoad<>();
+        ElementLoad<T> current = loads.putIfAbsent(name, load);
+        if( current != null )
+        {
+            // Reentrant request from the loader itself: waiting would never finish
+            if( current.owner == Thread.currentThread() )
+                return doLoad(name, loader);
+            return awaitLoad(name, current);
+        }
+        try
+        {
+            T de = doLoad(name, loader);
+            if( loads.get(name) == load )
+            {
+                if( de != null )
+                    cachePut(de);
+                else if( missingNames != null )
+                    missingNames.put(name, Boolean.TRUE);
+            }
+            load.complete(de);
+            return de;
+        }
+        catch( RuntimeException | Error e )
+        {
+            load.completeExceptionally(e);
+            throw e;
+        }
+        finally
+        {
+            loads.remove(name, load);
+        }
+    }
+
+    private T doLoad(String name, Callable<T> loader) throws DataElementGetException
+    {
+        T de;
+        long start = System.nanoTime();
+        try
+        {
+            de = loader.call();
+        }
+        catch(DataElementGetException e)
+        {
+            throw e;
+        }
+        catch(Throwable e)
+        {
+            throw new DataElementGetException(e, getCompletePath().getChildPath(name));
+        }
+        finally
+        {
+            cacheStats.recordLoad(System.nanoTime() - start);
+        }
+        // basic validation
+        if( de != null && !Objects.equals( de.getName(), name ) )
+            throw new DataElementGetException(
+                    new InternalException( "Name of created object is invalid: " + de.getName() + "', should be: '" + name + "'" ),
+                    getCompletePath().getChildPath( name ) );
+        return de;
+    }
+
+    private T awaitLoad(String name, ElementLoad<T> load) throws DataElementGetException
+    {
+        try
+        {
+            return load.get();
+        }
+        catch( ExecutionException e )
+        {
+            if( e.getCause() instanceof DataElementGetException )
+                throw (DataElementGetException)e.getCause();
+            throw new DataElementGetException(e.getCause(), getCompletePath().getChildPath(name));
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new DataElementGetException(e, getCompletePath().getChildPath(name));
+        }
+    }
+
+    /**
+     * Gets several elements at once. Cached elements are taken from the cache, the rest are loaded
+     * by single {@link #doGetAll(List)} call. Elements which are being loaded by other threads are awaited.
+     * @param names names of elements to get
+     * @return map from name to element in the order of requested names, missing elements are absent in the map
+     * @throws DataElementGetException if loading of some element failed
+     */
+    @Override
+    public Map<String, T> getAll(Collection<String> names) throws Exception
+    {
+        Map<String, T> result = new LinkedHashMap<>();
+        if( !isValid() )
+            return result;
+        Map<String, T> found = new HashMap<>();
+        Map<String, ElementLoad<T>> ownLoads = new LinkedHashMap<>();
+        Map<String, ElementLoad<T>> otherLoads = new HashMap<>();
+        for( String name : names )
+        {
+            T de = v_cache == null ? null : v_cache.get(name);
+            if( de != null )
+            {
+                cacheStats.recordHit();
+                found.put(name, de);
+                continue;
+            }
+            cacheStats.recordMiss();
+            if( found.containsKey(name) || ownLoads.containsKey(name) || otherLoads.containsKey(name) || isKnownMissing(name) )
+                continue;
+            ElementLoad<T> load = new ElementLoad<>();
+            ElementLoad<T> current = loads.putIfAbsent(name, load);
+            if( current == null )
+                ownLoads.put(name, load);
+            else if( current.owner == Thread.currentThread() )
+                found.put(name, doLoad(name, () -> doGet(name)));
+            else
+                otherLoads.put(name, current);
+        }
+        if( !ownLoads.isEmpty() )
+            found.putAll(loadAll(ownLoads));
+        for( Entry<String, ElementLoad<T>> entry : otherLoads.entrySet() )
+            found.put(entry.getKey(), awaitLoad(entry.getKey(), entry.getValue()));
+        for( String name : names )
+        {
+            T de = found.get(name);
+            if( de != null )
+                result.put(name, de);
+        }
+        return result;
+    }
+
+    private Map<String, T> loadAll(Map<String, ElementLoad<T>> ownLoads) throws DataElementGetException
+    {
+        List<String> names = new ArrayList<>(ownLoads.keySet());
+        try
         {
+            Map<String, T> loaded;
+            long start = System.nanoTime();
             try
             {
-                de = doGet(name);
+                loaded = doGetAll(names);
             }
-            catch(DataElementGetException e)
+            catch( DataElementGetException e )
             {
                 throw e;
             }
-            catch(Throwable e)
+            catch( Throwable e )
             {
-                throw new DataElementGetException(e, getCompletePath().getChildPath(name));
+                throw new DataElementGetException(e, getCompletePath());
             }
-            if( de != null )
+            finally
             {
+                cacheStats.recordLoads(names.size(), System.nanoTime() - start);
+            }
+            for( String name : names )
+            {
+                T de = loaded.get(name);
                 // basic validation
-                if(!Objects.equals( de.getName(), name ))
+                if( de != null && !Objects.equals( de.getName(), name ) )
                     throw new DataElementGetException(
                             new InternalException( "Name of created object is invalid: " + de.getName() + "', should be: '" + name + "'" ),
                             getCompletePath().getChildPath( name ) );
             }
-            if( de != null && v_cache != null )
-                cachePut(de);
+            for( Entry<String, ElementLoad<T>> entry : ownLoads.entrySet() )
+            {
+                String name = entry.getKey();
+                T de = loaded.get(name);
+                if( loads.get(name) == entry.getValue() )
+                {
+                    if( de != null )
+                        cachePut(de);
+                    else if( missingNames != null )
+                        missingNames.put(name, Boolean.TRUE);
+                }
+                entry.getValue().complete(de);
+            }
+            return loaded;
         }
-        return de;
+        catch( RuntimeException | Error e )
+        {
+            // the whole batch failed, so all elements of the batch are reported as failed
+            for( ElementLoad<T> load : ownLoads.values() )
+                load.completeExceptionally(e);
+            throw e;
+        }
+        finally
+        {
+            for( Entry<String, ElementLoad<T>> entry : ownLoads.entrySet() )
+                loads.remove(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Loads several elements. Default implementation calls {@link #doGet(String)} for every name,
+     * subclasses may override it to batch the storage access.
+     * @param names names of elements which are not cached
+     * @return map from name to element, elements which don't exist should be absent
+     * @throws Exception if some element cannot be loaded
+     */
+    protected Map<String, T> doGetAll(List<String> names) throws Exception
+    {
+        Map<String, T> result = new HashMap<>();
+        for( String name : names )
+        {
+            try
+            {
+                T de = doGet(name);
+                if( de != null )
+                    result.put(name, de);
+            }
+            catch( DataElementGetException e )
+            {
+                throw e;
+            }
+            catch( Throwable e )
+            {
+                throw new DataElementGetException(e, getCompletePath().getChildPath(name));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Prevents loads which are in progress from putting possibly outdated element into the cache.
+     * Should be called when element is changed or removed.
+     */
+    protected void invalidateLoad(String name)
+    {
+        loads.remove(name);
     }
 
     protected LazyValue<DataElementDescriptor> dataElementDescriptor = new LazyDescriptor<>(this);
@@ -448,7 +742,8 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
      * <code>{@link #doPut(DataElement,boolean)}</code> method is used to put the data element.
      * If the data collection previously contained the specified element,
      * the old value is replaced.<br>
-     * Note that this implementation slow enough!!!
+     * Note that this implementation loads the previous version of the element to return it,
+     * use {@link #putFast(DataElement)} if it's not necessary.
      * @param element Data element that will be put in the data collection (Cannot be <b>null</b>).
      * @return previous version of the data element, or null if there was no one.
      * @throws java.util.UnsupportedOperationException if the data collection is unmutable.
@@ -459,6 +754,27 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
      */
     @Override
     public T put(T element) throws DataElementPutException
+    {
+        return putElement(element, true);
+    }
+
+    /**
+     * Adds the specified data element to the collection like {@link #put(DataElement)}, but doesn't return
+     * the previous version of the element, so it's loaded only if some listener needs it.
+     */
+    @Override
+    public void putFast(T element) throws DataElementPutException
+    {
+        putElement(element, false);
+    }
+
+    /**
+     * Implementation of {@link #put(DataElement)} and {@link #putFast(DataElement)}. Subclasses which need
+     * to customize put should override this method, so both variants are affected.
+     * @param returnPrevious whether the previous version of the element should be returned
+     * @return previous version of the data element if requested, or null
+     */
+    protected T putElement(T element, boolean returnPrevious) throws DataElementPutException
     {
         if( !isValid() )
             return null;
@@ -472,34 +788,14 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
         {
             try
             {
-                if( contains(dataElementName) )
-                {
-                    try
-                    {
-                        prev = get(dataElementName);
-                    }
-                    catch(Throwable t)
-                    {
-                        // Cannot retrieve old element: ok, let's log it and try to continue anyways
-                        ExceptionRegistry.log(t);
-                    }
-                }
-                boolean isNew = prev == null;
+                boolean isNew = !contains(dataElementName);
                 doAddPreNotify(dataElementName, isNew);
 
-                DataElement oldElement = null;
-                if(!isNew)
-                {
-                    try
-                    {
-                        oldElement = doGet(dataElementName);
-                    }
-                    catch( Throwable t )
-                    {
-                        // Cannot retrieve old element: ok, let's log it and try to continue anyways
-                        new DataElementGetException(t, getCompletePath().getChildPath(dataElementName)).log();
-                    }
-                }
+                T oldElement = null;
+                if( !isNew && ( returnPrevious || isOldElementRequired() ) )
+                    oldElement = getOldElement(dataElementName, element);
+                if( returnPrevious )
+                    prev = oldElement;
                 try
                 {
                     doPut(element, isNew);
@@ -514,6 +810,8 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
                 {
                     throw new DataElementPutException(t, getCompletePath().getChildPath(dataElementName));
                 }
+                invalidateLoad(dataElementName);
+                nameAdded(dataElementName);
                 cachePut(element);
 
                 doAddPostNotify(dataElementName, isNew, oldElement);
@@ -573,6 +871,179 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
             fireElementAdded(this, dataElementName);
     }
 
+    /**
+     * Adds several data elements at once. Works like {@link #put(DataElement)} for every element,
+     * but the elements are stored by single {@link #doPutAll(List, Set)} call and listeners receive single
+     * {@link DataCollectionBatchEvent} instead of the event per element. Listeners still can veto adding of separate elements.
+     *
+     * @param elements elements to add, if several elements have the same name, the last one is added
+     * @throws DataElementPutException if put failed, {@link DataElementPartialPutException} if some elements were stored
+     * before the failure (listeners receive batch event for them)
+     */
+    @Override
+    public void putAll(Collection<? extends T> elements) throws DataElementPutException
+    {
+        if( !isValid() || elements.isEmpty() || !checkMutable() )
+            return;
+
+        Map<String, T> toPut = new LinkedHashMap<>();
+        for( T element : elements )
+        {
+            if( element == null )
+                continue;
+            validateName(element.getName());
+            toPut.put(element.getName(), element);
+        }
+
+        boolean oldElementRequired = isOldElementRequired();
+        List<T> accepted = new ArrayList<>();
+        Set<String> newNames = new HashSet<>();
+        Map<String, DataElement> oldElements = new HashMap<>();
+        for( T element : toPut.values() )
+        {
+            String dataElementName = element.getName();
+            boolean isNew = !contains(dataElementName);
+            try
+            {
+                doAddPreNotify(dataElementName, isNew);
+            }
+            catch( DataCollectionVetoException ex )
+            {
+                if( log.isLoggable(Level.FINE) )
+                    log.fine("Veto exception for <" + dataElementName + ">, is caught.");
+                continue;
+            }
+            catch( Throwable t )
+            {
+                throw new DataElementPutException(t, getCompletePath().getChildPath(dataElementName));
+            }
+            if( isNew )
+                newNames.add(dataElementName);
+            else if( oldElementRequired )
+            {
+                T oldElement = getOldElement(dataElementName, element);
+                if( oldElement != null )
+                    oldElements.put(dataElementName, oldElement);
+            }
+            accepted.add(element);
+        }
+        if( accepted.isEmpty() )
+            return;
+
+        try
+        {
+            doPutAll(accepted, newNames);
+        }
+        catch( Throwable t )
+        {
+            // some elements might be stored, so cached state cannot be trusted
+            for( T element : accepted )
+                removeFromCache(element.getName());
+            resetNameIndex();
+            if( t instanceof DataElementPartialPutException )
+            {
+                // listeners were notified before adding, so they must learn about elements which are in the collection now
+                Set<String> storedNames = new HashSet<>(( (DataElementPartialPutException)t ).getStoredNames());
+                List<T> stored = new ArrayList<>();
+                for( T element : accepted )
+                {
+                    if( storedNames.contains(element.getName()) )
+                        stored.add(element);
+                }
+                if( !stored.isEmpty() )
+                    firePutAll(stored, newNames, oldElements);
+            }
+            if( t instanceof DataElementPutException )
+                throw (DataElementPutException)t;
+            throw new DataElementPutException(t, getCompletePath());
+        }
+
+        firePutAll(accepted, newNames, oldElements);
+    }
+
+    private void firePutAll(List<T> stored, Set<String> newNames, Map<String, DataElement> oldElements)
+    {
+        List<String> added = new ArrayList<>();
+        List<String> changed = new ArrayList<>();
+        for( T element : stored )
+        {
+            String dataElementName = element.getName();
+            invalidateLoad(dataElementName);
+            cachePut(element);
+            ( newNames.contains(dataElementName) ? added : changed ).add(dataElementName);
+        }
+        fireElementsChanged(new DataCollectionBatchEvent(this, this, added, changed, Collections.emptyList(), oldElements, null));
+    }
+
+    /**
+     * Removes several data elements at once. Works like {@link #remove(String)} for every element,
+     * but the elements are removed by single {@link #doRemoveAll(List)} call and listeners receive single
+     * {@link DataCollectionBatchEvent} instead of the event per element. Listeners still can veto removing of separate elements.
+     *
+     * @param names names of elements to remove, names which are absent in the collection are ignored
+     * @exception Exception If any error.
+     */
+    @Override
+    public void removeAll(Collection<String> names) throws Exception
+    {
+        if( !isValid() || names.isEmpty() || !checkMutable() )
+            return;
+
+        boolean oldElementRequired = isOldElementRequired();
+        List<String> accepted = new ArrayList<>();
+        Map<String, DataElement> oldElements = new HashMap<>();
+        for( String name : new LinkedHashSet<>(names) )
+        {
+            if( name == null || !contains(name) )
+                continue;
+            try
+            {
+                doRemovePreNotify(name);
+            }
+            catch( DataCollectionVetoException ex )
+            {
+                log.info("Veto exception <" + name + ">, is caught.");
+                continue;
+            }
+            if( oldElementRequired )
+            {
+                try
+                {
+                    DataElement oldElement = get(name);
+                    if( oldElement != null )
+                        oldElements.put(name, oldElement);
+                }
+                catch( Exception e )
+                {
+                    log.log(Level.WARNING, "While removing "+DataElementPath.create(this, name)+": cannot get old element", e);
+                }
+            }
+            accepted.add(name);
+        }
+        if( accepted.isEmpty() )
+            return;
+
+        try
+        {
+            doRemoveAll(accepted);
+        }
+        catch( Throwable t )
+        {
+            // some elements might be removed, so cached state cannot be trusted
+            for( String name : accepted )
+                removeFromCache(name);
+            resetNameIndex();
+            throw t;
+        }
+        for( String name : accepted )
+        {
+            invalidateLoad(name);
+            if( v_cache != null )
+                v_cache.remove(name);
+        }
+        fireElementsChanged(new DataCollectionBatchEvent(this, this, Collections.emptyList(), Collections.emptyList(), accepted, oldElements, null));
+    }
+
     /**
      * Removes the specified data element from the collection, if present.
      * Notifies all listeners if the data element was removed.
@@ -603,15 +1074,20 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
             {
                 doRemovePreNotify(name);
                 DataElement oldElement = null;
-                try
+                if( isOldElementRequired() )
                 {
-                    oldElement = get(name);
-                }
-                catch( Exception e )
-                {
-                    log.log(Level.WARNING, "While removing "+DataElementPath.create(this, name)+": cannot get old element", e);
+                    try
+                    {
+                        oldElement = get(name);
+                    }
+                    catch( Exception e )
+                    {
+                        log.log(Level.WARNING, "While removing "+DataElementPath.create(this, name)+": cannot get old element", e);
+                    }
                 }
                 doRemove(name);
+                invalidateLoad(name);
+                nameRemoved(name);
                 if( v_cache != null )
                     v_cache.remove(name);
                 doRemovePostNotify(name, oldElement);
@@ -623,27 +1099,94 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
         }
     }
 
-    protected void doRemovePreNotify(String name) throws Exception, DataCollectionVetoException
-    {
-        fireElementWillRemove(this, name);
-    }
-
-    protected void doRemovePostNotify(String name, DataElement oldElement) throws Exception, DataCollectionVetoException
+    /**
+     * Loads the version of the element which is going to be replaced by put.
+     * The cached element is used unless it's the same object which is put (then it's already modified),
+     * otherwise the element is loaded from the storage.
+     */
+    private T getOldElement(String name, T element)
     {
-        fireElementRemoved(this, name, oldElement);
+        T cached = v_cache == null ? null : v_cache.get(name);
+        if( cached != null && cached != element )
+            return cached;
+        try
+        {
+            return doGet(name);
+        }
+        catch( Throwable t )
+        {
+            // Cannot retrieve old element: ok, let's log it and try to continue anyways
+            new DataElementGetException(t, getCompletePath().getChildPath(name)).log();
+            return null;
+        }
     }
 
-    ////////////////////////////////////////
-    // Listener issues
-    //
     /**
-     * Adds listener to this data collection.
-     * @param listener Listener of this data collection.
+     * Checks whether the previous version of changed or removed element should be loaded to be passed in the events.
+     * It's required if some listener of this collection wants it (see {@link DataCollectionListener#needsOldElement()})
+     * or if the event is propagated to the ancestor which requires it.
      */
-    @Override
-    public void addDataCollectionListener(DataCollectionListener listener)
+    protected boolean isOldElementRequired()
     {
-        listenerList.add(DataCollectionListener.class, listener);
+        if( !notificationEnabled )
+            return false;
+        ListenerRegistry.Registration[] registrations = listenerRegistry.getRegistrations();
+        for( int i = registrations.length - 1; i >= 0; i-- )
+        {
+            DataCollectionListener listener = registrations[i].getListener();
+            if( listener != null && listener.needsOldElement() )
+                return true;
+        }
+        DataCollection<?> origin = getOrigin();
+        if( origin != null && origin.isPropagationEnabled() )
+            return !( origin instanceof AbstractDataCollection ) || ( (AbstractDataCollection<?>)origin ).isOldElementRequired();
+        return false;
+    }
+
+    protected void doRemovePreNotify(String name) throws Exception, DataCollectionVetoException
+    {
+        fireElementWillRemove(this, name);
+    }
+
+    protected void doRemovePostNotify(String name, DataElement oldElement) throws Exception, DataCollectionVetoException
+    {
+        fireElementRemoved(this, name, oldElement);
+    }
+
+    ////////////////////////////////////////
+    // Listener issues
+    //
+    /**
+     * Adds listener to this data collection.
+     * @param listener Listener of this data collection.
+     */
+    @Override
+    public void addDataCollectionListener(DataCollectionListener listener)
+    {
+        listenerRegistry.add(listener);
+    }
+
+    /**
+     * Adds listener which is notified only about events matching the subscription.
+     * @param listener Listener of this data collection.
+     * @param subscription kinds and names of the events the listener is interested in
+     */
+    @Override
+    public void addDataCollectionListener(DataCollectionListener listener, ListenerSubscription subscription)
+    {
+        listenerRegistry.add(listener, subscription);
+    }
+
+    /**
+     * Adds listener without keeping strong reference to it. Registration is purged automatically
+     * after the listener is garbage collected, so abandoned views don't need to be closed.
+     * @param listener Listener of this data collection.
+     * @param subscription kinds and names of the events the listener is interested in
+     */
+    @Override
+    public void addWeakDataCollectionListener(DataCollectionListener listener, ListenerSubscription subscription)
+    {
+        listenerRegistry.addWeak(listener, subscription);
     }
 
     /**
@@ -653,7 +1196,7 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
     @Override
     public void removeDataCollectionListener(DataCollectionListener listener)
     {
-        listenerList.remove(DataCollectionListener.class, listener);
+        listenerRegistry.remove(listener);
     }
 
     ////////////////////////////////////////////////////////////////////////////
@@ -729,9 +1272,13 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
             {
                 try
                 {
+                    // titles are resolved once, the index is not queried on every comparison
+                    Map<String, String> titles = new HashMap<>();
+                    for( String name : list )
+                        titles.put(name, titleIndex.get(name));
                     Collections.sort(list, (o1, o2) -> {
-                        String title1 = titleIndex.get(o1);
-                        String title2 = titleIndex.get(o2);
+                        String title1 = titles.get(o1);
+                        String title2 = titles.get(o2);
                         if( title1 != null && title2 != null )
                         {
                             if( title1.length() > 0 && title2.length() > 0 )
@@ -862,31 +1409,18 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
      */
     protected void fireElementAdded(Object source, String dataElementName)
     {
+        nameAdded(dataElementName);
         if( !notificationEnabled )
             return;
+        if( coalesce(DataCollectionEvent.ELEMENT_ADDED, this, dataElementName, null, null) )
+            return;
 
-        Object[] listeners = listenerList.getListenerList();
+        DataCollection<?> origin = getPropagationTarget();
+        if( origin == null && !listenerRegistry.isSubscribed(DataCollectionEvent.ELEMENT_ADDED) )
+            return;
         DataCollectionEvent e = new DataCollectionEvent(source, DataCollectionEvent.ELEMENT_ADDED, this, dataElementName, null);
-
-        for( int i = listeners.length - 2; i >= 0; i -= 2 )
-        {
-            if( listeners[i] == DataCollectionListener.class )
-            {
-                try
-                {
-                    ( (DataCollectionListener)listeners[i + 1] ).elementAdded(e);
-                }
-                catch( Throwable t )
-                {
-                    log.severe("Error during elementAdded notificaton: "+ExceptionRegistry.log(t));
-                }
-            }
-        }
-        DataCollection<?> origin = getOrigin();
-        if( origin != null && origin.isPropagationEnabled() && !CollectionFactory.isDataElementCreating( getCompletePath().toString() ) )
-        {
-            origin.propagateElementChanged(this, e);
-        }
+        notifyListeners("elementAdded", e, DataCollectionListener::elementAdded);
+        propagateToOrigin(origin, e);
     }
 
     /**
@@ -901,32 +1435,32 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
     protected void fireElementWillChange(Object source, DataCollection<?> owner, String dataElementName, DataCollectionEvent primaryEvent)
             throws DataCollectionVetoException, Exception
     {
-        if( !notificationEnabled )
+        DataCollection<?> origin = getOrigin();
+        // nobody to notify: don't even create the event
+        if( !notificationEnabled || ( origin == null && !listenerRegistry.isSubscribed(DataCollectionEvent.ELEMENT_WILL_CHANGE) ) )
             return;
 
-        Object[] listeners = listenerList.getListenerList();
         DataCollectionEvent e = new DataCollectionEvent(source, DataCollectionEvent.ELEMENT_WILL_CHANGE, owner, dataElementName,
                 primaryEvent);
-        for( int i = listeners.length - 2; i >= 0; i -= 2 )
+        ListenerRegistry.Registration[] registrations = listenerRegistry.getRegistrations();
+        for( int i = registrations.length - 1; i >= 0; i-- )
         {
-            if( listeners[i] == DataCollectionListener.class )
+            DataCollectionListener listener = registrations[i].getListener();
+            if( listener == null || !registrations[i].accepts(e.getType(), dataElementName) )
+                continue;
+            try
             {
-                try
-                {
-                    ( (DataCollectionListener)listeners[i + 1] ).elementWillChange(e);
-                }
-                catch( DataCollectionVetoException ve )
-                {
-                    throw ve;
-                }
-                catch( Throwable t )
-                {
-                    log.severe("Error during elementWillChange notificaton: "+ExceptionRegistry.log(t));
-                }
+                listener.elementWillChange(e);
+            }
+            catch( DataCollectionVetoException ve )
+            {
+                throw ve;
+            }
+            catch( Throwable t )
+            {
+                log.severe("Error during elementWillChange notificaton: "+ExceptionRegistry.log(t));
             }
         }
-
-        DataCollection<?> origin = getOrigin();
         if( origin != null )
         {
             origin.propagateElementWillChange(this, e);
@@ -942,30 +1476,31 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
      */
     protected void fireElementWillAdd(Object source, String dataElementName) throws DataCollectionVetoException, Exception
     {
-        if( !notificationEnabled )
+        DataCollection<?> origin = getOrigin();
+        // nobody to notify: don't even create the event
+        if( !notificationEnabled || ( origin == null && !listenerRegistry.isSubscribed(DataCollectionEvent.ELEMENT_WILL_ADD) ) )
             return;
 
-        Object[] listeners = listenerList.getListenerList();
         DataCollectionEvent e = new DataCollectionEvent(source, DataCollectionEvent.ELEMENT_WILL_ADD, this, dataElementName, null);
-        for( int i = listeners.length - 2; i >= 0; i -= 2 )
+        ListenerRegistry.Registration[] registrations = listenerRegistry.getRegistrations();
+        for( int i = registrations.length - 1; i >= 0; i-- )
         {
-            if( listeners[i] == DataCollectionListener.class )
+            DataCollectionListener listener = registrations[i].getListener();
+            if( listener == null || !registrations[i].accepts(e.getType(), dataElementName) )
+                continue;
+            try
             {
-                try
-                {
-                    ( (DataCollectionListener)listeners[i + 1] ).elementWillAdd(e);
-                }
-                catch( DataCollectionVetoException ve )
-                {
-                    throw ve;
-                }
-                catch( Throwable t )
-                {
-                    log.severe("Error during elementWillAdd notificaton: "+ExceptionRegistry.log(t));
-                }
+                listener.elementWillAdd(e);
+            }
+            catch( DataCollectionVetoException ve )
+            {
+                throw ve;
+            }
+            catch( Throwable t )
+            {
+                log.severe("Error during elementWillAdd notificaton: "+ExceptionRegistry.log(t));
             }
         }
-        DataCollection<?> origin = getOrigin();
         if( origin != null )
         {
             origin.propagateElementWillChange(this, e);
@@ -981,30 +1516,31 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
      */
     protected void fireElementWillRemove(Object source, String dataElementName) throws DataCollectionVetoException, Exception
     {
-        if( !notificationEnabled )
+        DataCollection<?> origin = getOrigin();
+        // nobody to notify: don't even create the event
+        if( !notificationEnabled || ( origin == null && !listenerRegistry.isSubscribed(DataCollectionEvent.ELEMENT_WILL_REMOVE) ) )
             return;
 
-        Object[] listeners = listenerList.getListenerList();
         DataCollectionEvent e = new DataCollectionEvent(source, DataCollectionEvent.ELEMENT_WILL_REMOVE, this, dataElementName, null);
-        for( int i = listeners.length - 2; i >= 0; i -= 2 )
+        ListenerRegistry.Registration[] registrations = listenerRegistry.getRegistrations();
+        for( int i = registrations.length - 1; i >= 0; i-- )
         {
-            if( listeners[i] == DataCollectionListener.class )
+            DataCollectionListener listener = registrations[i].getListener();
+            if( listener == null || !registrations[i].accepts(e.getType(), dataElementName) )
+                continue;
+            try
             {
-                try
-                {
-                    ( (DataCollectionListener)listeners[i + 1] ).elementWillRemove(e);
-                }
-                catch( DataCollectionVetoException ve )
-                {
-                    throw ve;
-                }
-                catch( Throwable t )
-                {
-                    log.severe("Error during elementWillRemove notificaton: "+ExceptionRegistry.log(t));
-                }
+                listener.elementWillRemove(e);
+            }
+            catch( DataCollectionVetoException ve )
+            {
+                throw ve;
+            }
+            catch( Throwable t )
+            {
+                log.severe("Error during elementWillRemove notificaton: "+ExceptionRegistry.log(t));
             }
         }
-        DataCollection<?> origin = getOrigin();
         if( origin != null )
         {
             origin.propagateElementWillChange(this, e);
@@ -1023,31 +1559,19 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
     protected void fireElementChanged(Object source, DataCollection<?> owner, String dataElementName, DataElement oldElement,
             DataCollectionEvent primaryEvent)
     {
+        nameAdded(dataElementName);
         if( !notificationEnabled )
             return;
+        if( coalesce(DataCollectionEvent.ELEMENT_CHANGED, owner, dataElementName, oldElement, primaryEvent) )
+            return;
 
-        Object[] listeners = listenerList.getListenerList();
+        DataCollection<?> origin = getPropagationTarget();
+        if( origin == null && !listenerRegistry.isSubscribed(DataCollectionEvent.ELEMENT_CHANGED) )
+            return;
         DataCollectionEvent e = new DataCollectionEvent(source, DataCollectionEvent.ELEMENT_CHANGED, owner, dataElementName, oldElement,
                 primaryEvent);
-        for( int i = listeners.length - 2; i >= 0; i -= 2 )
-        {
-            if( listeners[i] == DataCollectionListener.class )
-            {
-                try
-                {
-                    ( (DataCollectionListener)listeners[i + 1] ).elementChanged(e);
-                }
-                catch( Throwable t )
-                {
-                    log.severe("Error during elementChanged notificaton: "+ExceptionRegistry.log(t));
-                }
-            }
-        }
-        DataCollection<?> origin = getOrigin();
-        if( origin != null  && origin.isPropagationEnabled() && !CollectionFactory.isDataElementCreating( getCompletePath().toString() ))
-        {
-            origin.propagateElementChanged(this, e);
-        }
+        notifyListeners("elementChanged", e, DataCollectionListener::elementChanged);
+        propagateToOrigin(origin, e);
     }
 
     /**
@@ -1061,31 +1585,243 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
      */
     protected void fireElementRemoved(Object source, String dataElementName, DataElement oldElement)
     {
+        nameRemoved(dataElementName);
         if( !notificationEnabled )
             return;
+        if( coalesce(DataCollectionEvent.ELEMENT_REMOVED, this, dataElementName, oldElement, null) )
+            return;
 
-        Object[] listeners = listenerList.getListenerList();
+        DataCollection<?> origin = getPropagationTarget();
+        if( origin == null && !listenerRegistry.isSubscribed(DataCollectionEvent.ELEMENT_REMOVED) )
+            return;
         DataCollectionEvent e = new DataCollectionEvent(source, DataCollectionEvent.ELEMENT_REMOVED, this, dataElementName, oldElement,
                 null);
-        for( int i = listeners.length - 2; i >= 0; i -= 2 )
+        notifyListeners("elementRemoved", e, DataCollectionListener::elementRemoved);
+        propagateToOrigin(origin, e);
+    }
+
+    /**
+     * Calls {@link DataCollectionListener#elementsChanged(DataCollectionBatchEvent)} for all listeners.
+     * The batch is propagated to the ancestors as single change of this collection.
+     *
+     * @param e event describing all affected elements
+     */
+    protected void fireElementsChanged(DataCollectionBatchEvent e)
+    {
+        for( String name : e.getAddedNames() )
+            nameAdded(name);
+        for( String name : e.getChangedNames() )
+            nameAdded(name);
+        for( String name : e.getRemovedNames() )
+            nameRemoved(name);
+        if( !notificationEnabled || e.size() == 0 )
+            return;
+        EventCoalescer coalescer = eventCoalescer;
+        if( coalescer != null )
         {
-            if( listeners[i] == DataCollectionListener.class )
+            if( e.getOwner() == this && e.getPrimaryEvent() == null )
             {
-                try
-                {
-                    ( (DataCollectionListener)listeners[i + 1] ).elementRemoved(e);
-                }
-                catch( Throwable t )
-                {
-                    log.severe("Error during elementRemoved notificaton: "+ExceptionRegistry.log(t));
-                }
+                coalescer.addAll(e);
+                return;
             }
+            coalescer.flush();
         }
-        DataCollection<?> origin = getOrigin();
-        if( origin != null  && origin.isPropagationEnabled() && !CollectionFactory.isDataElementCreating( getCompletePath().toString() ))
+        dispatchElementsChanged(e);
+    }
+
+    void dispatchElementsChanged(DataCollectionBatchEvent e)
+    {
+        if( !notificationEnabled )
+            return;
+
+        notifyListeners("elementsChanged", e, DataCollectionListener::elementsChanged);
+        propagateToOrigin(getPropagationTarget(), e);
+    }
+
+    /**
+     * Calls the method of all listeners subscribed to the event. Listeners are notified in the separate thread
+     * if asynchronous dispatch is enabled for the collection or requested by the listener.
+     * Batch event is narrowed to the elements matching the listener subscription.
+     */
+    @SuppressWarnings ( "unchecked" )
+    private <E extends DataCollectionEvent> void notifyListeners(String method, E e, ListenerCall<E> call)
+    {
+        listenerRegistry.purge();
+        ListenerRegistry.Registration[] registrations = listenerRegistry.getRegistrations();
+        for( int i = registrations.length - 1; i >= 0; i-- )
+        {
+            DataCollectionListener listener = registrations[i].getListener();
+            if( listener == null )
+                continue;
+            E event = (E)registrations[i].select(e);
+            if( event == null )
+                continue;
+            if( asyncEventDispatch || listener.isAsynchronous() )
+                getEventDispatcher().execute(() -> notifyListener(listener, method, event, call));
+            else
+                notifyListener(listener, method, event, call);
+        }
+    }
+
+    private <E extends DataCollectionEvent> void notifyListener(DataCollectionListener listener, String method, E e, ListenerCall<E> call)
+    {
+        try
+        {
+            call.notify(listener, e);
+        }
+        catch( Throwable t )
         {
+            log.severe("Error during " + method + " notificaton: "+ExceptionRegistry.log(t));
+        }
+    }
+
+    @FunctionalInterface
+    private interface ListenerCall<E extends DataCollectionEvent>
+    {
+        void notify(DataCollectionListener listener, E e) throws Exception;
+    }
+
+    /**
+     * @return origin to which changes of this collection should be propagated or null if they should not
+     */
+    private DataCollection<?> getPropagationTarget()
+    {
+        DataCollection<?> origin = getOrigin();
+        if( origin != null && origin.isPropagationEnabled() && !CollectionFactory.isDataElementCreating( getCompletePath().toString() ) )
+            return origin;
+        return null;
+    }
+
+    private void propagateToOrigin(DataCollection<?> origin, DataCollectionEvent e)
+    {
+        if( origin == null )
+            return;
+        if( asyncEventDispatch )
+            getEventDispatcher().execute(() -> origin.propagateElementChanged(this, e));
+        else
             origin.propagateElementChanged(this, e);
+    }
+
+    private volatile boolean asyncEventDispatch;
+    private volatile EventDispatcher eventDispatcher;
+    private int eventQueueCapacity = EventDispatcher.DEFAULT_CAPACITY;
+    private EventDispatcher.OverflowPolicy eventQueueOverflowPolicy = EventDispatcher.OverflowPolicy.BLOCK;
+
+    /**
+     * Enables asynchronous dispatch of {@link DataCollectionListener#elementAdded(DataCollectionEvent)},
+     * {@link DataCollectionListener#elementChanged(DataCollectionEvent)}, {@link DataCollectionListener#elementRemoved(DataCollectionEvent)}
+     * and batch events of this collection, including their propagation to the ancestors.
+     * Events are dispatched in order by {@link EventDispatcher}. "Will" events are always synchronous, as they can veto the change.
+     * Separate listeners can request asynchronous dispatch by {@link DataCollectionListener#isAsynchronous()}.
+     *
+     * @see DataCollectionConfigConstants#EVENT_DISPATCH_ASYNC
+     */
+    public void setAsyncEventDispatch(boolean async)
+    {
+        asyncEventDispatch = async;
+    }
+
+    public boolean isAsyncEventDispatch()
+    {
+        return asyncEventDispatch;
+    }
+
+    /**
+     * Sets parameters of the queue used for asynchronous dispatch. Should be called before the first event is dispatched.
+     * @param capacity maximal number of waiting notifications
+     * @param overflowPolicy what to do when the queue is full
+     */
+    public void setEventQueue(int capacity, EventDispatcher.OverflowPolicy overflowPolicy)
+    {
+        eventQueueCapacity = capacity;
+        eventQueueOverflowPolicy = overflowPolicy;
+    }
+
+    protected EventDispatcher getEventDispatcher()
+    {
+        EventDispatcher dispatcher = eventDispatcher;
+        if( dispatcher == null )
+        {
+            synchronized( listenerRegistry )
+            {
+                dispatcher = eventDispatcher;
+                if( dispatcher == null )
+                    eventDispatcher = dispatcher = new EventDispatcher(getCompletePath().toString(), eventQueueCapacity,
+                            eventQueueOverflowPolicy);
+            }
+        }
+        return dispatcher;
+    }
+
+    private volatile EventCoalescer eventCoalescer;
+
+    /**
+     * Sets the time during which element events are accumulated. Accumulated events are merged
+     * and dispatched as single {@link DataCollectionBatchEvent} by the {@link EventDispatcher} of this collection.
+     * "Will" events are not delayed, as they can veto the change.
+     *
+     * @param window time in milliseconds, 0 to dispatch events immediately
+     * @see DataCollectionConfigConstants#EVENT_COALESCING_WINDOW
+     */
+    public void setEventCoalescingWindow(long window)
+    {
+        EventCoalescer previous = eventCoalescer;
+        eventCoalescer = window > 0 ? new EventCoalescer(this, window) : null;
+        if( previous != null )
+            previous.flush();
+    }
+
+    public long getEventCoalescingWindow()
+    {
+        EventCoalescer coalescer = eventCoalescer;
+        return coalescer == null ? 0 : coalescer.getWindow();
+    }
+
+    /**
+     * Dispatches events accumulated during the coalescing window immediately
+     * and waits until asynchronously dispatched events are delivered.
+     */
+    @Override
+    public void flushEvents()
+    {
+        PropagationCoalescer propagation = propagationCoalescer;
+        if( propagation != null )
+            propagation.flush();
+        EventCoalescer coalescer = eventCoalescer;
+        if( coalescer != null )
+            coalescer.flush();
+        EventDispatcher dispatcher = eventDispatcher;
+        if( dispatcher != null )
+        {
+            try
+            {
+                dispatcher.awaitIdle();
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Delays the event if coalescing is enabled. Events about the elements of other collections propagated to this one
+     * are not delayed, but accumulated events are dispatched before them to keep the order.
+     * @return true if the event was delayed
+     */
+    private boolean coalesce(int type, DataCollection<?> owner, String dataElementName, DataElement oldElement,
+            DataCollectionEvent primaryEvent)
+    {
+        EventCoalescer coalescer = eventCoalescer;
+        if( coalescer == null )
+            return false;
+        if( owner != this || primaryEvent != null )
+        {
+            coalescer.flush();
+            return false;
         }
+        coalescer.add(type, dataElementName, oldElement);
+        return true;
     }
 
     ////////////////////////////////////////////////////////////////////////////
@@ -1132,7 +1868,35 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
         try
         {
             if( source.getOrigin().isPropagationEnabled() )
+            {
+                if( source.getOrigin() == this )
+                {
+                    if( PropagationTransaction.defer(this, source.getName(), primaryEvent) )
+                        return;
+                    PropagationCoalescer coalescer = propagationCoalescer;
+                    if( coalescer != null )
+                    {
+                        coalescer.add(source.getName(), primaryEvent);
+                        return;
+                    }
+                }
                 fireElementChanged(this, source.getOrigin(), source.getName(), null, primaryEvent);
+            }
+        }
+        catch( Exception e )
+        {
+            log.severe("Error during firing element changed: "+ExceptionRegistry.log(e));
+        }
+    }
+
+    /**
+     * Fires change of the child collection which was deferred by {@link PropagationTransaction} or {@link PropagationCoalescer}.
+     */
+    void firePropagatedChange(String childName, DataCollectionEvent primaryEvent)
+    {
+        try
+        {
+            fireElementChanged(this, this, childName, null, primaryEvent);
         }
         catch( Exception e )
         {
@@ -1140,6 +1904,30 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
         }
     }
 
+    private volatile PropagationCoalescer propagationCoalescer;
+
+    /**
+     * Sets the time during which changes propagated from the descendants are accumulated. Then single change event
+     * is fired per changed child collection, so deep hierarchies don't get the chain of events for every changed leaf element.
+     * Changes can also be deferred explicitly by {@link PropagationTransaction}.
+     *
+     * @param window time in milliseconds, 0 to propagate changes immediately
+     * @see DataCollectionConfigConstants#PROPAGATION_COALESCING_WINDOW
+     */
+    public void setPropagationCoalescingWindow(long window)
+    {
+        PropagationCoalescer previous = propagationCoalescer;
+        propagationCoalescer = window > 0 ? new PropagationCoalescer(this, window) : null;
+        if( previous != null )
+            previous.flush();
+    }
+
+    public long getPropagationCoalescingWindow()
+    {
+        PropagationCoalescer coalescer = propagationCoalescer;
+        return coalescer == null ? 0 : coalescer.getWindow();
+    }
+
     /**
      * Check whether the data collection is mutable.
      * @throws UnsupportedOperationException if collection is immutable.
@@ -1192,6 +1980,49 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Puts several data elements into the collection. Default implementation calls {@link #doPut(DataElement, boolean)}
+     * for every element, subclasses may override it to store elements at once.
+     *
+     * @param elements elements to put, names are unique
+     * @param newNames names of elements which are absent in the collection
+     * @throws DataElementPartialPutException if storing failed after some elements were stored
+     * @see #putAll(Collection)
+     */
+    protected void doPutAll(List<T> elements, Set<String> newNames) throws Exception
+    {
+        List<String> stored = new ArrayList<>();
+        for( T element : elements )
+        {
+            try
+            {
+                doPut(element, newNames.contains(element.getName()));
+            }
+            catch( Throwable t )
+            {
+                if( !stored.isEmpty() )
+                    throw new DataElementPartialPutException(t, getCompletePath().getChildPath(element.getName()), stored);
+                if( t instanceof DataElementPutException )
+                    throw (DataElementPutException)t;
+                throw new DataElementPutException(t, getCompletePath().getChildPath(element.getName()));
+            }
+            stored.add(element.getName());
+        }
+    }
+
+    /**
+     * Removes several data elements from the collection. Default implementation calls {@link #doRemove(String)}
+     * for every element, subclasses may override it to remove elements at once.
+     *
+     * @param names names of existing elements to remove
+     * @see #removeAll(Collection)
+     */
+    protected void doRemoveAll(List<String> names) throws Exception
+    {
+        for( String name : names )
+            doRemove(name);
+    }
+
     ////////////////////////////////////////////////////////////////////////////
     // Cache issues
     //
@@ -1199,11 +2030,24 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
     /** Cache for already accessed data elements.*/
     protected Map<String, T> v_cache;
 
+    /** Default maximal number of cached elements for <code>bounded</code> caching strategy. */
+    public static final int DEFAULT_CACHE_MAXIMUM_SIZE = 1000;
+
     private void initCache(Properties properties)
     {
         String cachingStrategy = properties.getProperty( CACHING_STRATEGY, "soft" );
 
-        if(cachingStrategy.equals( "weak" ))
+        if(cachingStrategy.equals( "bounded" ))
+        {
+            BoundedCache<String, T> cache = new BoundedCache<>( getLongProperty( properties, CACHE_MAXIMUM_SIZE, DEFAULT_CACHE_MAXIMUM_SIZE ) );
+            cache.setEvictionListener( (name, de) -> cacheStats.recordEviction() );
+            cache.setWeigher( this::estimateWeight );
+            cache.setMaximumEntryWeight( getLongProperty( properties, CACHE_MAXIMUM_ELEMENT_WEIGHT, Long.MAX_VALUE ) );
+            cache.setMaximumWeight( getLongProperty( properties, CACHE_WEIGHT_CEILING, Long.MAX_VALUE ) );
+            cache.register( CacheManager.getInstance(), getLongProperty( properties, CACHE_WEIGHT_FLOOR, 0 ) );
+            v_cache = cache;
+        }
+        else if(cachingStrategy.equals( "weak" ))
             v_cache = new HashMapWeakValues();
         else if(cachingStrategy.equals( "soft" ))
             v_cache = new HashMapSoftValues();
@@ -1216,6 +2060,178 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
             log.warning( "Unknown caching-strategy '" + cachingStrategy + "' for '" + DataElementPath.create( this ) + "'" );
             v_cache = new HashMapWeakValues();
         }
+
+        long negativeCacheSize = getLongProperty( properties, NEGATIVE_CACHE_SIZE, 0 );
+        if( negativeCacheSize > 0 )
+            missingNames = new BoundedCache<>( negativeCacheSize );
+        nameListIndexed = Boolean.parseBoolean( properties.getProperty( NAME_LIST_INDEXED ) );
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Negative lookups
+    //
+
+    /** Names of elements which were not found, null if negative caching is disabled. */
+    private BoundedCache<String, Boolean> missingNames;
+    private boolean nameListIndexed;
+    private AtomicReference<BloomFilter> nameFilter = new AtomicReference<>();
+    private AtomicReference<Set<String>> nameIndex = new AtomicReference<>();
+    private AtomicLong nameIndexVersion = new AtomicLong();
+
+    /**
+     * Returns true if {@link #getNameList()} is cheap and contains all elements of the collection.
+     * In this case requests of missing elements are rejected by the Bloom filter built from the name list.
+     * Default implementation returns value of {@link DataCollectionConfigConstants#NAME_LIST_INDEXED} property.
+     */
+    protected boolean isNameListIndexed()
+    {
+        return nameListIndexed;
+    }
+
+    /**
+     * Checks whether the element is surely missing without accessing the storage.
+     * Subclasses which know their name set can override it to give the exact answer.
+     * @return true if the element with given name surely does not exist
+     */
+    protected boolean isKnownMissing(String name)
+    {
+        if( missingNames != null && missingNames.containsKey(name) )
+            return true;
+        if( !isNameListIndexed() )
+            return false;
+        BloomFilter filter = nameFilter.get();
+        if( filter == null )
+        {
+            long version = nameIndexVersion.get();
+            filter = BloomFilter.of(getNameList());
+            nameFilter.set(filter);
+            // names added while the filter was built may be absent in it
+            if( nameIndexVersion.get() != version )
+            {
+                nameFilter.compareAndSet(filter, null);
+                return false;
+            }
+        }
+        return !filter.mightContain(name);
+    }
+
+    /**
+     * Returns exact set of element names which is built from {@link #getNameList()} and then
+     * maintained by element added and removed events. Used only if {@link #isNameListIndexed()}.
+     */
+    private Set<String> getNameIndex()
+    {
+        Set<String> index = nameIndex.get();
+        if( index == null )
+        {
+            long version = nameIndexVersion.get();
+            index = ConcurrentHashMap.newKeySet();
+            index.addAll(getNameList());
+            nameIndex.set(index);
+            // names added or removed while the index was built may be missed
+            if( nameIndexVersion.get() != version )
+                nameIndex.compareAndSet(index, null);
+        }
+        return index;
+    }
+
+    /**
+     * Updates name index and negative lookup structures when element appears in the collection.
+     */
+    protected void nameAdded(String name)
+    {
+        nameIndexVersion.incrementAndGet();
+        Set<String> index = nameIndex.get();
+        if( index != null )
+            index.add(name);
+        if( missingNames != null )
+            missingNames.remove(name);
+        BloomFilter filter = nameFilter.get();
+        if( filter != null )
+        {
+            filter.add(name);
+            if( filter.isSaturated() )
+                nameFilter.compareAndSet(filter, null);
+        }
+    }
+
+    /**
+     * Updates name index when element is removed from the collection.
+     */
+    protected void nameRemoved(String name)
+    {
+        nameIndexVersion.incrementAndGet();
+        Set<String> index = nameIndex.get();
+        if( index != null )
+            index.remove(name);
+    }
+
+    /**
+     * Drops name index and negative lookup structures. Should be called when the name set of the collection is changed
+     * without firing element added or removed events.
+     */
+    protected void resetNameIndex()
+    {
+        nameIndexVersion.incrementAndGet();
+        nameFilter.set(null);
+        nameIndex.set(null);
+        if( missingNames != null )
+            missingNames.clear();
+    }
+
+    /**
+     * Estimates heap size retained by the element. Used to charge the element in the <code>bounded</code> cache.
+     * The estimator registered in {@link WeightEstimators} is used if any, otherwise the estimate is based on
+     * the size of element data returned by {@link #getElementSize(String)}.
+     */
+    protected long estimateWeight(T de)
+    {
+        long weight = WeightEstimators.estimateWeight( de );
+        if( weight >= 0 )
+            return weight;
+        long size = getElementSize( de.getName() );
+        if( size >= 0 )
+            return WeightEstimators.ELEMENT_OVERHEAD + size;
+        return BoundedCache.DEFAULT_WEIGHT;
+    }
+
+    /**
+     * @return size of the element data (e.g. on the disk) or -1 if it's unknown.
+     * Default implementation takes {@link DataCollectionConfigConstants#ELEMENT_SIZE_PROPERTY} of the element descriptor.
+     */
+    protected long getElementSize(String name)
+    {
+        DataElementDescriptor descriptor = getDescriptor( name );
+        String size = descriptor == null ? null : descriptor.getValue( ELEMENT_SIZE_PROPERTY );
+        if( size != null )
+        {
+            try
+            {
+                return Long.parseLong( size.trim() );
+            }
+            catch( NumberFormatException e )
+            {
+                // ignore invalid value
+            }
+        }
+        return -1;
+    }
+
+    private long getLongProperty(Properties properties, String name, long defaultValue)
+    {
+        String value = properties.getProperty( name );
+        if( value != null )
+        {
+            try
+            {
+                return Long.parseLong( value.trim() );
+            }
+            catch( NumberFormatException e )
+            {
+                log.warning( "Invalid " + name + " '" + value + "' for '" + DataElementPath.create( this ) + "'" );
+            }
+        }
+        return defaultValue;
     }
     
     @Override
@@ -1234,6 +2250,23 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
         return v_cache.values().stream();
     }
 
+    private CacheStatsCounter cacheStats = new CacheStatsCounter();
+
+    /**
+     * Returns statistics of the element cache of this collection.
+     * Hits and misses are counted by {@link #get(String)}, loads and load times by the calls of {@link #doGet(String)} made from it.
+     */
+    @Override
+    public CacheStats getCacheStats()
+    {
+        return cacheStats.snapshot( v_cache == null ? 0 : v_cache.size() );
+    }
+
+    public void resetCacheStats()
+    {
+        cacheStats.reset();
+    }
+
     public DataElement getNonCached(String dataElementName) throws Exception
     {
         return doGet(dataElementName);
@@ -1241,6 +2274,7 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
 
     public void removeFromCache(String dataElementName)
     {
+        invalidateLoad(dataElementName);
         if( v_cache != null )
             v_cache.remove(dataElementName);
     }
@@ -1253,6 +2287,7 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
     @Override
     public void release(String name)
     {
+        invalidateLoad(name);
         if( v_cache != null )
             v_cache.remove(name);
     }
@@ -1276,6 +2311,7 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
     @Override
     public void close() throws Exception
     {
+        flushEvents();
         if( info.isQuerySystemInitialized() )
         {
             QuerySystem querySystem = info.getQuerySystem();
@@ -1338,6 +2374,18 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
         AbstractDataCollection<T> clone = (AbstractDataCollection<T>) super.clone(origin, name);
         clone.completeName = null;
         clone.dataElementDescriptor = new LazyDescriptor<>(clone);
+        // state of loads, statistics, name lookups and event delivery belongs to the particular instance
+        clone.loads = new ConcurrentHashMap<>();
+        clone.cacheStats = new CacheStatsCounter();
+        clone.missingNames = missingNames == null ? null : new BoundedCache<>(missingNames.getMaximum());
+        clone.nameFilter = new AtomicReference<>();
+        clone.nameIndex = new AtomicReference<>();
+        clone.nameIndexVersion = new AtomicLong();
+        clone.eventDispatcher = null;
+        EventCoalescer coalescer = eventCoalescer;
+        clone.eventCoalescer = coalescer == null ? null : new EventCoalescer(clone, coalescer.getWindow());
+        PropagationCoalescer propagation = propagationCoalescer;
+        clone.propagationCoalescer = propagation == null ? null : new PropagationCoalescer(clone, propagation.getWindow());
     
         return clone;
     }
@@ -1346,6 +2394,6 @@ abstract public class AbstractDataCollection<T extends DataElement> extends Data
     // Private
     
     /** List of listeners. */
-    private final EventListenerList listenerList = new EventListenerList();
+    private final ListenerRegistry listenerRegistry = new ListenerRegistry();
     
 }
\ No newline at end of file
@@ -110,7 +110,8 @@ public class CollectionFactory
 
     static public boolean isDataElementCreating(String completeName)
     {
-        return currentPaths.get().contains( completeName );
+        Set<String> paths = currentPaths.get();
+        return !paths.isEmpty() && paths.contains( completeName );
     }
     
     static public @CheckForNull DataElement getDataElement(String completeName)
@@ -440,7 +441,7 @@ public class CollectionFactory
             for( int i = 0; it.hasNext(); i++ )
             {
                 DataElement de = it.next();
-                dest.put( de );
+                dest.putFast( de );
                 if( jc != null && i % 10 == 0 )
                 {
                     jc.checkStatus();
@@ -1,11 +1,15 @@
 package ru.biosoft.access.core;
 
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
 
 import javax.annotation.Nonnull;
 
+import ru.biosoft.access.core.cache.CacheStats;
 import ru.biosoft.exception.ExceptionRegistry;
 import ru.biosoft.exception.LoggedException;
 import com.developmentontheedge.beans.annot.PropertyName;
@@ -71,6 +75,8 @@ public interface DataCollection<T extends DataElement> extends DataElement, Iter
     //
 
     /**
+     * Checks whether the element exists. Implementations should answer it without creating the element when possible
+     * (e.g. using the name list or element descriptors), as it's called on every put and remove.
      * @param name name of data element
      * @return <b>true</b> if this data collection contains the element with specified name,<br> <b>false</b> otherwise
      */
@@ -95,6 +101,24 @@ public interface DataCollection<T extends DataElement> extends DataElement, Iter
      */
     DataElementDescriptor getDescriptor(String name);
 
+    /**
+     * Gets several elements at once. Implementations may batch the storage access.
+     * @param names names of elements to get
+     * @return map from name to element in the order of requested names, missing elements are absent in the map
+     * @throws Exception If error occurred.
+     */
+    default Map<String, T> getAll(Collection<String> names) throws Exception
+    {
+        Map<String, T> result = new LinkedHashMap<>();
+        for( String name : names )
+        {
+            T de = get( name );
+            if( de != null )
+                result.put( name, de );
+        }
+        return result;
+    }
+
     /**
      * Returns an iterator over the data elements in this collection.
      * There are no guarantees concerning the order in which the elements
@@ -136,6 +160,15 @@ public interface DataCollection<T extends DataElement> extends DataElement, Iter
      */
     T put(T obj) throws DataElementPutException, RepositoryAccessDeniedException;
 
+    /**
+     * Puts the specified data element like {@link #put(DataElement)}, but doesn't return the previous version,
+     * so implementation may avoid loading it.
+     */
+    default void putFast(T obj) throws DataElementPutException, RepositoryAccessDeniedException
+    {
+        put(obj);
+    }
+
     /**
      * Removes the specified data element from the collection, if present.
      * Does nothing if null is supplied
@@ -146,6 +179,39 @@ public interface DataCollection<T extends DataElement> extends DataElement, Iter
      * @see #isMutable
      */
     void remove(String name) throws Exception;
+
+    /**
+     * Adds several data elements like {@link #put(DataElement)}. Implementation may store them at once
+     * and notify listeners by single {@link DataCollectionBatchEvent}.
+     *
+     * @throws DataElementPutException if put failed
+     * @see #isMutable
+     */
+    default void putAll(Collection<? extends T> elements) throws DataElementPutException, RepositoryAccessDeniedException
+    {
+        for( T element : elements )
+            put( element );
+    }
+
+    /**
+     * Removes several data elements like {@link #remove(String)}. Implementation may remove them at once
+     * and notify listeners by single {@link DataCollectionBatchEvent}.
+     *
+     * @throws java.lang.Exception If error occurred.
+     * @see #isMutable
+     */
+    default void removeAll(Collection<String> names) throws Exception
+    {
+        for( String name : names )
+            remove( name );
+    }
+
+    /**
+     * Dispatches element events which were delayed to be merged, if any.
+     */
+    default void flushEvents()
+    {
+    }
     
     /**
      * @return true if DataCollection is in valid state; false otherwise
@@ -170,6 +236,33 @@ public interface DataCollection<T extends DataElement> extends DataElement, Iter
      */
     void addDataCollectionListener(DataCollectionListener l);
 
+    /**
+     * Add a listener which is notified only about events matching the subscription,
+     * so the collection can skip it cheaply instead of calling it for every change.
+     * Listener is removed by {@link #removeDataCollectionListener(DataCollectionListener)}.
+     * By default the subscription is ignored and listener receives all events.
+     *
+     * @param l the DataCollectionListener
+     * @param subscription kinds and names of the events the listener is interested in
+     */
+    default void addDataCollectionListener(DataCollectionListener l, ListenerSubscription subscription)
+    {
+        addDataCollectionListener( l );
+    }
+
+    /**
+     * Add a listener without keeping strong reference to it, so the registration doesn't prevent the listener
+     * from being garbage collected. It's intended for views like filtered collections which may be abandoned without closing.
+     * By default the listener is registered strongly.
+     *
+     * @param l the DataCollectionListener
+     * @param subscription kinds and names of the events the listener is interested in
+     */
+    default void addWeakDataCollectionListener(DataCollectionListener l, ListenerSubscription subscription)
+    {
+        addDataCollectionListener( l, subscription );
+    }
+
     /**
      * Remove a listener from the list that's notified each time a
      * change to the data collection occurs.
@@ -221,6 +314,15 @@ public interface DataCollection<T extends DataElement> extends DataElement, Iter
      * Return DataElement only if cache exists and this element is in cache.
      */
     DataElement getFromCache(String dataElementName);
+
+    /**
+     * Returns statistics of the element cache of this collection.
+     * Collections which do not collect statistics return {@link CacheStats#EMPTY}.
+     */
+    default CacheStats getCacheStats()
+    {
+        return CacheStats.EMPTY;
+    }
     
     ////////////////////////////////////////////////////////////////////////////
     // Streams
@@ -0,0 +1,96 @@
+package ru.biosoft.access.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Event about several elements of a collection which were added, changed or removed by single bulk operation.
+ *
+ * @see DataCollectionListener#elementsChanged(DataCollectionBatchEvent)
+ */
+@SuppressWarnings ( "serial" )
+public class DataCollectionBatchEvent extends DataCollectionEvent
+{
+    private final List<String> addedNames;
+    private final List<String> changedNames;
+    private final List<String> removedNames;
+    private final Map<String, DataElement> oldElements;
+
+    /**
+     * @param source The source which has caused events
+     * @param owner collection whose elements were changed
+     * @param addedNames names of added elements
+     * @param changedNames names of changed elements
+     * @param removedNames names of removed elements
+     * @param oldElements previous versions of changed and removed elements (may contain not all of them)
+     */
+    public DataCollectionBatchEvent(Object source, DataCollection<?> owner, List<String> addedNames, List<String> changedNames,
+            List<String> removedNames, Map<String, DataElement> oldElements, DataCollectionEvent primaryEvent)
+    {
+        super( source, ELEMENTS_CHANGED, owner, null, primaryEvent );
+        this.addedNames = Collections.unmodifiableList( addedNames );
+        this.changedNames = Collections.unmodifiableList( changedNames );
+        this.removedNames = Collections.unmodifiableList( removedNames );
+        this.oldElements = oldElements == null ? Collections.emptyMap() : oldElements;
+    }
+
+    public List<String> getAddedNames()
+    {
+        return addedNames;
+    }
+
+    public List<String> getChangedNames()
+    {
+        return changedNames;
+    }
+
+    public List<String> getRemovedNames()
+    {
+        return removedNames;
+    }
+
+    /**
+     * Batch event doesn't refer to single element.
+     * @return <code>null</code>
+     */
+    @Override
+    public DataElement getDataElement()
+    {
+        return null;
+    }
+
+    /**
+     * @return previous version of changed or removed element or null if it's not available
+     */
+    public DataElement getOldElement(String name)
+    {
+        return oldElements.get( name );
+    }
+
+    /**
+     * @return total number of affected elements
+     */
+    public int size()
+    {
+        return addedNames.size() + changedNames.size() + removedNames.size();
+    }
+
+    /**
+     * Splits the batch into separate {@link DataCollectionEvent#ELEMENT_ADDED}, {@link DataCollectionEvent#ELEMENT_CHANGED}
+     * and {@link DataCollectionEvent#ELEMENT_REMOVED} events.
+     */
+    public List<DataCollectionEvent> toElementEvents()
+    {
+        List<DataCollectionEvent> events = new ArrayList<>( size() );
+        DataCollection<?> owner = getOwner();
+        for( String name : addedNames )
+            events.add( new DataCollectionEvent( getSource(), ELEMENT_ADDED, owner, name, getPrimaryEvent() ) );
+        for( String name : changedNames )
+            events.add( new DataCollectionEvent( getSource(), ELEMENT_CHANGED, owner, name, getOldElement( name ), getPrimaryEvent() ) );
+        for( String name : removedNames )
+            events.add( new DataCollectionEvent( getSource(), ELEMENT_REMOVED, owner, name, getOldElement( name ), getPrimaryEvent() ) );
+        return events;
+    }
+}
@@ -125,10 +125,68 @@ public class DataCollectionConfigConstants
      * none - do not cache elements
      * weak - hold reference until GC starts (default)
      * soft - hold reference while enough space available
-     * hard - persistently hold reference.
+     * hard - persistently hold reference
+     * bounded - hold at most {@link #CACHE_MAXIMUM_SIZE} references, frequently used elements are kept.
      */
     public static final String CACHING_STRATEGY = "caching-strategy";
 
+    /** Maximal number of elements kept in the cache when {@link #CACHING_STRATEGY} is <code>bounded</code>. */
+    public static final String CACHE_MAXIMUM_SIZE = "cache-maximum-size";
+
+    /**
+     * Estimated heap size (in bytes) of the cached elements below which the shared cache manager
+     * does not evict elements of the collection. Used when {@link #CACHING_STRATEGY} is <code>bounded</code>.
+     */
+    public static final String CACHE_WEIGHT_FLOOR = "cache-weight-floor";
+
+    /**
+     * Maximal estimated heap size (in bytes) of the cached elements of the collection.
+     * Used when {@link #CACHING_STRATEGY} is <code>bounded</code>.
+     */
+    public static final String CACHE_WEIGHT_CEILING = "cache-weight-ceiling";
+
+    /**
+     * Elements which estimated heap size (in bytes) exceeds this value are not cached.
+     * Used when {@link #CACHING_STRATEGY} is <code>bounded</code>.
+     */
+    public static final String CACHE_MAXIMUM_ELEMENT_WEIGHT = "cache-maximum-element-weight";
+
+    /**
+     * Maximal number of names of missing elements remembered by the collection, so repeated requests
+     * of missing elements do not access the storage. Negative caching is disabled by default.
+     */
+    public static final String NEGATIVE_CACHE_SIZE = "negative-cache-size";
+
+    /**
+     * If <code>true</code>, name list of the collection is cheap to get and contains all elements,
+     * so requests of missing elements are rejected by the filter built from the name list.
+     */
+    public static final String NAME_LIST_INDEXED = "name-list-indexed";
+
+    /**
+     * Time in milliseconds during which element events of the collection are accumulated and then dispatched
+     * as single {@link DataCollectionBatchEvent}. Events are dispatched immediately if it's not specified.
+     */
+    public static final String EVENT_COALESCING_WINDOW = "event-coalescing-window";
+
+    /**
+     * If <code>true</code>, listeners are notified about added, changed and removed elements in the separate thread,
+     * see {@link AbstractDataCollection#setAsyncEventDispatch(boolean)}.
+     */
+    public static final String EVENT_DISPATCH_ASYNC = "event-dispatch-async";
+
+    /** Capacity of the queue of asynchronously dispatched events, {@link EventDispatcher#DEFAULT_CAPACITY} by default. */
+    public static final String EVENT_QUEUE_CAPACITY = "event-queue-capacity";
+
+    /** Overflow policy of the queue of asynchronously dispatched events: BLOCK (default), DROP or CALLER_RUNS. */
+    public static final String EVENT_QUEUE_OVERFLOW = "event-queue-overflow";
+
+    /**
+     * Time in milliseconds during which changes propagated from the descendants of the collection are accumulated,
+     * see {@link AbstractDataCollection#setPropagationCoalescingWindow(long)}.
+     */
+    public static final String PROPAGATION_COALESCING_WINDOW = "propagation-coalescing-window";
+
     /** Disk quota (in bytes) for given collection */
     public static final String DISK_QUOTA_PROPERTY = "diskQuota";
 
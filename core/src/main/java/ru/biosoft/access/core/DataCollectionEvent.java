@@ -27,6 +27,9 @@ public class DataCollectionEvent
     /** Indicates, that the element of a collection was removed */
     public static final int ELEMENT_REMOVED = 6;
 
+    /** Indicates, that several elements of a collection were added, changed or removed, see {@link DataCollectionBatchEvent}. */
+    public static final int ELEMENTS_CHANGED = 7;
+
     private final int type;
 
     private final String dataElementName;
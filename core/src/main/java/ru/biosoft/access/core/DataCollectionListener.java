@@ -56,5 +56,52 @@ public interface DataCollectionListener extends EventListener
      * @throws Exception If error occurred.
      */
     void elementWillRemove(DataCollectionEvent e) throws DataCollectionVetoException, Exception;
+
+    /**
+     * Called after several data elements were added, changed or removed by single bulk operation.
+     * Default implementation calls {@link #elementAdded(DataCollectionEvent)}, {@link #elementChanged(DataCollectionEvent)}
+     * and {@link #elementRemoved(DataCollectionEvent)} for every element, listeners which can process
+     * the whole batch at once should override it.
+     * @param e DataCollectionBatchEvent information about affected data elements.
+     * @throws Exception If error occurred.
+     */
+    default void elementsChanged(DataCollectionBatchEvent e) throws Exception
+    {
+        for( DataCollectionEvent event : e.toElementEvents() )
+        {
+            switch( event.getType() )
+            {
+                case DataCollectionEvent.ELEMENT_ADDED:
+                    elementAdded( event );
+                    break;
+                case DataCollectionEvent.ELEMENT_CHANGED:
+                    elementChanged( event );
+                    break;
+                default:
+                    elementRemoved( event );
+            }
+        }
+    }
+
+    /**
+     * Returns whether this listener should be notified about added, changed and removed elements in the separate thread,
+     * so slow processing doesn't delay the change itself. Such notifications are delivered in order,
+     * "will" notifications are always synchronous.
+     *
+     * @see AbstractDataCollection#setAsyncEventDispatch(boolean)
+     */
+    default boolean isAsynchronous()
+    {
+        return false;
+    }
+
+    /**
+     * Returns whether this listener uses {@link DataCollectionEvent#getOldElement()}.
+     * If no listener needs the old element, collection doesn't load the previous version of changed or removed element.
+     */
+    default boolean needsOldElement()
+    {
+        return true;
+    }
 }
 
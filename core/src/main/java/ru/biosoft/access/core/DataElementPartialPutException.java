@@ -0,0 +1,29 @@
+package ru.biosoft.access.core;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This exception is thrown by {@link AbstractDataCollection#doPutAll(List, java.util.Set)} when storing failed
+ * after some of the elements were already stored. Names of the stored elements are kept, so {@link DataCollection#putAll(java.util.Collection)}
+ * can notify listeners about them before rethrowing.
+ */
+@SuppressWarnings("serial")
+public class DataElementPartialPutException extends DataElementPutException
+{
+    private final List<String> storedNames;
+
+    public DataElementPartialPutException(Throwable t, DataElementPath path, List<String> storedNames)
+    {
+        super(t, path);
+        this.storedNames = Collections.unmodifiableList(storedNames);
+    }
+
+    /**
+     * @return names of the elements which were stored before the failure, in the storing order
+     */
+    public List<String> getStoredNames()
+    {
+        return storedNames;
+    }
+}
@@ -65,6 +65,18 @@ public class DataElementPath implements Comparable<DataElementPath>, Serializabl
      * <p>Note that this can be faster than <code>getDataElement() != null</code>.</p>
      */
     public boolean exists()
+    {
+        return exists(false);
+    }
+
+    /**
+     * Returns true if element specified by this path actually exists.
+     *
+     * @param descriptorCheck if true, existence is checked by {@link DataCollection#getDescriptor(String)} of the parent collection
+     * which never creates the element. Use it only for collections which return null descriptors for missing elements
+     * (like file-based collections), others may return default descriptor for any name.
+     */
+    public boolean exists(boolean descriptorCheck)
     {
         if( getName().equals("") )
         	return false;
@@ -73,6 +85,9 @@ public class DataElementPath implements Comparable<DataElementPath>, Serializabl
         if(parent == null)
             return CollectionFactory.getDataElement(path) != null;
 
+        if( descriptorCheck )
+            return parent.getDescriptor(getName()) != null;
+
         return parent.contains(getName());
     }
 
@@ -641,7 +656,7 @@ public class DataElementPath implements Comparable<DataElementPath>, Serializabl
             if(parent.isEmpty())
                 throw new MissingParameterException("Parent path");
 
-            parent.getDataElement(DataCollection.class).put(de);
+            parent.getDataElement(DataCollection.class).putFast(de);
         }
         catch( DataElementPutException e )
         {
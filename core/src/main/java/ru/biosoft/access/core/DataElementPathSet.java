@@ -2,8 +2,13 @@ package ru.biosoft.access.core;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.TreeSet;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -88,9 +93,37 @@ public class DataElementPathSet extends TreeSet<DataElementPath>
         this.defaultPath = defaultPath;
     }
 
+    /**
+     * Fetches elements of this set. Siblings are fetched by single {@link DataCollection#getAll(Collection)} call
+     * when their parent collection is requested first time.
+     */
     public <T extends DataElement> Stream<T> elements(Class<T> clazz)
     {
-        return stream().map( path -> path.getDataElement(clazz) );
+        Map<DataElementPath, Map<String, ? extends DataElement>> fetched = new HashMap<>();
+        return stream().map( path -> {
+            DataElementPath parentPath = path.getParentPath();
+            Map<String, ? extends DataElement> siblings = fetched.computeIfAbsent( parentPath, this::fetchChildren );
+            DataElement de = siblings.get( path.getName() );
+            return de == null ? path.getDataElement( clazz ) : de.cast( clazz );
+        } );
+    }
+
+    private Map<String, ? extends DataElement> fetchChildren(DataElementPath parentPath)
+    {
+        DataCollection<?> parent = parentPath.getName().isEmpty() ? null : parentPath.optDataCollection();
+        if( parent == null )
+            return Collections.emptyMap();
+        List<String> names = stream().filter( path -> parentPath.equals( path.getParentPath() ) ).map( DataElementPath::getName )
+                .collect( Collectors.toList() );
+        try
+        {
+            return parent.getAll( names );
+        }
+        catch( Exception e )
+        {
+            // elements will be fetched one by one to report the error for the exact path
+            return Collections.emptyMap();
+        }
     }
 
     @Override
@@ -12,8 +12,11 @@ import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -284,13 +287,32 @@ public class DerivedDataCollection<T1 extends DataElement, T2 extends DataElemen
     @Override
     protected void doPut(T1 element, boolean isNew) throws Exception
     {
-        doGetPrimaryCollection().put((T2)element);
+        doGetPrimaryCollection().putFast((T2)element);
         synchronized( nameLock )
         {
             sortedNames = null;
         }
     }
 
+    /**
+     * Puts all elements into the primary collection by single {@link DataCollection#putAll(Collection)} call.
+     */
+    @Override
+    protected void doPutAll(List<T1> elements, Set<String> newNames) throws Exception
+    {
+        try
+        {
+            doGetPrimaryCollection().putAll((List<T2>)elements);
+        }
+        finally
+        {
+            synchronized( nameLock )
+            {
+                sortedNames = null;
+            }
+        }
+    }
+
     /**
      * Calls {@link DataCollection#remove(String)} of primary collection.
      * Remove the specified data element from the primary collection.
@@ -341,6 +363,12 @@ public class DerivedDataCollection<T1 extends DataElement, T2 extends DataElemen
     {
         return (T1)doGetPrimaryCollection().get(name);
     }
+
+    @Override
+    protected Map<String, T1> doGetAll(List<String> names) throws Exception
+    {
+        return (Map<String, T1>)doGetPrimaryCollection().getAll(names);
+    }
     
     @Override
     public DataElementDescriptor getDescriptor(String name)
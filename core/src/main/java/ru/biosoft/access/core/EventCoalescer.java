@@ -0,0 +1,147 @@
+package ru.biosoft.access.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accumulates element events of the collection during the coalescing window and dispatches them as single
+ * {@link DataCollectionBatchEvent}. Consecutive events about the same element are merged: for example added and then changed
+ * element is reported as added, added and then removed element is not reported at all.
+ *
+ * @see AbstractDataCollection#setEventCoalescingWindow(long)
+ */
+class EventCoalescer
+{
+    /**
+     * Timer shared by all coalescers. It only hands expired batches to the event dispatcher of the collection,
+     * so listeners never run in this thread.
+     */
+    static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor( r -> {
+        Thread thread = new Thread( r, "DataCollection events" );
+        thread.setDaemon( true );
+        return thread;
+    } );
+
+    private final AbstractDataCollection<?> collection;
+    private final long window;
+    // held while the batch is dispatched, so batches are delivered in order
+    private final Object dispatchLock = new Object();
+
+    private Map<String, Integer> pending = new LinkedHashMap<>();
+    private Map<String, DataElement> oldElements = new HashMap<>();
+    private boolean scheduled;
+
+    /**
+     * @param window time in milliseconds during which events are accumulated
+     */
+    EventCoalescer(AbstractDataCollection<?> collection, long window)
+    {
+        this.collection = collection;
+        this.window = window;
+    }
+
+    long getWindow()
+    {
+        return window;
+    }
+
+    /**
+     * @param type one of {@link DataCollectionEvent#ELEMENT_ADDED}, {@link DataCollectionEvent#ELEMENT_CHANGED},
+     * {@link DataCollectionEvent#ELEMENT_REMOVED}
+     */
+    synchronized void add(int type, String name, DataElement oldElement)
+    {
+        Integer previous = pending.get( name );
+        if( previous == null )
+        {
+            pending.put( name, type );
+        }
+        else if( previous == DataCollectionEvent.ELEMENT_ADDED )
+        {
+            // element unknown to listeners is still unknown to them
+            if( type == DataCollectionEvent.ELEMENT_REMOVED )
+                pending.remove( name );
+        }
+        else if( previous == DataCollectionEvent.ELEMENT_REMOVED )
+        {
+            if( type != DataCollectionEvent.ELEMENT_REMOVED )
+                pending.put( name, DataCollectionEvent.ELEMENT_CHANGED );
+        }
+        else if( type == DataCollectionEvent.ELEMENT_REMOVED )
+        {
+            pending.put( name, type );
+        }
+        if( !pending.containsKey( name ) )
+            oldElements.remove( name );
+        else if( oldElement != null )
+            oldElements.putIfAbsent( name, oldElement );
+        if( !scheduled )
+        {
+            scheduled = true;
+            SCHEDULER.schedule( this::expire, window, TimeUnit.MILLISECONDS );
+        }
+    }
+
+    /**
+     * Called by the timer when the window is over.
+     */
+    private void expire()
+    {
+        synchronized( this )
+        {
+            // if the flush is dropped by the dispatcher, the next event starts new window
+            scheduled = false;
+        }
+        collection.getEventDispatcher().execute( this::flush );
+    }
+
+    void addAll(DataCollectionBatchEvent e)
+    {
+        for( DataCollectionEvent event : e.toElementEvents() )
+            add( event.getType(), event.getDataElementName(), event.getOldElement() );
+    }
+
+    /**
+     * Dispatches accumulated events immediately in the current thread.
+     */
+    void flush()
+    {
+        synchronized( dispatchLock )
+        {
+            DataCollectionBatchEvent batch;
+            synchronized( this )
+            {
+                scheduled = false;
+                if( pending.isEmpty() )
+                    return;
+                List<String> added = new ArrayList<>();
+                List<String> changed = new ArrayList<>();
+                List<String> removed = new ArrayList<>();
+                for( Map.Entry<String, Integer> entry : pending.entrySet() )
+                {
+                    switch( entry.getValue() )
+                    {
+                        case DataCollectionEvent.ELEMENT_ADDED:
+                            added.add( entry.getKey() );
+                            break;
+                        case DataCollectionEvent.ELEMENT_CHANGED:
+                            changed.add( entry.getKey() );
+                            break;
+                        default:
+                            removed.add( entry.getKey() );
+                    }
+                }
+                batch = new DataCollectionBatchEvent( collection, collection, added, changed, removed, oldElements, null );
+                pending = new LinkedHashMap<>();
+                oldElements = new HashMap<>();
+            }
+            collection.dispatchElementsChanged( batch );
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package ru.biosoft.access.core;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Executes listener notifications of one collection asynchronously in the order they were submitted.
+ * Notifications wait in the bounded queue, the {@link OverflowPolicy} determines what happens when the queue is full.
+ * Threads are taken from the pool shared by all collections and are released when the queue becomes empty.
+ *
+ * @see AbstractDataCollection#setAsyncEventDispatch(boolean)
+ */
+public class EventDispatcher implements Executor
+{
+    private static final Logger log = Logger.getLogger( EventDispatcher.class.getName() );
+
+    /** Default capacity of the notification queue. */
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    public enum OverflowPolicy
+    {
+        /** Submitting thread waits until the queue has free space. */
+        BLOCK,
+        /** Notification is discarded (and logged). */
+        DROP,
+        /** Notification is executed in the submitting thread, so it may outrun earlier notifications. */
+        CALLER_RUNS
+    }
+
+    private static final ExecutorService pool = Executors.newCachedThreadPool( r -> {
+        Thread thread = new Thread( r, "DataCollection event dispatcher" );
+        thread.setDaemon( true );
+        return thread;
+    } );
+
+    private final String name;
+    private final BlockingQueue<Runnable> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private volatile Thread dispatchThread;
+
+    /**
+     * @param name name used in log messages, usually the path of the collection
+     * @param capacity maximal number of waiting notifications
+     * @param overflowPolicy what to do when the queue is full
+     */
+    public EventDispatcher(String name, int capacity, OverflowPolicy overflowPolicy)
+    {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>( capacity );
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    @Override
+    public void execute(Runnable task)
+    {
+        if( !queue.offer( task ) )
+        {
+            switch( overflowPolicy )
+            {
+                case BLOCK:
+                    // notification submitted by the listener itself would wait for itself
+                    if( Thread.currentThread() == dispatchThread || !put( task ) )
+                        task.run();
+                    break;
+                case DROP:
+                    if( droppedCount.incrementAndGet() % 1000 == 1 )
+                        log.warning( "Event queue of " + name + " is full, " + droppedCount.get() + " notification(s) dropped" );
+                    break;
+                default:
+                    task.run();
+            }
+        }
+        schedule();
+    }
+
+    private boolean put(Runnable task)
+    {
+        try
+        {
+            queue.put( task );
+            return true;
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void schedule()
+    {
+        if( !queue.isEmpty() && running.compareAndSet( false, true ) )
+            pool.execute( this::dispatch );
+    }
+
+    private void dispatch()
+    {
+        dispatchThread = Thread.currentThread();
+        try
+        {
+            Runnable task;
+            while( ( task = queue.poll() ) != null )
+            {
+                try
+                {
+                    task.run();
+                }
+                catch( Throwable t )
+                {
+                    log.log( Level.SEVERE, "Error during event dispatching in " + name, t );
+                }
+            }
+        }
+        finally
+        {
+            dispatchThread = null;
+            running.set( false );
+        }
+        // notification might be submitted after the queue was found empty
+        schedule();
+    }
+
+    /**
+     * Waits until all notifications submitted before the call are executed.
+     */
+    public void awaitIdle() throws InterruptedException
+    {
+        if( Thread.currentThread() == dispatchThread )
+            return;
+        CountDownLatch latch = new CountDownLatch( 1 );
+        queue.put( latch::countDown );
+        schedule();
+        latch.await();
+    }
+
+    /**
+     * @return number of notifications discarded due to the queue overflow
+     */
+    public long getDroppedCount()
+    {
+        return droppedCount.get();
+    }
+
+    public int getQueueSize()
+    {
+        return queue.size();
+    }
+}
@@ -0,0 +1,218 @@
+package ru.biosoft.access.core;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Copy-on-write registry of {@link DataCollectionListener}s. Registration is lock-free, notification loops
+ * iterate over the immutable snapshot without any synchronization or type checks.
+ *
+ * <p>Replaces {@link javax.swing.event.EventListenerList}, which synchronizes all modifications and stores listener types
+ * along with listeners. As in {@link javax.swing.event.EventListenerList} the same listener may be registered several times.
+ *
+ * <p>Every registration may carry {@link ListenerSubscription}. Snapshot keeps the union of subscribed event kinds,
+ * so the collection doesn't even create the event nobody is subscribed to.
+ *
+ * <p>Listener may be registered weakly, then the registration doesn't prevent it from being garbage collected.
+ * Registrations of collected listeners are purged when the registry is modified or notified.
+ */
+class ListenerRegistry
+{
+    static class Registration
+    {
+        private final DataCollectionListener listener;
+        /** null if all events are accepted */
+        final ListenerSubscription subscription;
+
+        Registration(DataCollectionListener listener, ListenerSubscription subscription)
+        {
+            this.listener = listener;
+            this.subscription = subscription == ListenerSubscription.ALL ? null : subscription;
+        }
+
+        /**
+         * @return registered listener or null if weakly registered listener was garbage collected
+         */
+        DataCollectionListener getListener()
+        {
+            return listener;
+        }
+
+        boolean accepts(int type, String name)
+        {
+            return subscription == null || subscription.accepts( type, name );
+        }
+
+        /**
+         * @see ListenerSubscription#select(DataCollectionEvent)
+         */
+        DataCollectionEvent select(DataCollectionEvent e)
+        {
+            return subscription == null ? e : subscription.select( e );
+        }
+
+        int getKinds()
+        {
+            return subscription == null ? ListenerSubscription.ALL_KINDS : subscription.getKinds();
+        }
+    }
+
+    private static class WeakRegistration extends Registration
+    {
+        private final WeakReference<DataCollectionListener> reference;
+
+        WeakRegistration(DataCollectionListener listener, ListenerSubscription subscription, ReferenceQueue<DataCollectionListener> queue)
+        {
+            super( null, subscription );
+            reference = new WeakReference<>( listener, queue );
+        }
+
+        @Override
+        DataCollectionListener getListener()
+        {
+            return reference.get();
+        }
+    }
+
+    private static class Snapshot
+    {
+        final Registration[] registrations;
+        final int kinds;
+
+        Snapshot(Registration[] registrations)
+        {
+            this.registrations = registrations;
+            int kinds = 0;
+            for( Registration registration : registrations )
+                kinds |= registration.getKinds();
+            this.kinds = kinds;
+        }
+    }
+
+    private static final Snapshot EMPTY = new Snapshot( new Registration[0] );
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>( EMPTY );
+    private final ReferenceQueue<DataCollectionListener> collected = new ReferenceQueue<>();
+
+    void add(DataCollectionListener listener)
+    {
+        add( listener, null );
+    }
+
+    void add(DataCollectionListener listener, ListenerSubscription subscription)
+    {
+        if( listener == null )
+            return;
+        purge();
+        add( new Registration( listener, subscription ) );
+    }
+
+    /**
+     * Registers the listener without keeping strong reference to it.
+     */
+    void addWeak(DataCollectionListener listener, ListenerSubscription subscription)
+    {
+        if( listener == null )
+            return;
+        purge();
+        add( new WeakRegistration( listener, subscription, collected ) );
+    }
+
+    private void add(Registration registration)
+    {
+        Snapshot current, updated;
+        do
+        {
+            current = snapshot.get();
+            Registration[] registrations = Arrays.copyOf( current.registrations, current.registrations.length + 1 );
+            registrations[current.registrations.length] = registration;
+            updated = new Snapshot( registrations );
+        }
+        while( !snapshot.compareAndSet( current, updated ) );
+    }
+
+    /**
+     * Removes the last registration of the listener.
+     */
+    void remove(DataCollectionListener listener)
+    {
+        if( listener == null )
+            return;
+        Snapshot current, updated;
+        do
+        {
+            current = snapshot.get();
+            Registration[] registrations = current.registrations;
+            int index = registrations.length - 1;
+            while( index >= 0 && registrations[index].getListener() != listener )
+                index--;
+            if( index < 0 )
+                return;
+            if( registrations.length == 1 )
+            {
+                updated = EMPTY;
+            }
+            else
+            {
+                Registration[] remaining = new Registration[registrations.length - 1];
+                System.arraycopy( registrations, 0, remaining, 0, index );
+                System.arraycopy( registrations, index + 1, remaining, index, registrations.length - index - 1 );
+                updated = new Snapshot( remaining );
+            }
+        }
+        while( !snapshot.compareAndSet( current, updated ) );
+    }
+
+    /**
+     * Removes registrations of garbage collected listeners, if any.
+     */
+    void purge()
+    {
+        if( collected.poll() == null )
+            return;
+        while( collected.poll() != null )
+            ;
+        Snapshot current, updated;
+        do
+        {
+            current = snapshot.get();
+            List<Registration> alive = new ArrayList<>( current.registrations.length );
+            for( Registration registration : current.registrations )
+            {
+                if( registration.getListener() != null )
+                    alive.add( registration );
+            }
+            if( alive.size() == current.registrations.length )
+                return;
+            updated = alive.isEmpty() ? EMPTY : new Snapshot( alive.toArray( new Registration[alive.size()] ) );
+        }
+        while( !snapshot.compareAndSet( current, updated ) );
+    }
+
+    boolean isEmpty()
+    {
+        return snapshot.get().registrations.length == 0;
+    }
+
+    /**
+     * @param type event type, see constants of {@link DataCollectionEvent}
+     * @return true if some listener may accept events of this type
+     */
+    boolean isSubscribed(int type)
+    {
+        return ( snapshot.get().kinds & ListenerSubscription.typeMask( type ) ) != 0;
+    }
+
+    /**
+     * @return snapshot of registrations in the order of registration; must not be modified.
+     * Listener of weak registration may be already collected, see {@link Registration#getListener()}.
+     */
+    Registration[] getRegistrations()
+    {
+        return snapshot.get().registrations;
+    }
+}
@@ -0,0 +1,155 @@
+package ru.biosoft.access.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Describes which events of the collection the listener is interested in: event kinds and element names.
+ * Collection skips listeners whose subscription doesn't match the event without calling them,
+ * so many listeners interested in small part of the events don't slow down notification.
+ *
+ * <pre>
+ * collection.addDataCollectionListener( listener,
+ *         ListenerSubscription.of( ListenerSubscription.ADDED | ListenerSubscription.REMOVED ).withNamePrefix( "chr" ) );
+ * </pre>
+ *
+ * Subscription is immutable. {@link DataCollectionBatchEvent}s are matched by the kinds and names of their elements,
+ * listener receives the batch containing only the elements it subscribed to.
+ *
+ * @see DataCollection#addDataCollectionListener(DataCollectionListener, ListenerSubscription)
+ */
+public class ListenerSubscription
+{
+    public static final int WILL_ADD = 1 << DataCollectionEvent.ELEMENT_WILL_ADD;
+    public static final int WILL_CHANGE = 1 << DataCollectionEvent.ELEMENT_WILL_CHANGE;
+    public static final int WILL_REMOVE = 1 << DataCollectionEvent.ELEMENT_WILL_REMOVE;
+    public static final int ADDED = 1 << DataCollectionEvent.ELEMENT_ADDED;
+    public static final int CHANGED = 1 << DataCollectionEvent.ELEMENT_CHANGED;
+    public static final int REMOVED = 1 << DataCollectionEvent.ELEMENT_REMOVED;
+
+    /** "Will" events which may veto the change. */
+    public static final int WILL_ALL = WILL_ADD | WILL_CHANGE | WILL_REMOVE;
+    /** Events about completed changes, including batch events. */
+    public static final int DONE_ALL = ADDED | CHANGED | REMOVED;
+    public static final int ALL_KINDS = WILL_ALL | DONE_ALL;
+
+    /** Subscription to all events, same as registration without subscription. */
+    public static final ListenerSubscription ALL = new ListenerSubscription( ALL_KINDS, null );
+
+    private final int kinds;
+    private final Predicate<String> namePredicate;
+
+    private ListenerSubscription(int kinds, Predicate<String> namePredicate)
+    {
+        this.kinds = kinds & ALL_KINDS;
+        this.namePredicate = namePredicate;
+    }
+
+    /**
+     * @param kinds combination of {@link #ADDED}, {@link #CHANGED}, {@link #REMOVED}, {@link #WILL_ADD}, {@link #WILL_CHANGE}, {@link #WILL_REMOVE}
+     */
+    public static ListenerSubscription of(int kinds)
+    {
+        return kinds == ALL_KINDS ? ALL : new ListenerSubscription( kinds, null );
+    }
+
+    /**
+     * @return subscription which additionally requires element name to start with the prefix
+     */
+    public ListenerSubscription withNamePrefix(String prefix)
+    {
+        return withNames( name -> name.startsWith( prefix ) );
+    }
+
+    /**
+     * @return subscription which additionally requires element name to satisfy the predicate
+     */
+    public ListenerSubscription withNames(Predicate<String> predicate)
+    {
+        return new ListenerSubscription( kinds, namePredicate == null ? predicate : namePredicate.and( predicate ) );
+    }
+
+    public int getKinds()
+    {
+        return kinds;
+    }
+
+    /**
+     * @param type event type, see constants of {@link DataCollectionEvent}
+     * @return true if events of this type may be accepted (for {@link DataCollectionEvent#ELEMENTS_CHANGED} if any element kind is accepted)
+     */
+    public boolean acceptsType(int type)
+    {
+        return ( kinds & typeMask( type ) ) != 0;
+    }
+
+    public boolean accepts(int type, String name)
+    {
+        return acceptsType( type ) && ( namePredicate == null || name == null || namePredicate.test( name ) );
+    }
+
+    /**
+     * @return the event if it matches subscription completely, the narrowed batch event
+     * if only some of its elements match or null if the event should be skipped
+     */
+    public DataCollectionEvent select(DataCollectionEvent e)
+    {
+        if( ! ( e instanceof DataCollectionBatchEvent ) )
+            return accepts( e.getType(), e.getDataElementName() ) ? e : null;
+        DataCollectionBatchEvent batch = (DataCollectionBatchEvent)e;
+        List<String> added = select( DataCollectionEvent.ELEMENT_ADDED, batch.getAddedNames() );
+        List<String> changed = select( DataCollectionEvent.ELEMENT_CHANGED, batch.getChangedNames() );
+        List<String> removed = select( DataCollectionEvent.ELEMENT_REMOVED, batch.getRemovedNames() );
+        int size = added.size() + changed.size() + removed.size();
+        if( size == batch.size() )
+            return batch;
+        if( size == 0 )
+            return null;
+        Map<String, DataElement> oldElements = new HashMap<>();
+        for( String name : changed )
+            putOldElement( oldElements, batch, name );
+        for( String name : removed )
+            putOldElement( oldElements, batch, name );
+        return new DataCollectionBatchEvent( batch.getSource(), batch.getOwner(), added, changed, removed, oldElements,
+                batch.getPrimaryEvent() );
+    }
+
+    private List<String> select(int type, List<String> names)
+    {
+        if( !acceptsType( type ) )
+            return new ArrayList<>();
+        if( namePredicate == null )
+            return names;
+        List<String> result = new ArrayList<>();
+        for( String name : names )
+        {
+            if( namePredicate.test( name ) )
+                result.add( name );
+        }
+        return result.size() == names.size() ? names : result;
+    }
+
+    private static void putOldElement(Map<String, DataElement> oldElements, DataCollectionBatchEvent batch, String name)
+    {
+        DataElement oldElement = batch.getOldElement( name );
+        if( oldElement != null )
+            oldElements.put( name, oldElement );
+    }
+
+    /**
+     * @return bit mask of element event kinds corresponding to the event type
+     */
+    static int typeMask(int type)
+    {
+        return type == DataCollectionEvent.ELEMENTS_CHANGED ? DONE_ALL : 1 << type;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ListenerSubscription[kinds=" + Integer.toBinaryString( kinds ) + ( namePredicate == null ? "" : ", names filtered" ) + "]";
+    }
+}
@@ -0,0 +1,67 @@
+package ru.biosoft.access.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accumulates changes propagated to the collection from its descendants during the window
+ * and then fires single change event per changed child collection, whatever number of elements were changed in its subtree.
+ * Only the latest primary event is passed with the change.
+ *
+ * @see AbstractDataCollection#setPropagationCoalescingWindow(long)
+ */
+class PropagationCoalescer
+{
+    private final AbstractDataCollection<?> collection;
+    private final long window;
+
+    private Map<String, DataCollectionEvent> pending = new LinkedHashMap<>();
+    private boolean scheduled;
+
+    PropagationCoalescer(AbstractDataCollection<?> collection, long window)
+    {
+        this.collection = collection;
+        this.window = window;
+    }
+
+    long getWindow()
+    {
+        return window;
+    }
+
+    synchronized void add(String childName, DataCollectionEvent primaryEvent)
+    {
+        pending.remove( childName );
+        pending.put( childName, primaryEvent );
+        if( !scheduled )
+        {
+            scheduled = true;
+            EventCoalescer.SCHEDULER.schedule( this::expire, window, TimeUnit.MILLISECONDS );
+        }
+    }
+
+    private void expire()
+    {
+        synchronized( this )
+        {
+            scheduled = false;
+        }
+        collection.getEventDispatcher().execute( this::flush );
+    }
+
+    void flush()
+    {
+        Map<String, DataCollectionEvent> changes;
+        synchronized( this )
+        {
+            scheduled = false;
+            if( pending.isEmpty() )
+                return;
+            changes = pending;
+            pending = new LinkedHashMap<>();
+        }
+        for( Map.Entry<String, DataCollectionEvent> entry : changes.entrySet() )
+            collection.firePropagatedChange( entry.getKey(), entry.getValue() );
+    }
+}
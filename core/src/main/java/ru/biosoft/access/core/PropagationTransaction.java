@@ -0,0 +1,76 @@
+package ru.biosoft.access.core;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Defers propagation of changes to the ancestor collections until the transaction is closed.
+ * Then every ancestor receives single change event per changed child instead of the event per changed element of its subtree.
+ * Events of the changed collections themselves are not deferred.
+ *
+ * <pre>
+ * try (PropagationTransaction transaction = PropagationTransaction.begin())
+ * {
+ *     for( DataElement de : elements )
+ *         collection.put( de );
+ * }
+ * </pre>
+ *
+ * Transaction is bound to the current thread, nested transactions join the outer one.
+ */
+public class PropagationTransaction implements AutoCloseable
+{
+    private static final ThreadLocal<PropagationTransaction> current = new ThreadLocal<>();
+
+    private int depth = 1;
+    private final Map<AbstractDataCollection<?>, Map<String, DataCollectionEvent>> pending = new IdentityHashMap<>();
+
+    private PropagationTransaction()
+    {
+    }
+
+    public static PropagationTransaction begin()
+    {
+        PropagationTransaction transaction = current.get();
+        if( transaction != null )
+        {
+            transaction.depth++;
+            return transaction;
+        }
+        transaction = new PropagationTransaction();
+        current.set( transaction );
+        return transaction;
+    }
+
+    /**
+     * Records the change propagated to the ancestor if the transaction is active in the current thread.
+     * @return true if the change is deferred
+     */
+    static boolean defer(AbstractDataCollection<?> ancestor, String childName, DataCollectionEvent primaryEvent)
+    {
+        PropagationTransaction transaction = current.get();
+        if( transaction == null )
+            return false;
+        Map<String, DataCollectionEvent> changes = transaction.pending.computeIfAbsent( ancestor, k -> new LinkedHashMap<>() );
+        changes.remove( childName );
+        changes.put( childName, primaryEvent );
+        return true;
+    }
+
+    /**
+     * Fires deferred changes when the outermost transaction is closed.
+     */
+    @Override
+    public void close()
+    {
+        if( --depth > 0 )
+            return;
+        current.remove();
+        for( Map.Entry<AbstractDataCollection<?>, Map<String, DataCollectionEvent>> entry : pending.entrySet() )
+        {
+            for( Map.Entry<String, DataCollectionEvent> change : entry.getValue().entrySet() )
+                entry.getKey().firePropagatedChange( change.getKey(), change.getValue() );
+        }
+    }
+}
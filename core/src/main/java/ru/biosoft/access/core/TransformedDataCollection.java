@@ -1,7 +1,12 @@
 package ru.biosoft.access.core;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import javax.annotation.Nonnull;
 
@@ -57,7 +62,7 @@ public class TransformedDataCollection<T1 extends DataElement, T2 extends DataEl
             outputType = DataElement.class;
         }
 
-        primaryCollection.addDataCollectionListener(this);
+        primaryCollection.addWeakDataCollectionListener(this, ListenerSubscription.ALL);
         primaryCollection.setPropagationEnabled(false);
     }
 
@@ -105,13 +110,44 @@ public class TransformedDataCollection<T1 extends DataElement, T2 extends DataEl
     public void doPut(T2 element, boolean isNew) throws Exception
     {
         T1 tde = transformer.transformOutput((T2)element.cast( getDataElementType() ));
-        doGetPrimaryCollection().put(tde);
+        doGetPrimaryCollection().putFast(tde);
         synchronized( nameLock )
         {
             sortedNames = null;
         }
     }
 
+    @Override
+    protected void doPutAll(List<T2> elements, Set<String> newNames) throws Exception
+    {
+        List<T1> transformed = new ArrayList<>(elements.size());
+        Map<String, String> outputNames = new HashMap<>();
+        for( T2 element : elements )
+        {
+            T1 output = transformer.transformOutput((T2)element.cast( getDataElementType() ));
+            transformed.add(output);
+            outputNames.put(output.getName(), element.getName());
+        }
+        try
+        {
+            doGetPrimaryCollection().putAll(transformed);
+        }
+        catch( DataElementPartialPutException e )
+        {
+            List<String> stored = new ArrayList<>();
+            for( String name : e.getStoredNames() )
+                stored.add(outputNames.getOrDefault(name, name));
+            throw new DataElementPartialPutException(e.getCause(), getCompletePath(), stored);
+        }
+        finally
+        {
+            synchronized( nameLock )
+            {
+                sortedNames = null;
+            }
+        }
+    }
+
     /**
      * Implements specific get action for transformed data collection
      * to get the specified by name data element from the collection.
@@ -143,6 +179,33 @@ public class TransformedDataCollection<T1 extends DataElement, T2 extends DataEl
         }
     }
 
+    @Override
+    protected Map<String, T2> doGetAll(List<String> names) throws Exception
+    {
+        Map<String, T1> primaryElements;
+        try
+        {
+            primaryElements = doGetPrimaryCollection().getAll(names);
+        }
+        catch( Throwable t )
+        {
+            throw new DataElementGetException(t, getCompletePath(), inputType);
+        }
+        Map<String, T2> result = new HashMap<>();
+        for( Map.Entry<String, T1> entry : primaryElements.entrySet() )
+        {
+            try
+            {
+                result.put(entry.getKey(), transformer.transformInput((T1)entry.getValue().cast( inputType )));
+            }
+            catch( Throwable t )
+            {
+                throw new DataElementGetException(t, getCompletePath().getChildPath(entry.getKey()), outputType);
+            }
+        }
+        return result;
+    }
+
     @Override
     public boolean isAcceptable(Class clazz)
     {
@@ -196,14 +259,11 @@ public class TransformedDataCollection<T1 extends DataElement, T2 extends DataEl
         {
             try
             {
-                T2 cachedDE = v_cache.get(de.getName());
+                T2 cachedDE = v_cache == null ? null : v_cache.get(de.getName());
                 if( cachedDE != null )
                     return cachedDE;
-                
-                cachedDE = transformer.transformInput((T1)de.cast( inputType ));
-                cachePut(cachedDE);
-                
-                return cachedDE;
+
+                return load(de.getName(), () -> transformer.transformInput((T1)de.cast( inputType )));
             }
             catch( Exception exc )
             {
@@ -267,6 +327,24 @@ public class TransformedDataCollection<T1 extends DataElement, T2 extends DataEl
         fireElementRemoved(this, dce.getDataElementName(), null);
     }
 
+    @Override
+    public void elementsChanged(DataCollectionBatchEvent e) throws Exception
+    {
+        if( e.getPrimaryEvent() != null )
+            return;
+
+        fireElementsChanged(new DataCollectionBatchEvent(this, this, e.getAddedNames(), e.getChangedNames(), e.getRemovedNames(), null, null));
+    }
+
+    /**
+     * Events are retranslated without old element.
+     */
+    @Override
+    public boolean needsOldElement()
+    {
+        return false;
+    }
+
     final public Transformer<T1, T2> getTransformer()
     {
         return transformer;
@@ -1,7 +1,6 @@
 package ru.biosoft.access.core;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -113,12 +112,6 @@ public class VectorDataCollection<T extends DataElement> extends AbstractDataCol
         return elements.values().toArray(a);
     }
     
-    public void putAll(Collection<? extends T> collection) throws Exception
-    {
-        for(T element: collection)
-            put(element);
-    }
-
     /**
      * Returns an unmodifiable list of the data element names contained in this data collection.
      * Query operations on the returned list "read through" to the internal name list,
@@ -165,6 +158,12 @@ public class VectorDataCollection<T extends DataElement> extends AbstractDataCol
         return elements.containsKey( name );
     }
 
+    @Override
+    protected boolean isKnownMissing(String name)
+    {
+        return !elements.containsKey( name );
+    }
+
     @Override
     public T get(String name)
     {
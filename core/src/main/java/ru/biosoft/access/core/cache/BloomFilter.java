@@ -0,0 +1,96 @@
+package ru.biosoft.access.core.cache;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread safe Bloom filter of strings. Answers whether the string was surely not added,
+ * false positive rate is about 1% while the number of added strings doesn't exceed the expected one.
+ *
+ * <p>Used by {@link ru.biosoft.access.core.AbstractDataCollection} to reject requests of missing elements
+ * without accessing the storage.
+ */
+public class BloomFilter
+{
+    private static final int HASH_COUNT = 7;
+    private static final int BITS_PER_ELEMENT = 10;
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int expected;
+    private final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * @param expected expected number of strings
+     */
+    public BloomFilter(int expected)
+    {
+        this.expected = Math.max( expected, 64 );
+        this.bitCount = (long)this.expected * BITS_PER_ELEMENT;
+        this.bits = new AtomicLongArray( (int) ( ( bitCount + 63 ) / 64 ) );
+    }
+
+    /**
+     * Creates the filter which contains all given strings and has some reserve for added ones.
+     */
+    public static BloomFilter of(Collection<String> strings)
+    {
+        BloomFilter filter = new BloomFilter( strings.size() * 2 );
+        for( String string : strings )
+            filter.add( string );
+        return filter;
+    }
+
+    public void add(String string)
+    {
+        long hash = hash( string );
+        int h1 = (int)hash;
+        int h2 = (int) ( hash >>> 32 ) | 1;
+        for( int i = 1; i <= HASH_COUNT; i++ )
+        {
+            long bit = Integer.toUnsignedLong( h1 + i * h2 ) % bitCount;
+            int index = (int) ( bit >>> 6 );
+            long mask = 1L << bit;
+            long word = bits.get( index );
+            while( ( word & mask ) == 0 && !bits.compareAndSet( index, word, word | mask ) )
+                word = bits.get( index );
+        }
+        count.incrementAndGet();
+    }
+
+    /**
+     * @return false if the string surely was not added, true if it probably was
+     */
+    public boolean mightContain(String string)
+    {
+        long hash = hash( string );
+        int h1 = (int)hash;
+        int h2 = (int) ( hash >>> 32 ) | 1;
+        for( int i = 1; i <= HASH_COUNT; i++ )
+        {
+            long bit = Integer.toUnsignedLong( h1 + i * h2 ) % bitCount;
+            if( ( bits.get( (int) ( bit >>> 6 ) ) & ( 1L << bit ) ) == 0 )
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if more strings were added than the filter was created for, so false positives become too frequent
+     */
+    public boolean isSaturated()
+    {
+        return count.get() > expected;
+    }
+
+    private static long hash(String string)
+    {
+        long h = string.hashCode() * 0x9E3779B97F4A7C15L;
+        h ^= string.length() * 0xC2B2AE3D27D4EB4FL;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 32;
+        return h;
+    }
+}
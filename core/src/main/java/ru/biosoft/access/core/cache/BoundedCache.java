@@ -0,0 +1,650 @@
+package ru.biosoft.access.core.cache;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Concurrent cache bounded by the number of entries which uses W-TinyLFU policy.
+ *
+ * <p>New entries are put into a small admission window (1% of the capacity) managed as LRU.
+ * Entries leaving the window compete with the eviction victim of the main space and are
+ * admitted only if their estimated access frequency ({@link FrequencySketch}) is higher.
+ * The main space is a segmented LRU: entries accessed at least twice are moved
+ * from the probation segment to the protected one (80% of the main space).
+ * Such policy keeps frequently used elements in the cache even when a stream of one-time
+ * requests passes through it, so the hit rate stays close to the optimal one for skewed
+ * (e.g. Zipfian) access distributions.
+ *
+ * <p>Reads are lock free: accesses are recorded into a lossy ring buffer which is replayed
+ * under the eviction lock by the next write or when enough reads were collected.
+ *
+ * <p>Every entry has an estimated weight (heap size in bytes). The total weight of the cache can be
+ * limited by {@link #setMaximumWeight(long)}, and the cache can be registered in the {@link CacheManager}
+ * which limits the total weight of all registered caches.
+ *
+ * <p>Used by {@link ru.biosoft.access.core.AbstractDataCollection} when
+ * {@link ru.biosoft.access.core.DataCollectionConfigConstants#CACHING_STRATEGY} is <code>bounded</code>.
+ */
+public class BoundedCache<K, V> extends AbstractMap<K, V>
+{
+    private static final int READ_BUFFER_SIZE = 128;
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+    private static final int DRAIN_THRESHOLD_MASK = 31;
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+    private static final int DEAD = 3;
+
+    static final class Node<K, V>
+    {
+        final K key;
+        volatile V value;
+        volatile long accessTime;
+        long weight;
+        int queue = WINDOW;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node(K key, V value)
+        {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final FrequencySketch sketch;
+
+    private final AtomicReferenceArray<Node<K, V>> readBuffer = new AtomicReferenceArray<>( READ_BUFFER_SIZE );
+    private final AtomicLong readCounter = new AtomicLong();
+
+    private final AccessOrderQueue<K, V> window = new AccessOrderQueue<>();
+    private final AccessOrderQueue<K, V> probation = new AccessOrderQueue<>();
+    private final AccessOrderQueue<K, V> protectedQueue = new AccessOrderQueue<>();
+
+    private final long maximum;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private long windowSize;
+    private long protectedSize;
+    private long mainSize;
+    private long weightedSize;
+    private long maximumWeight = Long.MAX_VALUE;
+    private volatile long maximumEntryWeight = Long.MAX_VALUE;
+
+    private volatile BiConsumer<? super K, ? super V> evictionListener;
+    private volatile ToLongFunction<? super V> weigher = value -> DEFAULT_WEIGHT;
+    private CacheManager.Registration registration;
+
+    /** Weight of an entry used when no weigher is set. */
+    public static final long DEFAULT_WEIGHT = 1024;
+
+    /**
+     * @param maximum maximal number of entries kept in the cache
+     */
+    public BoundedCache(long maximum)
+    {
+        if( maximum < 0 )
+            throw new IllegalArgumentException( "Cache maximum should be non-negative: " + maximum );
+        this.maximum = maximum;
+        this.windowMaximum = Math.max( 1, maximum / 100 );
+        this.protectedMaximum = (long) ( ( maximum - windowMaximum ) * 0.8 );
+        this.sketch = new FrequencySketch( maximum );
+    }
+
+    public long getMaximum()
+    {
+        return maximum;
+    }
+
+    /**
+     * Sets function which estimates the weight (heap size in bytes) of the cached value.
+     * The weight is computed once when the value is put into the cache.
+     */
+    public void setWeigher(ToLongFunction<? super V> weigher)
+    {
+        this.weigher = Objects.requireNonNull( weigher );
+    }
+
+    /**
+     * @return total weight of the cached entries
+     */
+    public long getWeightedSize()
+    {
+        evictionLock.lock();
+        try
+        {
+            return weightedSize;
+        }
+        finally
+        {
+            evictionLock.unlock();
+        }
+    }
+
+    public long getMaximumWeight()
+    {
+        return maximumWeight;
+    }
+
+    /**
+     * Limits the total weight of the cached entries, the least valuable entries are evicted when it's exceeded.
+     */
+    public void setMaximumWeight(long maximumWeight)
+    {
+        if( maximumWeight < 0 )
+            throw new IllegalArgumentException( "Maximum weight should be non-negative: " + maximumWeight );
+        evictionLock.lock();
+        try
+        {
+            this.maximumWeight = maximumWeight;
+            evict();
+        }
+        finally
+        {
+            evictionLock.unlock();
+        }
+    }
+
+    public long getMaximumEntryWeight()
+    {
+        return maximumEntryWeight;
+    }
+
+    /**
+     * Entries heavier than the given weight are not cached (putting such entry just removes the previous value),
+     * so a single huge entry cannot evict lots of small ones.
+     */
+    public void setMaximumEntryWeight(long maximumEntryWeight)
+    {
+        this.maximumEntryWeight = maximumEntryWeight;
+    }
+
+    /**
+     * Registers this cache in the given manager, so the weight of the cache is counted in the manager budget
+     * and the cache entries can be evicted by the manager.
+     * @param floor weight of the cache below which the manager doesn't evict its entries
+     */
+    public void register(CacheManager manager, long floor)
+    {
+        evictionLock.lock();
+        try
+        {
+            if( registration != null )
+                throw new IllegalStateException( "Cache is already registered" );
+            registration = manager.register( this, floor );
+            registration.add( weightedSize );
+        }
+        finally
+        {
+            evictionLock.unlock();
+        }
+        registration.afterWrite();
+    }
+
+    /**
+     * Sets listener which is notified about entries evicted by the cache policy (not about explicitly removed ones).
+     * The listener is called under the cache lock, so it should be fast and must not access the cache.
+     */
+    public void setEvictionListener(BiConsumer<? super K, ? super V> evictionListener)
+    {
+        this.evictionListener = evictionListener;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Map methods
+    //
+
+    @Override
+    public V get(Object key)
+    {
+        Node<K, V> node = data.get( key );
+        if( node == null )
+            return null;
+        CacheManager.Registration registration = this.registration;
+        if( registration != null )
+            node.accessTime = registration.now();
+        afterRead( node );
+        return node.value;
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return data.containsKey( key );
+    }
+
+    @Override
+    public int size()
+    {
+        return data.size();
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return data.isEmpty();
+    }
+
+    @Override
+    public V put(K key, V value)
+    {
+        Objects.requireNonNull( key );
+        Objects.requireNonNull( value );
+        long weight = weigher.applyAsLong( value );
+        if( weight > maximumEntryWeight )
+            return remove( key );
+        V old = null;
+        evictionLock.lock();
+        try
+        {
+            drainReadBuffer();
+            Node<K, V> node = data.get( key );
+            long time = registration == null ? 0 : registration.tick();
+            if( node != null )
+            {
+                old = node.value;
+                node.value = value;
+                node.accessTime = time;
+                addWeight( weight - node.weight );
+                node.weight = weight;
+                onAccess( node );
+                evict();
+            }
+            else
+            {
+                sketch.increment( key );
+                if( maximum == 0 )
+                    return null;
+                node = new Node<>( key, value );
+                node.accessTime = time;
+                node.weight = weight;
+                data.put( key, node );
+                window.addLast( node );
+                windowSize++;
+                addWeight( weight );
+                evict();
+            }
+        }
+        finally
+        {
+            evictionLock.unlock();
+        }
+        // global eviction is performed outside of the cache lock as it locks other caches
+        if( registration != null )
+            registration.afterWrite();
+        return old;
+    }
+
+    @Override
+    public V remove(Object key)
+    {
+        evictionLock.lock();
+        try
+        {
+            Node<K, V> node = data.remove( key );
+            if( node == null )
+                return null;
+            unlink( node );
+            return node.value;
+        }
+        finally
+        {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear()
+    {
+        evictionLock.lock();
+        try
+        {
+            for( int i = 0; i < READ_BUFFER_SIZE; i++ )
+                readBuffer.set( i, null );
+            for( Node<K, V> node : data.values() )
+                node.queue = DEAD;
+            data.clear();
+            window.clear();
+            probation.clear();
+            protectedQueue.clear();
+            windowSize = protectedSize = mainSize = 0;
+            addWeight( -weightedSize );
+        }
+        finally
+        {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet()
+    {
+        return new AbstractSet<Entry<K, V>>()
+        {
+            @Override
+            public Iterator<Entry<K, V>> iterator()
+            {
+                Iterator<Node<K, V>> it = data.values().iterator();
+                return new Iterator<Entry<K, V>>()
+                {
+                    private K lastKey;
+
+                    @Override
+                    public boolean hasNext()
+                    {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public Entry<K, V> next()
+                    {
+                        Node<K, V> node = it.next();
+                        lastKey = node.key;
+                        return new SimpleImmutableEntry<>( node.key, node.value );
+                    }
+
+                    @Override
+                    public void remove()
+                    {
+                        if( lastKey == null )
+                            throw new IllegalStateException();
+                        BoundedCache.this.remove( lastKey );
+                        lastKey = null;
+                    }
+                };
+            }
+
+            @Override
+            public int size()
+            {
+                return data.size();
+            }
+        };
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Policy
+    //
+
+    private void afterRead(Node<K, V> node)
+    {
+        long counter = readCounter.getAndIncrement();
+        readBuffer.lazySet( (int) ( counter & READ_BUFFER_MASK ), node );
+        if( ( counter & DRAIN_THRESHOLD_MASK ) == DRAIN_THRESHOLD_MASK && evictionLock.tryLock() )
+        {
+            try
+            {
+                drainReadBuffer();
+            }
+            finally
+            {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private void drainReadBuffer()
+    {
+        for( int i = 0; i < READ_BUFFER_SIZE; i++ )
+        {
+            Node<K, V> node = readBuffer.getAndSet( i, null );
+            if( node != null )
+                onAccess( node );
+        }
+    }
+
+    private void onAccess(Node<K, V> node)
+    {
+        sketch.increment( node.key );
+        switch( node.queue )
+        {
+            case WINDOW:
+                window.moveToBack( node );
+                break;
+            case PROBATION:
+                probation.remove( node );
+                node.queue = PROTECTED;
+                protectedQueue.addLast( node );
+                protectedSize++;
+                while( protectedSize > protectedMaximum )
+                {
+                    Node<K, V> demoted = protectedQueue.pollFirst();
+                    protectedSize--;
+                    demoted.queue = PROBATION;
+                    probation.addLast( demoted );
+                }
+                break;
+            case PROTECTED:
+                protectedQueue.moveToBack( node );
+                break;
+            default:
+                // node was already evicted or removed
+        }
+    }
+
+    /**
+     * Moves entries exceeding the window into the main space. Each candidate leaving the window
+     * is admitted only if it is accessed more often than the victim it would replace.
+     */
+    private void evict()
+    {
+        while( windowSize > windowMaximum )
+        {
+            Node<K, V> candidate = window.pollFirst();
+            windowSize--;
+            boolean admit = true;
+            while( windowSize + mainSize + 1 > maximum )
+            {
+                Node<K, V> victim = probation.peekFirst();
+                if( victim == null )
+                    victim = protectedQueue.peekFirst();
+                if( victim == null )
+                    break;
+                if( sketch.frequency( candidate.key ) > sketch.frequency( victim.key ) )
+                {
+                    evictNode( victim );
+                }
+                else
+                {
+                    admit = false;
+                    break;
+                }
+            }
+            if( admit )
+            {
+                candidate.queue = PROBATION;
+                probation.addLast( candidate );
+                mainSize++;
+            }
+            else
+            {
+                candidate.queue = DEAD;
+                addWeight( -candidate.weight );
+                data.remove( candidate.key, candidate );
+                notifyEviction( candidate );
+            }
+        }
+        while( windowSize + mainSize > maximum || weightedSize > maximumWeight )
+        {
+            Node<K, V> victim = nextVictim();
+            if( victim == null )
+                break;
+            evictNode( victim );
+        }
+    }
+
+    /**
+     * @return the coldest entry: probation is drained first, then protected; the window holding
+     * the most recent entries is touched last
+     */
+    private Node<K, V> nextVictim()
+    {
+        Node<K, V> victim = probation.peekFirst();
+        if( victim == null )
+            victim = protectedQueue.peekFirst();
+        if( victim == null )
+            victim = window.peekFirst();
+        return victim;
+    }
+
+    private void evictNode(Node<K, V> node)
+    {
+        unlink( node );
+        data.remove( node.key, node );
+        notifyEviction( node );
+    }
+
+    private void notifyEviction(Node<K, V> node)
+    {
+        BiConsumer<? super K, ? super V> listener = evictionListener;
+        if( listener != null )
+            listener.accept( node.key, node.value );
+    }
+
+    private void unlink(Node<K, V> node)
+    {
+        switch( node.queue )
+        {
+            case WINDOW:
+                window.remove( node );
+                windowSize--;
+                break;
+            case PROBATION:
+                probation.remove( node );
+                mainSize--;
+                break;
+            case PROTECTED:
+                protectedQueue.remove( node );
+                protectedSize--;
+                mainSize--;
+                break;
+            default:
+                return;
+        }
+        node.queue = DEAD;
+        addWeight( -node.weight );
+    }
+
+    private void addWeight(long delta)
+    {
+        weightedSize += delta;
+        if( registration != null )
+            registration.add( delta );
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Global eviction support (used by CacheManager)
+    //
+
+    /**
+     * @return the entry which would be evicted next or null if the cache is empty
+     */
+    Node<K, V> peekVictim()
+    {
+        evictionLock.lock();
+        try
+        {
+            return nextVictim();
+        }
+        finally
+        {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Evicts the entry previously returned by {@link #peekVictim()} if it's still in the cache.
+     */
+    boolean evictVictim(Node<?, ?> node)
+    {
+        evictionLock.lock();
+        try
+        {
+            if( node.queue == DEAD || data.get( node.key ) != node )
+                return false;
+            @SuppressWarnings ( "unchecked" )
+            Node<K, V> victim = (Node<K, V>)node;
+            evictNode( victim );
+            return true;
+        }
+        finally
+        {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Intrusive doubly linked list of nodes ordered from the least to the most recently used.
+     */
+    private static final class AccessOrderQueue<K, V>
+    {
+        private Node<K, V> first;
+        private Node<K, V> last;
+
+        Node<K, V> peekFirst()
+        {
+            return first;
+        }
+
+        Node<K, V> pollFirst()
+        {
+            Node<K, V> node = first;
+            if( node != null )
+                remove( node );
+            return node;
+        }
+
+        void addLast(Node<K, V> node)
+        {
+            node.prev = last;
+            node.next = null;
+            if( last == null )
+                first = node;
+            else
+                last.next = node;
+            last = node;
+        }
+
+        void moveToBack(Node<K, V> node)
+        {
+            if( node != last )
+            {
+                remove( node );
+                addLast( node );
+            }
+        }
+
+        void remove(Node<K, V> node)
+        {
+            Node<K, V> prev = node.prev;
+            Node<K, V> next = node.next;
+            if( prev == null )
+                first = next;
+            else
+                prev.next = next;
+            if( next == null )
+                last = prev;
+            else
+                next.prev = prev;
+            node.prev = null;
+            node.next = null;
+        }
+
+        void clear()
+        {
+            first = last = null;
+        }
+    }
+}
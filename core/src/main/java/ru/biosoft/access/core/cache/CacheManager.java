@@ -0,0 +1,243 @@
+package ru.biosoft.access.core.cache;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+import ru.biosoft.access.core.Environment;
+
+/**
+ * Keeps the total weight of all registered caches within one heap budget.
+ *
+ * <p>When the budget is exceeded, the manager evicts cold entries across all caches: each cache offers its
+ * next eviction victim, and victims are evicted in the order of decreasing <code>age * weight</code>,
+ * where age is measured by the global logical clock advanced on every cache write.
+ * So big entries which were not used for a long time are evicted first, whichever collection they belong to.
+ * A cache is not touched by the manager while its weight is below its floor.
+ *
+ * <p>Caches are registered weakly: a cache of a collection which was garbage collected is unregistered
+ * automatically and its weight is released.
+ *
+ * <p>The budget is taken from the {@link Environment} value {@value #CACHE_BUDGET} (number of bytes)
+ * when the manager is created, by default it's a quarter of the maximal heap size.
+ *
+ * @see BoundedCache#register(CacheManager, long)
+ */
+public class CacheManager
+{
+    private static final Logger log = Logger.getLogger( CacheManager.class.getName() );
+
+    /** Name of {@link Environment} value which defines the budget of the shared cache manager in bytes. */
+    public static final String CACHE_BUDGET = "cacheBudget";
+
+    private static final CacheManager instance = new CacheManager( getDefaultBudget() );
+
+    /**
+     * @return manager shared by all data collections
+     */
+    public static CacheManager getInstance()
+    {
+        return instance;
+    }
+
+    private static long getDefaultBudget()
+    {
+        Object budget = Environment.getValue( CACHE_BUDGET );
+        if( budget instanceof Number )
+            return ( (Number)budget ).longValue();
+        if( budget != null )
+        {
+            try
+            {
+                return Long.parseLong( budget.toString().trim() );
+            }
+            catch( NumberFormatException e )
+            {
+                log.warning( "Invalid " + CACHE_BUDGET + " '" + budget + "', default is used" );
+            }
+        }
+        return Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    private volatile long budget;
+    private final AtomicLong weight = new AtomicLong();
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final Set<Registration> registrations = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    public CacheManager(long budget)
+    {
+        this.budget = budget;
+    }
+
+    /**
+     * @return maximal total weight of the registered caches in bytes
+     */
+    public long getBudget()
+    {
+        return budget;
+    }
+
+    public void setBudget(long budget)
+    {
+        this.budget = budget;
+        evict();
+    }
+
+    /**
+     * @return current total weight of the registered caches in bytes
+     */
+    public long getWeight()
+    {
+        return weight.get();
+    }
+
+    /**
+     * @return number of entries evicted by the manager
+     */
+    public long getEvictionCount()
+    {
+        return evictionCount.get();
+    }
+
+    /**
+     * @return number of registered caches which are still alive
+     */
+    public int getCacheCount()
+    {
+        int count = 0;
+        for( Registration registration : registrations )
+            if( registration.cache.get() != null )
+                count++;
+        return count;
+    }
+
+    Registration register(BoundedCache<?, ?> cache, long floor)
+    {
+        Registration registration = new Registration( cache, floor );
+        registrations.add( registration );
+        return registration;
+    }
+
+    /**
+     * Evicts cold entries until the total weight fits into the budget.
+     * Does nothing if the eviction is already performed by another thread.
+     */
+    public void evict()
+    {
+        if( !evictionLock.tryLock() )
+            return;
+        try
+        {
+            while( weight.get() > budget )
+            {
+                List<Victim> victims = collectVictims();
+                if( victims.isEmpty() )
+                    break;
+                victims.sort( null );
+                for( Victim victim : victims )
+                {
+                    if( weight.get() <= budget )
+                        break;
+                    if( victim.registration.weight.get() > victim.registration.floor && victim.cache.evictVictim( victim.node ) )
+                        evictionCount.incrementAndGet();
+                }
+            }
+        }
+        finally
+        {
+            evictionLock.unlock();
+        }
+    }
+
+    private List<Victim> collectVictims()
+    {
+        long now = clock.get();
+        List<Victim> victims = new ArrayList<>();
+        for( Iterator<Registration> it = registrations.iterator(); it.hasNext(); )
+        {
+            Registration registration = it.next();
+            BoundedCache<?, ?> cache = registration.cache.get();
+            if( cache == null )
+            {
+                it.remove();
+                weight.addAndGet( -registration.weight.getAndSet( 0 ) );
+                continue;
+            }
+            if( registration.weight.get() <= registration.floor )
+                continue;
+            BoundedCache.Node<?, ?> node = cache.peekVictim();
+            if( node != null )
+                victims.add( new Victim( registration, cache, node, ( now - node.accessTime + 1.0 ) * node.weight ) );
+        }
+        return victims;
+    }
+
+    private static class Victim implements Comparable<Victim>
+    {
+        final Registration registration;
+        final BoundedCache<?, ?> cache;
+        final BoundedCache.Node<?, ?> node;
+        final double score;
+
+        Victim(Registration registration, BoundedCache<?, ?> cache, BoundedCache.Node<?, ?> node, double score)
+        {
+            this.registration = registration;
+            this.cache = cache;
+            this.node = node;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(Victim o)
+        {
+            return Double.compare( o.score, score );
+        }
+    }
+
+    /**
+     * Link between the manager and the registered cache. The cache holds its registration strongly
+     * while the manager refers to the cache weakly.
+     */
+    class Registration
+    {
+        private final WeakReference<BoundedCache<?, ?>> cache;
+        private final long floor;
+        private final AtomicLong weight = new AtomicLong();
+
+        private Registration(BoundedCache<?, ?> cache, long floor)
+        {
+            this.cache = new WeakReference<>( cache );
+            this.floor = floor;
+        }
+
+        void add(long delta)
+        {
+            weight.addAndGet( delta );
+            CacheManager.this.weight.addAndGet( delta );
+        }
+
+        long now()
+        {
+            return clock.get();
+        }
+
+        long tick()
+        {
+            return clock.incrementAndGet();
+        }
+
+        void afterWrite()
+        {
+            if( CacheManager.this.weight.get() > budget )
+                evict();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package ru.biosoft.access.core.cache;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable snapshot of the element cache statistics of a data collection.
+ *
+ * <p>Hits and misses are counted by {@link ru.biosoft.access.core.AbstractDataCollection#get(String)},
+ * loads are the actual calls of <code>doGet</code> (concurrent misses of the same element share one load).
+ * Evictions are known only for caches which report them (currently {@link BoundedCache}),
+ * elements collected by the garbage collector from soft and weak caches are not counted.
+ *
+ * @see ru.biosoft.access.core.DataCollection#getCacheStats()
+ * @see CacheStatsCollector
+ */
+public final class CacheStats
+{
+    public static final CacheStats EMPTY = new CacheStats( 0, 0, 0, 0, 0, 0, 0 );
+
+    private final long hitCount;
+    private final long missCount;
+    private final long loadCount;
+    private final long totalLoadTime;
+    private final long maxLoadTime;
+    private final long evictionCount;
+    private final long size;
+
+    public CacheStats(long hitCount, long missCount, long loadCount, long totalLoadTime, long maxLoadTime, long evictionCount, long size)
+    {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.loadCount = loadCount;
+        this.totalLoadTime = totalLoadTime;
+        this.maxLoadTime = maxLoadTime;
+        this.evictionCount = evictionCount;
+        this.size = size;
+    }
+
+    public long getHitCount()
+    {
+        return hitCount;
+    }
+
+    public long getMissCount()
+    {
+        return missCount;
+    }
+
+    public long getRequestCount()
+    {
+        return hitCount + missCount;
+    }
+
+    /**
+     * @return ratio of requests served from the cache or 1 if there were no requests
+     */
+    public double getHitRate()
+    {
+        long requestCount = getRequestCount();
+        return requestCount == 0 ? 1.0 : (double)hitCount / requestCount;
+    }
+
+    /**
+     * @return number of elements actually loaded by <code>doGet</code>
+     */
+    public long getLoadCount()
+    {
+        return loadCount;
+    }
+
+    /**
+     * @return total time spent in loading elements, in nanoseconds
+     */
+    public long getTotalLoadTime()
+    {
+        return totalLoadTime;
+    }
+
+    /**
+     * @return maximal time of single element load, in nanoseconds; batch loads are not taken into account
+     */
+    public long getMaxLoadTime()
+    {
+        return maxLoadTime;
+    }
+
+    /**
+     * @return average time of single element load, in nanoseconds
+     */
+    public double getAverageLoadTime()
+    {
+        return loadCount == 0 ? 0.0 : (double)totalLoadTime / loadCount;
+    }
+
+    public long getEvictionCount()
+    {
+        return evictionCount;
+    }
+
+    /**
+     * @return number of elements in the cache at the moment when the snapshot was taken
+     */
+    public long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * @return sum of this and other statistics (maximal load time is the maximum of both)
+     */
+    public CacheStats plus(CacheStats other)
+    {
+        return new CacheStats( hitCount + other.hitCount, missCount + other.missCount, loadCount + other.loadCount,
+                totalLoadTime + other.totalLoadTime, Math.max( maxLoadTime, other.maxLoadTime ), evictionCount + other.evictionCount,
+                size + other.size );
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "hits=%d, misses=%d (hit rate %.1f%%), loads=%d, load time total=%dms, max=%dms, evictions=%d, size=%d",
+                hitCount, missCount, getHitRate() * 100, loadCount, TimeUnit.NANOSECONDS.toMillis( totalLoadTime ),
+                TimeUnit.NANOSECONDS.toMillis( maxLoadTime ), evictionCount, size );
+    }
+}
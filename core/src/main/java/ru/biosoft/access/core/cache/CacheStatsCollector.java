@@ -0,0 +1,98 @@
+package ru.biosoft.access.core.cache;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import ru.biosoft.access.core.AbstractDataCollection;
+import ru.biosoft.access.core.CollectionFactory;
+import ru.biosoft.access.core.DataCollection;
+import ru.biosoft.access.core.DataElementPath;
+
+/**
+ * Collects cache statistics of all data collections of the repository.
+ *
+ * <p>The walk starts from the roots registered in {@link CollectionFactory} and descends only into
+ * already cached child collections, so collecting statistics never loads any element.
+ */
+public class CacheStatsCollector
+{
+    /**
+     * Orders statistics so that collections which thrash the cache most (i.e. load elements most often) go first.
+     */
+    public static final Comparator<CacheStats> BY_THRASHING = Comparator.comparingLong( CacheStats::getLoadCount )
+            .thenComparingLong( CacheStats::getEvictionCount ).thenComparingLong( CacheStats::getMissCount ).reversed();
+
+    /**
+     * @return statistics of all loaded collections which have been requested or have cached elements,
+     * ordered by {@link #BY_THRASHING}
+     */
+    public static Map<DataElementPath, CacheStats> collect()
+    {
+        Map<DataElementPath, CacheStats> result = new LinkedHashMap<>();
+        for( String rootName : CollectionFactory.getRootNames() )
+        {
+            DataCollection<?> root = CollectionFactory.getDataCollection( rootName );
+            if( root != null )
+                collect( root, result );
+        }
+        return sort( result );
+    }
+
+    /**
+     * @return statistics of given collection and its loaded descendants ordered by {@link #BY_THRASHING}
+     */
+    public static Map<DataElementPath, CacheStats> collect(DataCollection<?> root)
+    {
+        Map<DataElementPath, CacheStats> result = new LinkedHashMap<>();
+        collect( root, result );
+        return sort( result );
+    }
+
+    /**
+     * @return sum of all given statistics
+     */
+    public static CacheStats total(Map<DataElementPath, CacheStats> stats)
+    {
+        return stats.values().stream().reduce( CacheStats.EMPTY, CacheStats::plus );
+    }
+
+    private static void collect(DataCollection<?> root, Map<DataElementPath, CacheStats> result)
+    {
+        Set<DataCollection<?>> visited = Collections.newSetFromMap( new IdentityHashMap<>() );
+        Deque<DataCollection<?>> queue = new ArrayDeque<>();
+        queue.add( root );
+        while( !queue.isEmpty() )
+        {
+            DataCollection<?> dc = queue.poll();
+            if( !visited.add( dc ) )
+                continue;
+            CacheStats stats = dc.getCacheStats();
+            if( stats.getRequestCount() > 0 || stats.getSize() > 0 )
+                result.put( dc.getCompletePath(), stats );
+            if( dc instanceof AbstractDataCollection )
+            {
+                ( (AbstractDataCollection<?>)dc ).cachedElements().filter( DataCollection.class::isInstance )
+                        .forEach( de -> queue.add( (DataCollection<?>)de ) );
+            }
+        }
+    }
+
+    private static Map<DataElementPath, CacheStats> sort(Map<DataElementPath, CacheStats> stats)
+    {
+        List<Entry<DataElementPath, CacheStats>> entries = new ArrayList<>( stats.entrySet() );
+        entries.sort( Entry.comparingByValue( BY_THRASHING ) );
+        Map<DataElementPath, CacheStats> result = new LinkedHashMap<>();
+        for( Entry<DataElementPath, CacheStats> entry : entries )
+            result.put( entry.getKey(), entry.getValue() );
+        return result;
+    }
+}
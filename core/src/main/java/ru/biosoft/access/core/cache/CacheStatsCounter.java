@@ -0,0 +1,77 @@
+package ru.biosoft.access.core.cache;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread safe accumulator of cache statistics. Recording is cheap enough to be done on every request.
+ *
+ * @see CacheStats
+ */
+public class CacheStatsCounter
+{
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder totalLoadTime = new LongAdder();
+    private final LongAccumulator maxLoadTime = new LongAccumulator( Math::max, 0 );
+    private final LongAdder evictionCount = new LongAdder();
+
+    public void recordHit()
+    {
+        hitCount.increment();
+    }
+
+    public void recordMiss()
+    {
+        missCount.increment();
+    }
+
+    /**
+     * @param loadTime time spent in the load, in nanoseconds
+     */
+    public void recordLoad(long loadTime)
+    {
+        loadCount.increment();
+        totalLoadTime.add( loadTime );
+        maxLoadTime.accumulate( loadTime );
+    }
+
+    /**
+     * Records batch load of several elements.
+     * Time of the individual elements is unknown, so the batch doesn't affect the maximal load time.
+     * @param count number of loaded elements
+     * @param loadTime time spent in the whole batch, in nanoseconds
+     */
+    public void recordLoads(int count, long loadTime)
+    {
+        if( count <= 0 )
+            return;
+        loadCount.add( count );
+        totalLoadTime.add( loadTime );
+    }
+
+    public void recordEviction()
+    {
+        evictionCount.increment();
+    }
+
+    /**
+     * @param size current number of cached elements
+     */
+    public CacheStats snapshot(long size)
+    {
+        return new CacheStats( hitCount.sum(), missCount.sum(), loadCount.sum(), totalLoadTime.sum(), maxLoadTime.get(),
+                evictionCount.sum(), size );
+    }
+
+    public void reset()
+    {
+        hitCount.reset();
+        missCount.reset();
+        loadCount.reset();
+        totalLoadTime.reset();
+        maxLoadTime.reset();
+        evictionCount.reset();
+    }
+}
@@ -0,0 +1,100 @@
+package ru.biosoft.access.core.cache;
+
+/**
+ * Count-Min sketch with 4-bit counters used by {@link BoundedCache} to estimate
+ * how often a key was accessed recently.
+ *
+ * <p>Every counter is saturated at 15. When the number of recorded increments reaches
+ * the sample size (ten times the cache maximum) all counters are halved, so the sketch
+ * forgets old popularity and adapts to the changing access pattern.
+ *
+ * <p>The class is not thread safe, callers must guard it with their own lock.
+ */
+class FrequencySketch
+{
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAXIMUM_TABLE_SIZE = 1 << 24;
+
+    private long[] table;
+    private int tableMask;
+    private int sampleSize;
+    private int size;
+
+    FrequencySketch(long maximumSize)
+    {
+        int capacity = (int)Math.min( Math.max( maximumSize, 16 ), MAXIMUM_TABLE_SIZE );
+        table = new long[Integer.highestOneBit( capacity - 1 ) << 1];
+        tableMask = table.length - 1;
+        sampleSize = (int)Math.min( 10L * capacity, Integer.MAX_VALUE );
+    }
+
+    /**
+     * @return estimated number of recent occurrences of the key, from 0 to 15
+     */
+    int frequency(Object key)
+    {
+        int hash = spread( key.hashCode() );
+        int frequency = 15;
+        for( int i = 0; i < 4; i++ )
+        {
+            long h = hash( hash, i );
+            int offset = offset( h );
+            int count = (int) ( ( table[index( h )] >>> offset ) & 0xfL );
+            frequency = Math.min( frequency, count );
+        }
+        return frequency;
+    }
+
+    /**
+     * Records an access of the key. Periodically ages all counters.
+     */
+    void increment(Object key)
+    {
+        int hash = spread( key.hashCode() );
+        boolean added = false;
+        for( int i = 0; i < 4; i++ )
+        {
+            long h = hash( hash, i );
+            int index = index( h );
+            int offset = offset( h );
+            if( ( ( table[index] >>> offset ) & 0xfL ) != 0xfL )
+            {
+                table[index] += 1L << offset;
+                added = true;
+            }
+        }
+        if( added && ++size >= sampleSize )
+            reset();
+    }
+
+    private void reset()
+    {
+        for( int i = 0; i < table.length; i++ )
+            table[i] = ( table[i] >>> 1 ) & RESET_MASK;
+        size = size >>> 1;
+    }
+
+    private int index(long h)
+    {
+        return (int)h & tableMask;
+    }
+
+    private static int offset(long h)
+    {
+        return ( (int) ( h >>> 40 ) & 0xf ) << 2;
+    }
+
+    private static long hash(int hash, int i)
+    {
+        long h = ( hash + SEEDS[i] ) * SEEDS[i];
+        return h + ( h >>> 32 );
+    }
+
+    private static int spread(int x)
+    {
+        x = ( ( x >>> 16 ) ^ x ) * 0x45d9f3b;
+        x = ( ( x >>> 16 ) ^ x ) * 0x45d9f3b;
+        return ( x >>> 16 ) ^ x;
+    }
+}
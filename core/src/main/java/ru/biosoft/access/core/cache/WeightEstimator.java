@@ -0,0 +1,16 @@
+package ru.biosoft.access.core.cache;
+
+import ru.biosoft.access.core.DataElement;
+
+/**
+ * Estimates heap size retained by data elements of some type. Estimators are registered in {@link WeightEstimators}
+ * and used by bounded collection caches to charge cached elements by their approximate size.
+ */
+@FunctionalInterface
+public interface WeightEstimator<T extends DataElement>
+{
+    /**
+     * @return approximate number of bytes retained by the element or negative value if the size is unknown
+     */
+    long estimateWeight(T de);
+}
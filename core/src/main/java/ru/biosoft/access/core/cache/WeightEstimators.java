@@ -0,0 +1,60 @@
+package ru.biosoft.access.core.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ru.biosoft.access.core.DataElement;
+import ru.biosoft.access.core.TextDataElement;
+
+/**
+ * Registry of {@link WeightEstimator}s. The estimator registered for the closest superclass of the element is used.
+ *
+ * <p>By default estimator is registered for {@link TextDataElement} (which charges its content).
+ * Modules register estimators for their own element types, usually in the static initializer of the element class.
+ */
+public class WeightEstimators
+{
+    /** Approximate size of a data element object without its content. */
+    public static final long ELEMENT_OVERHEAD = 64;
+
+    private static final WeightEstimator<DataElement> UNKNOWN = de -> -1;
+
+    private static final Map<Class<?>, WeightEstimator<?>> estimators = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, WeightEstimator<?>> resolved = new ConcurrentHashMap<>();
+
+    static
+    {
+        register( TextDataElement.class, de -> {
+            String content = de.getContent();
+            return ELEMENT_OVERHEAD + ( content == null ? 0 : 40 + 2L * content.length() );
+        } );
+    }
+
+    public static <T extends DataElement> void register(Class<T> type, WeightEstimator<? super T> estimator)
+    {
+        estimators.put( type, estimator );
+        resolved.clear();
+    }
+
+    /**
+     * @return approximate number of bytes retained by the element or negative value if there's no estimator for it
+     */
+    @SuppressWarnings ( "unchecked" )
+    public static long estimateWeight(DataElement de)
+    {
+        WeightEstimator<DataElement> estimator = (WeightEstimator<DataElement>)resolved.computeIfAbsent( de.getClass(),
+                WeightEstimators::resolve );
+        return estimator.estimateWeight( de );
+    }
+
+    private static WeightEstimator<?> resolve(Class<?> type)
+    {
+        for( Class<?> clazz = type; clazz != null; clazz = clazz.getSuperclass() )
+        {
+            WeightEstimator<?> estimator = estimators.get( clazz );
+            if( estimator != null )
+                return estimator;
+        }
+        return UNKNOWN;
+    }
+}
@@ -1,17 +1,35 @@
 package ru.biosoft.access.core.filter;
 
 import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Stream;
 
 import com.developmentontheedge.beans.Option;
 
+import ru.biosoft.access.core.DataCollection;
 import ru.biosoft.access.core.DataElement;
+import ru.biosoft.access.core.DataElementDescriptor;
+import ru.biosoft.exception.ExceptionRegistry;
 
 /**
- * TODO comments
+ * Conjunction of filters.
+ *
+ * Sub-filters are evaluated by the compiled plan rather than in declaration order: {@link NameFilter}s go first,
+ * then {@link DescriptorFilter}s, then filters which need the element itself; within these levels filters are ordered
+ * by their cost and selectivity observed at runtime. The plan is rebuilt when the filter list changes.
+ * If some sub-filters are {@link QueryFilter}s, the filter acts as the query itself:
+ * their results restrict the candidates checked by the rest of sub-filters.
+ * The filter is a {@link DescriptorFilter} itself: its name and descriptor sub-filters may be checked without loading
+ * the element, and the element is required only if some sub-filter needs it.
  */
 @SuppressWarnings("serial")
-public class CompositeFilter<T extends DataElement> extends MutableFilter<T>
+public class CompositeFilter<T extends DataElement> extends MutableFilter<T> implements QueryFilter<T>, DescriptorFilter<T>
 {
     public CompositeFilter()
     {}
@@ -33,7 +51,264 @@ public class CompositeFilter<T extends DataElement> extends MutableFilter<T>
         if(de == null)
             return false;
 
-        return Stream.of( filterList ).allMatch( filter -> filter.isAcceptable( de ) );
+        return getPlan().isAcceptable( de, false );
+    }
+
+    /**
+     * Checks only name and descriptor sub-filters.
+     */
+    @Override
+    public boolean isDescriptorAcceptable(String name, DataElementDescriptor descriptor)
+    {
+        if( !isEnabled() )
+            return true;
+        return getPlan().isDescriptorAcceptable( name, descriptor );
+    }
+
+    @Override
+    public boolean isElementRequired()
+    {
+        return isEnabled() && getPlan().isElementRequired();
+    }
+
+    @Override
+    public boolean isDescriptorRequired()
+    {
+        return isEnabled() && getPlan().hasDescriptorFilters;
+    }
+
+    /**
+     * Runs the queries of {@link QueryFilter} sub-filters and checks their common results by the rest of sub-filters.
+     * @return names of accepted elements or <code>null</code> if there are no query sub-filters or this filter is disabled,
+     * so the elements should be checked one by one
+     */
+    @Override
+    public List<String> doQuery(DataCollection<? extends DataElement> dc)
+    {
+        if( !isEnabled() )
+            return null;
+        Plan plan = getPlan();
+        if( !plan.hasQueries )
+            return null;
+
+        List<String> candidates = null;
+        for( Filter<?> filter : plan.source )
+        {
+            if( ! ( filter instanceof QueryFilter ) )
+                continue;
+            List<String> result = ( (QueryFilter<?>)filter ).doQuery( dc );
+            if( result == null )
+                return null;
+            if( candidates == null )
+            {
+                candidates = new ArrayList<>( result );
+            }
+            else
+            {
+                Set<String> names = new HashSet<>( result );
+                candidates.removeIf( name -> !names.contains( name ) );
+            }
+        }
+        if( plan.members.length == plan.queryCount || candidates.isEmpty() )
+            return candidates;
+
+        candidates.removeIf( name -> !plan.isDescriptorAcceptable( name, plan.hasDescriptorFilters ? dc.getDescriptor( name ) : null ) );
+        if( !plan.isElementRequired() || candidates.isEmpty() )
+            return candidates;
+        Map<String, ? extends DataElement> elements;
+        try
+        {
+            elements = dc.getAll( candidates );
+        }
+        catch( Exception e )
+        {
+            throw ExceptionRegistry.translateException( e );
+        }
+        List<String> accepted = new ArrayList<>();
+        for( String name : candidates )
+        {
+            DataElement de = elements.get( name );
+            if( de != null && plan.isAcceptable( de, true ) )
+                accepted.add( name );
+        }
+        return accepted;
+    }
+
+    private transient volatile Plan plan;
+
+    private Plan getPlan()
+    {
+        Plan current = plan;
+        if( current == null || current.source != filterList )
+            plan = current = new Plan( filterList );
+        return current;
+    }
+
+    /**
+     * Execution plan of sub-filters. Every sub-filter tracks the share of rejected elements and its average time
+     * (measured for every 64th call to keep timing cheap), and sub-filters are periodically reordered
+     * by time divided by rejection rate: cheap filters rejecting many elements go first.
+     * Statistics are updated without synchronization, so they are approximate when filter is used by several threads.
+     */
+    private static class Plan
+    {
+        private static final int SAMPLING_MASK = 63;
+        private static final int REORDER_PERIOD = 4096;
+
+        final Filter<?>[] source;
+        final boolean hasQueries;
+        final int queryCount;
+        /** Whether some sub-filters need the descriptor, not only the name. */
+        final boolean hasDescriptorFilters;
+        volatile Member[] members;
+        private int evaluations;
+
+        Plan(Filter<?>[] source)
+        {
+            this.source = source;
+            Member[] members = new Member[source.length];
+            int queryCount = 0;
+            boolean hasDescriptorFilters = false;
+            for( int i = 0; i < source.length; i++ )
+            {
+                members[i] = new Member( source[i] );
+                if( members[i].query )
+                    queryCount++;
+                if( members[i].descriptorFilter != null && members[i].descriptorFilter.isDescriptorRequired() )
+                    hasDescriptorFilters = true;
+            }
+            this.queryCount = queryCount;
+            this.hasQueries = queryCount > 0;
+            this.hasDescriptorFilters = hasDescriptorFilters;
+            // by level, otherwise declaration order until statistics are collected
+            Arrays.sort( members, Comparator.comparingInt( member -> member.level ) );
+            this.members = members;
+        }
+
+        /**
+         * Checks name and descriptor sub-filters, other sub-filters are not evaluated.
+         * @param descriptor descriptor of the element, may be <code>null</code> if there are no descriptor sub-filters
+         */
+        boolean isDescriptorAcceptable(String name, DataElementDescriptor descriptor)
+        {
+            Member[] current = members;
+            for( Member member : current )
+            {
+                if( member.descriptorFilter == null )
+                    continue;
+                if( !member.acceptsDescriptor( name, descriptor ) )
+                    return false;
+            }
+            return true;
+        }
+
+        /**
+         * @return <code>true</code> if some sub-filter can't be evaluated by the name and descriptor only
+         */
+        boolean isElementRequired()
+        {
+            for( Member member : members )
+            {
+                if( member.descriptorFilter == null || member.descriptorFilter.isElementRequired() )
+                    return true;
+            }
+            return false;
+        }
+
+        /**
+         * @param skipQueries whether query sub-filters should be skipped as their results are already applied
+         */
+        boolean isAcceptable(DataElement de, boolean skipQueries)
+        {
+            Member[] current = members;
+            int n = ++evaluations;
+            boolean sample = ( n & SAMPLING_MASK ) == 0;
+            boolean result = true;
+            for( Member member : current )
+            {
+                if( skipQueries && member.query )
+                    continue;
+                if( !member.accepts( de, sample ) )
+                {
+                    result = false;
+                    break;
+                }
+            }
+            if( n % REORDER_PERIOD == 0 )
+                reorder();
+            return result;
+        }
+
+        private void reorder()
+        {
+            Member[] reordered = members.clone();
+            Arrays.sort( reordered, Comparator.comparingInt( ( Member member ) -> member.level ).thenComparingDouble( Member::getRank ) );
+            members = reordered;
+        }
+    }
+
+    private static class Member
+    {
+        static final int NAME = 0;
+        static final int DESCRIPTOR = 1;
+        static final int ELEMENT = 2;
+
+        final Filter<DataElement> filter;
+        final NameFilter<?> nameFilter;
+        final DescriptorFilter<?> descriptorFilter;
+        final int level;
+        final boolean query;
+        long evaluated;
+        long rejected;
+        long sampled;
+        long sampledNanos;
+
+        @SuppressWarnings ( "unchecked" )
+        Member(Filter<?> filter)
+        {
+            this.filter = (Filter<DataElement>)filter;
+            this.nameFilter = filter instanceof NameFilter ? (NameFilter<?>)filter : null;
+            this.descriptorFilter = filter instanceof DescriptorFilter ? (DescriptorFilter<?>)filter : null;
+            // nested composite filters may change, so their level is not fixed
+            this.level = nameFilter != null ? NAME
+                    : descriptorFilter != null && ! ( filter instanceof CompositeFilter ) && !descriptorFilter.isElementRequired() ? DESCRIPTOR
+                    : ELEMENT;
+            this.query = filter instanceof QueryFilter;
+        }
+
+        boolean accepts(DataElement de, boolean sample)
+        {
+            long start = sample ? System.nanoTime() : 0;
+            boolean result = nameFilter != null ? nameFilter.isNameAcceptable( de.getName() ) : filter.isAcceptable( de );
+            if( sample )
+            {
+                sampledNanos += System.nanoTime() - start;
+                sampled++;
+            }
+            evaluated++;
+            if( !result )
+                rejected++;
+            return result;
+        }
+
+        boolean acceptsDescriptor(String name, DataElementDescriptor descriptor)
+        {
+            boolean result = nameFilter != null ? nameFilter.isNameAcceptable( name ) : descriptorFilter.isDescriptorAcceptable( name, descriptor );
+            evaluated++;
+            if( !result )
+                rejected++;
+            return result;
+        }
+
+        /**
+         * @return expected cost of rejecting an element by this filter, lower is better
+         */
+        double getRank()
+        {
+            double cost = sampled == 0 ? 1 : (double)sampledNanos / sampled;
+            double rejection = ( rejected + 1.0 ) / ( evaluated + 2.0 );
+            return cost / rejection;
+        }
     }
 
     @Override
@@ -98,6 +373,7 @@ public class CompositeFilter<T extends DataElement> extends MutableFilter<T>
     {
         Filter<? super T> oldValue = filter;
         filterList[i]   = filter;
+        plan = null;
         if(filter instanceof MutableFilter)
             ((MutableFilter<? super T>)filter).setParent(this);
 
@@ -0,0 +1,425 @@
+package ru.biosoft.access.core.filter;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of non-negative integers in the manner of Roaring bitmaps. Values are grouped by their high 16 bits,
+ * every group is stored either as sorted array of low 16 bits (sparse group) or as 65536-bit bitmap (dense group).
+ * Membership, rank and selection of i-th value take logarithmic time, intersection works group by group.
+ *
+ * <p>Used by {@link FilteredDataCollection} to store positions of accepted elements in the primary name list.
+ * Not thread safe for modification.
+ */
+public class CompressedBitmap
+{
+    /** Sparse group is converted to bitmap when it has more values. */
+    private static final int ARRAY_MAX_SIZE = 4096;
+
+    private char[] keys = new char[4];
+    private Container[] containers = new Container[4];
+    private int size;
+    /** Number of values in the groups before the given one, built lazily. */
+    private volatile int[] cumulative;
+
+    public CompressedBitmap()
+    {
+    }
+
+    /**
+     * @param values values in any order
+     */
+    public static CompressedBitmap of(int... values)
+    {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        for( int value : values )
+            bitmap.add( value );
+        return bitmap;
+    }
+
+    public void add(int value)
+    {
+        checkValue( value );
+        char key = (char) ( value >>> 16 );
+        int index = size > 0 && keys[size - 1] == key ? size - 1 : findKey( key );
+        if( index < 0 )
+        {
+            index = -index - 1;
+            if( size == keys.length )
+            {
+                keys = Arrays.copyOf( keys, size * 2 );
+                containers = Arrays.copyOf( containers, size * 2 );
+            }
+            System.arraycopy( keys, index, keys, index + 1, size - index );
+            System.arraycopy( containers, index, containers, index + 1, size - index );
+            keys[index] = key;
+            containers[index] = new ArrayContainer();
+            size++;
+        }
+        containers[index] = containers[index].add( (char)value );
+        cumulative = null;
+    }
+
+    public boolean contains(int value)
+    {
+        if( value < 0 )
+            return false;
+        int index = findKey( (char) ( value >>> 16 ) );
+        return index >= 0 && containers[index].contains( (char)value );
+    }
+
+    /**
+     * @return number of values in the set
+     */
+    public int getCardinality()
+    {
+        return size == 0 ? 0 : getCumulative()[size];
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * @return number of values smaller than the given one
+     */
+    public int rank(int value)
+    {
+        if( value <= 0 )
+            return 0;
+        char key = (char) ( value >>> 16 );
+        int index = findKey( key );
+        if( index >= 0 )
+            return getCumulative()[index] + containers[index].rank( (char)value );
+        return getCumulative()[-index - 1];
+    }
+
+    /**
+     * @param i index of the value in ascending order
+     * @return i-th smallest value
+     * @throws IndexOutOfBoundsException if there is no such value
+     */
+    public int select(int i)
+    {
+        int[] counts = getCumulative();
+        if( i < 0 || i >= counts[size] )
+            throw new IndexOutOfBoundsException( "Index: " + i + ", size: " + counts[size] );
+        int index = Arrays.binarySearch( counts, 0, size + 1, i );
+        // several groups may start at the same count only if some are empty, which never happens
+        index = index >= 0 ? index : -index - 2;
+        return ( keys[index] << 16 ) | containers[index].select( i - counts[index] );
+    }
+
+    /**
+     * @return new set containing values present in both sets
+     */
+    public CompressedBitmap and(CompressedBitmap other)
+    {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0, j = 0;
+        while( i < size && j < other.size )
+        {
+            if( keys[i] < other.keys[j] )
+                i++;
+            else if( keys[i] > other.keys[j] )
+                j++;
+            else
+            {
+                Container container = containers[i].and( other.containers[j] );
+                if( container.cardinality() > 0 )
+                    result.append( keys[i], container );
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Passes all values to the consumer in ascending order.
+     */
+    public void forEach(IntConsumer consumer)
+    {
+        for( int i = 0; i < size; i++ )
+            containers[i].forEach( keys[i] << 16, consumer );
+    }
+
+    /**
+     * @return values in ascending order
+     */
+    public int[] toArray()
+    {
+        int[] result = new int[getCardinality()];
+        int[] pos = {0};
+        forEach( value -> result[pos[0]++] = value );
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CompressedBitmap[cardinality=" + getCardinality() + ", groups=" + size + "]";
+    }
+
+    private void append(char key, Container container)
+    {
+        if( size == keys.length )
+        {
+            keys = Arrays.copyOf( keys, size * 2 );
+            containers = Arrays.copyOf( containers, size * 2 );
+        }
+        keys[size] = key;
+        containers[size] = container;
+        size++;
+        cumulative = null;
+    }
+
+    private int findKey(char key)
+    {
+        return Arrays.binarySearch( keys, 0, size, key );
+    }
+
+    private int[] getCumulative()
+    {
+        int[] counts = cumulative;
+        if( counts == null )
+        {
+            counts = new int[size + 1];
+            for( int i = 0; i < size; i++ )
+                counts[i + 1] = counts[i] + containers[i].cardinality();
+            cumulative = counts;
+        }
+        return counts;
+    }
+
+    private static void checkValue(int value)
+    {
+        if( value < 0 )
+            throw new IllegalArgumentException( "Negative value: " + value );
+    }
+
+    private static abstract class Container
+    {
+        abstract Container add(char low);
+        abstract boolean contains(char low);
+        abstract int cardinality();
+        /** @return number of values smaller than low */
+        abstract int rank(char low);
+        abstract char select(int i);
+        abstract Container and(Container other);
+        abstract void forEach(int high, IntConsumer consumer);
+    }
+
+    private static class ArrayContainer extends Container
+    {
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer()
+        {
+            this( new char[4], 0 );
+        }
+
+        ArrayContainer(char[] values, int cardinality)
+        {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char low)
+        {
+            // values usually come in ascending order
+            int index = cardinality > 0 && values[cardinality - 1] < low ? -cardinality - 1 : Arrays.binarySearch( values, 0, cardinality, low );
+            if( index >= 0 )
+                return this;
+            if( cardinality == ARRAY_MAX_SIZE )
+                return toBitmap().add( low );
+            index = -index - 1;
+            if( cardinality == values.length )
+                values = Arrays.copyOf( values, Math.min( ARRAY_MAX_SIZE, Math.max( 4, cardinality * 2 ) ) );
+            System.arraycopy( values, index, values, index + 1, cardinality - index );
+            values[index] = low;
+            cardinality++;
+            return this;
+        }
+
+        private BitmapContainer toBitmap()
+        {
+            BitmapContainer bitmap = new BitmapContainer();
+            for( int i = 0; i < cardinality; i++ )
+                bitmap.add( values[i] );
+            return bitmap;
+        }
+
+        @Override
+        boolean contains(char low)
+        {
+            return Arrays.binarySearch( values, 0, cardinality, low ) >= 0;
+        }
+
+        @Override
+        int cardinality()
+        {
+            return cardinality;
+        }
+
+        @Override
+        int rank(char low)
+        {
+            int index = Arrays.binarySearch( values, 0, cardinality, low );
+            return index >= 0 ? index : -index - 1;
+        }
+
+        @Override
+        char select(int i)
+        {
+            return values[i];
+        }
+
+        @Override
+        Container and(Container other)
+        {
+            char[] result = new char[Math.min( cardinality, other.cardinality() )];
+            int count = 0;
+            if( other instanceof ArrayContainer )
+            {
+                ArrayContainer array = (ArrayContainer)other;
+                int i = 0, j = 0;
+                while( i < cardinality && j < array.cardinality )
+                {
+                    if( values[i] < array.values[j] )
+                        i++;
+                    else if( values[i] > array.values[j] )
+                        j++;
+                    else
+                    {
+                        result[count++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            }
+            else
+            {
+                for( int i = 0; i < cardinality; i++ )
+                {
+                    if( other.contains( values[i] ) )
+                        result[count++] = values[i];
+                }
+            }
+            return new ArrayContainer( result, count );
+        }
+
+        @Override
+        void forEach(int high, IntConsumer consumer)
+        {
+            for( int i = 0; i < cardinality; i++ )
+                consumer.accept( high | values[i] );
+        }
+    }
+
+    private static class BitmapContainer extends Container
+    {
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer()
+        {
+            this( new long[1024], 0 );
+        }
+
+        BitmapContainer(long[] words, int cardinality)
+        {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char low)
+        {
+            long bit = 1L << low;
+            if( ( words[low >>> 6] & bit ) == 0 )
+            {
+                words[low >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char low)
+        {
+            return ( words[low >>> 6] & ( 1L << low ) ) != 0;
+        }
+
+        @Override
+        int cardinality()
+        {
+            return cardinality;
+        }
+
+        @Override
+        int rank(char low)
+        {
+            int word = low >>> 6;
+            int count = 0;
+            for( int i = 0; i < word; i++ )
+                count += Long.bitCount( words[i] );
+            return count + Long.bitCount( words[word] & ( ( 1L << low ) - 1 ) );
+        }
+
+        @Override
+        char select(int i)
+        {
+            for( int word = 0; word < words.length; word++ )
+            {
+                int count = Long.bitCount( words[word] );
+                if( i < count )
+                {
+                    long w = words[word];
+                    for( ; i > 0; i-- )
+                        w &= w - 1;
+                    return (char) ( ( word << 6 ) + Long.numberOfTrailingZeros( w ) );
+                }
+                i -= count;
+            }
+            throw new IndexOutOfBoundsException();
+        }
+
+        @Override
+        Container and(Container other)
+        {
+            if( other instanceof ArrayContainer )
+                return other.and( this );
+            long[] otherWords = ( (BitmapContainer)other ).words;
+            long[] result = new long[words.length];
+            int count = 0;
+            for( int i = 0; i < words.length; i++ )
+            {
+                result[i] = words[i] & otherWords[i];
+                count += Long.bitCount( result[i] );
+            }
+            if( count > ARRAY_MAX_SIZE )
+                return new BitmapContainer( result, count );
+            ArrayContainer array = new ArrayContainer( new char[count], 0 );
+            new BitmapContainer( result, count ).forEach( 0, value -> array.add( (char)value ) );
+            return array;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer consumer)
+        {
+            for( int word = 0; word < words.length; word++ )
+            {
+                long w = words[word];
+                while( w != 0 )
+                {
+                    consumer.accept( high | ( word << 6 ) + Long.numberOfTrailingZeros( w ) );
+                    w &= w - 1;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package ru.biosoft.access.core.filter;
+
+import ru.biosoft.access.core.DataCollection;
+import ru.biosoft.access.core.DataElement;
+import ru.biosoft.access.core.DataElementDescriptor;
+
+/**
+ * Filter which checks the name and the descriptor of data element (see {@link DataCollection#getDescriptor(String)}),
+ * so it can be applied without loading the element. {@link FilteredDataCollection} and {@link CompositeFilter}
+ * recognize such filters and evaluate them over the name list and descriptors of the collection.
+ * Simple descriptor filters may be written as lambdas.
+ */
+public interface DescriptorFilter<T extends DataElement> extends Filter<T>
+{
+    /**
+     * @param name name of data element
+     * @param descriptor descriptor of data element, may be <code>null</code>
+     * @return <code>true</code> if the element is accepted by filter
+     */
+    boolean isDescriptorAcceptable(String name, DataElementDescriptor descriptor);
+
+    @Override
+    default boolean isEnabled()
+    {
+        return true;
+    }
+
+    /**
+     * @return <code>true</code> if {@link #isDescriptorAcceptable(String, DataElementDescriptor)} is only a preliminary check:
+     * elements it accepts should be loaded and checked by {@link #isAcceptable(DataElement)}
+     */
+    default boolean isElementRequired()
+    {
+        return false;
+    }
+
+    /**
+     * @return <code>false</code> if {@link #isDescriptorAcceptable(String, DataElementDescriptor)} checks only the name,
+     * so the descriptor needn't be fetched and <code>null</code> may be passed instead
+     */
+    default boolean isDescriptorRequired()
+    {
+        return true;
+    }
+
+    @Override
+    default boolean isAcceptable(T de)
+    {
+        if( de == null )
+            return false;
+        DataCollection<?> origin = de.getOrigin();
+        return isDescriptorAcceptable( de.getName(), origin == null ? null : origin.getDescriptor( de.getName() ) );
+    }
+}
@@ -1,16 +1,33 @@
 package ru.biosoft.access.core.filter;
 
+import java.lang.ref.WeakReference;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.RandomAccess;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import ru.biosoft.access.core.AbstractDataCollection;
 import ru.biosoft.access.core.CollectionFactory;
 import ru.biosoft.access.core.DataCollection;
+import ru.biosoft.access.core.DataCollectionBatchEvent;
 import ru.biosoft.access.core.DataCollectionConfigConstants;
 import ru.biosoft.access.core.DataCollectionEvent;
 import ru.biosoft.access.core.DataCollectionInfo;
@@ -21,12 +38,12 @@ import ru.biosoft.access.core.DataElementDescriptor;
 import ru.biosoft.access.core.DataElementPutException;
 import ru.biosoft.access.core.DerivedDataCollection;
 import ru.biosoft.access.core.Environment;
+import ru.biosoft.access.core.ListenerSubscription;
 import ru.biosoft.access.core.SortableDataCollection;
 import ru.biosoft.exception.ExceptionRegistry;
 import ru.biosoft.exception.InternalException;
 import ru.biosoft.jobcontrol.FunctionJobControl;
 import ru.biosoft.jobcontrol.JobControl;
-import ru.biosoft.util.ChunkedList;
 
 /**
  * TODO high document and test
@@ -35,6 +52,16 @@ public class FilteredDataCollection<T extends DataElement> extends DerivedDataCo
 {
     /** Key for setting filter in properties. */
     public static final String FILTER_PROPERTY = "filter";
+
+    /**
+     * Key for setting number of threads used to filter the primary collection initially, see {@link #setFilteringParallelism(int)}.
+     */
+    public static final String FILTERING_PARALLELISM_PROPERTY = "filtering-parallelism";
+
+    /** Primary collections smaller than this are always filtered in the current thread. */
+    private static final int PARALLEL_FILTERING_THRESHOLD = 10000;
+    /** Number of elements evaluated by single parallel task. */
+    private static final int PARALLEL_FILTERING_CHUNK = 1000;
     private Filter<? super T> filter;
 
     /** Determines is names in filteredNames list are sorted.  */
@@ -112,7 +139,19 @@ public class FilteredDataCollection<T extends DataElement> extends DerivedDataCo
             this.filter = Filter.INCLUDE_ALL_FILTER;
 
     	initNames(jobControl);
-        primaryCollection.addDataCollectionListener(this);
+        primaryCollection.addWeakDataCollectionListener(this, getPrimarySubscription());
+    }
+
+    /**
+     * @return events of the primary collection this collection should be notified about.
+     * Subclasses may narrow it if their filter accepts only some element names.
+     */
+    protected ListenerSubscription getPrimarySubscription()
+    {
+        // nothing can appear in the collection
+        if( filter == Filter.INCLUDE_NONE_FILTER )
+            return ListenerSubscription.of(0);
+        return ListenerSubscription.ALL;
     }
     
     /**
@@ -121,19 +160,17 @@ public class FilteredDataCollection<T extends DataElement> extends DerivedDataCo
      */
     protected void initNames(FunctionJobControl jobControl)
     {
+        resetNameIndex();
+        synchronized( namesLock )
+        {
+            filteredNameSet = null;
+        }
         if( filter==Filter.INCLUDE_NONE_FILTER )
             return;
         if( filter==Filter.INCLUDE_ALL_FILTER )
         {
-            filteredNames = new ArrayList<>();
             List<String> names = primaryCollection.getNameList();
-            if( names==null )
-                return;
-            Iterator<String> iter = names.iterator();
-            while( iter.hasNext() )
-            {
-                filteredNames.add( (String)iter.next() );
-            }
+            filteredNames = names == null ? new ArrayList<>() : new ArrayList<>(names);
             return;
         }
 
@@ -154,13 +191,17 @@ public class FilteredDataCollection<T extends DataElement> extends DerivedDataCo
         {
             if( QueryFilter.class.isAssignableFrom(filter.getClass()) )
             {
-                filteredNames = new ArrayList<>();
+                List<String> names = new ArrayList<>();
+                // null means that the query can't be answered, elements are checked one by one
                 List<String> list = ( (QueryFilter<?>)filter ).doQuery( primaryCollection );
                 
-                if( jobControl!=null )
+                if( jobControl!=null && list != null )
                 {
                     if( isTerminated( jobControl ) )
+                    {
+                        filteredNames = names;
                         return;
+                    }
                     curr = list.size();
                     count = curr*2;
                     jobControl.setPreparedness( (int)(((float)curr/(float)count)*100.0) );
@@ -174,7 +215,10 @@ public class FilteredDataCollection<T extends DataElement> extends DerivedDataCo
                          if( jobControl!=null )
                          {
                              if( isTerminated(jobControl) )
+                             {
+                                 filteredNames = names;
                                  return;
+                             }
 
                              curr++;
                              jobControl.setPreparedness( (int)(((float)curr/(float)count)*100.0) );
@@ -184,10 +228,11 @@ public class FilteredDataCollection<T extends DataElement> extends DerivedDataCo
                         if( sorted && name.compareTo(prevName) < 0 )
                             sorted = false;
                         
-                        filteredNames.add(name);
+                        names.add(name);
                         prevName = name;
                     }
 
+                    filteredNames = names;
                     if( jobControl != null )
                         jobControl.functionFinished();
 
@@ -200,79 +245,269 @@ public class FilteredDataCollection<T extends DataElement> extends DerivedDataCo
         	(new InternalException(t)).log(log);
         }
 
-        final int chunkSize = 1000;
-        final List<Integer> indexes = new ArrayList<>();
         count = primaryCollection.getSize();
-        int passed = 0;
+        curr = 0;
         prevName = "";
         sorted = true;
+        // the snapshot keeps positions valid whatever happens to the primary name list later
+        List<String> primaryNames = getPrimarySnapshot(primaryCollection);
+        CompressedBitmap positions = new CompressedBitmap();
 
-        for( String deName : primaryCollection.getNameList() )
+        int parallelism = getFilteringParallelism();
+        if( parallelism > 1 && count >= PARALLEL_FILTERING_THRESHOLD )
         {
-            T de;
-            try
+            int[] accepted = filterParallel(primaryNames, parallelism, jobControl);
+            if( accepted == null )
+                return;
+            for( int pos : accepted )
             {
-                de = primaryCollection.get( deName );
+                name = primaryNames.get(pos);
+                if( name.compareTo(prevName) < 0 )
+                    sorted = false;
+                prevName = name;
+                positions.add(pos);
             }
-            catch( Exception e )
+        }
+        else
+        {
+            for( String deName : primaryNames )
             {
-                throw ExceptionRegistry.translateException( e );
+                boolean accepted;
+                try
+                {
+                    accepted = isAccepted( primaryCollection, deName );
+                }
+                catch( Exception e )
+                {
+                    throw ExceptionRegistry.translateException( e );
+                }
+                curr++;
+                if( jobControl != null )
+                {
+                    if( isTerminated(jobControl) )
+                        return;
+                    jobControl.setPreparedness( (int) ( ( (float)curr / (float)count ) * 100.0 ) );
+                }
+
+                if( accepted )
+                {
+                    name = deName;
+                    if( name.compareTo(prevName) < 0 )
+                        sorted = false;
+                    prevName = name;
+                    positions.add( curr - 1 );
+                }
             }
-            curr++;
-            if( jobControl != null )
+        }
+
+        filteredNames = new PositionNameList(primaryNames, positions);
+        
+        if( jobControl!=null )
+        {
+            jobControl.functionFinished();
+        }
+    }
+
+    /**
+     * Last snapshots of primary name lists. Collections filtered from the same unchanged primary collection share the snapshot,
+     * so their bitmaps are intersected without comparing the names. Snapshot is kept while some filtered names refer to it.
+     */
+    private static final Map<DataCollection<?>, WeakReference<List<String>>> primarySnapshots = new WeakHashMap<>();
+
+    private static List<String> getPrimarySnapshot(DataCollection<?> primaryCollection)
+    {
+        List<String> names = primaryCollection.getNameList();
+        synchronized( primarySnapshots )
+        {
+            WeakReference<List<String>> reference = primarySnapshots.get(primaryCollection);
+            List<String> snapshot = reference == null ? null : reference.get();
+            if( snapshot == null || !snapshot.equals(names) )
             {
-                if( isTerminated(jobControl) )
-                    return;
-                jobControl.setPreparedness( (int) ( ( (float)curr / (float)count ) * 100.0 ) );
+                snapshot = Collections.unmodifiableList(new ArrayList<>(names));
+                primarySnapshots.put(primaryCollection, new WeakReference<>(snapshot));
             }
+            return snapshot;
+        }
+    }
 
-            if( filter.isAcceptable( de ) )
+    /**
+     * Threads shared by parallel filtering of all collections. Filtering loads elements, so threads may block on I/O
+     * and the common fork-join pool is not used. Idle threads are released.
+     */
+    private static final ExecutorService filteringPool = Executors.newCachedThreadPool( r -> {
+        Thread thread = new Thread( r, "FilteredDataCollection filtering" );
+        thread.setDaemon( true );
+        return thread;
+    } );
+
+    /**
+     * Evaluates the filter for the chunks of primary names in parallel. The current thread and at most <code>parallelism-1</code>
+     * threads of the shared pool take chunks one by one.
+     * @return positions of accepted elements in the original order or null if the job was terminated
+     */
+    private int[] filterParallel(List<String> names, int parallelism, FunctionJobControl jobControl)
+    {
+        int size = names.size();
+        int taskCount = ( size + PARALLEL_FILTERING_CHUNK - 1 ) / PARALLEL_FILTERING_CHUNK;
+        int[][] results = new int[taskCount][];
+        AtomicInteger nextTask = new AtomicInteger();
+        AtomicInteger finishedTasks = new AtomicInteger();
+        AtomicBoolean stopped = new AtomicBoolean();
+        Runnable worker = () -> {
+            int task;
+            while( !stopped.get() && ( task = nextTask.getAndIncrement() ) < taskCount )
             {
-                name = de.getName();
-                if( name.compareTo(prevName) < 0 )
-                    sorted = false;
-                prevName = name;
-                passed++;
-                if( passed % chunkSize == 0 )
+                int from = task * PARALLEL_FILTERING_CHUNK;
+                results[task] = filterRange(names, from, Math.min(size, from + PARALLEL_FILTERING_CHUNK), jobControl);
+                if( results[task] == null )
                 {
-                    indexes.add( curr );
+                    stopped.set(true);
+                    return;
                 }
+                if( jobControl != null )
+                    jobControl.setPreparedness( (int) ( finishedTasks.incrementAndGet() * 100L / taskCount ) );
             }
+        };
+        List<Future<?>> workers = new ArrayList<>();
+        try
+        {
+            for( int i = 1; i < Math.min(parallelism, taskCount); i++ )
+                workers.add(filteringPool.submit(worker));
+            worker.run();
+            for( Future<?> future : workers )
+                future.get();
+        }
+        catch( ExecutionException e )
+        {
+            throw ExceptionRegistry.translateException( e.getCause() );
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        finally
+        {
+            // other workers don't take new chunks if the job was terminated or failed
+            stopped.set(true);
+        }
+        if( jobControl != null && isTerminated(jobControl) )
+            return null;
+        int total = 0;
+        for( int[] result : results )
+        {
+            if( result == null )
+                return null;
+            total += result.length;
+        }
+        int[] accepted = new int[total];
+        int pos = 0;
+        for( int[] result : results )
+        {
+            System.arraycopy(result, 0, accepted, pos, result.length);
+            pos += result.length;
         }
+        return accepted;
+    }
 
-        filteredNames = new ChunkedList<String>( passed, chunkSize, sorted )
+    /**
+     * @return positions of accepted elements in the range or null if the job was terminated
+     */
+    private int[] filterRange(List<String> names, int from, int to, FunctionJobControl jobControl)
+    {
+        int[] accepted = new int[to - from];
+        int count = 0;
+        for( int pos = from; pos < to; pos++ )
         {
-            List<String> primaryNames = primaryCollection.getNameList();
+            if( jobControl != null && isTerminated(jobControl) )
+                return null;
+            boolean isAccepted;
+            try
+            {
+                isAccepted = isAccepted( primaryCollection, names.get(pos) );
+            }
+            catch( Exception e )
+            {
+                throw ExceptionRegistry.translateException( e );
+            }
+            if( isAccepted )
+                accepted[count++] = pos;
+        }
+        return Arrays.copyOf(accepted, count);
+    }
 
-            @Override
-            protected String[] getChunk(int from, int to)
+    /**
+     * Checks the element by the filter. If the filter is {@link DescriptorFilter}, the element is checked by its name
+     * and descriptor first and is loaded only if the filter requires it, so large collections are filtered without reading the elements.
+     */
+    private boolean isAccepted(DataCollection<T> owner, String name) throws Exception
+    {
+        if( !isDescriptorAccepted(owner, name) )
+            return false;
+        if( !isElementRequired() )
+            return true;
+        T de = owner.get(name);
+        return de != null && filter.isAcceptable(de);
+    }
+
+    /**
+     * @return <code>false</code> if the element is rejected by {@link DescriptorFilter} already by its name or descriptor
+     */
+    private boolean isDescriptorAccepted(DataCollection<?> owner, String name)
+    {
+        if( ! ( filter instanceof DescriptorFilter ) )
+            return true;
+        DescriptorFilter<?> descriptorFilter = (DescriptorFilter<?>)filter;
+        DataElementDescriptor descriptor = descriptorFilter.isDescriptorRequired() ? owner.getDescriptor(name) : null;
+        return descriptorFilter.isDescriptorAcceptable(name, descriptor);
+    }
+
+    /**
+     * @return <code>true</code> if elements accepted by name and descriptor should be loaded and checked by the filter
+     */
+    private boolean isElementRequired()
+    {
+        return ! ( filter instanceof DescriptorFilter ) || ( (DescriptorFilter<?>)filter ).isElementRequired();
+    }
+
+    /**
+     * @return number of threads used to filter the primary collection initially
+     */
+    public int getFilteringParallelism()
+    {
+        if( filteringParallelism < 0 )
+        {
+            filteringParallelism = 1;
+            String value = getInfo().getProperty(FILTERING_PARALLELISM_PROPERTY);
+            if( value != null )
             {
-                String[] result = new String[to - from];
-                int pos = from == 0 ? 0 : indexes.get( from / chunkSize - 1 );
                 try
                 {
-                    for( int i = 0; i < result.length; )
-                    {
-                        T de = primaryCollection.get( primaryNames.get( pos++ ) );
-                        if( filter.isAcceptable( de ) )
-                        {
-                            result[i++] = de.getName();
-                        }
-                    }
+                    filteringParallelism = Integer.parseInt(value.trim());
                 }
-                catch( Exception e )
+                catch( NumberFormatException e )
                 {
+                    log.warning("Invalid " + FILTERING_PARALLELISM_PROPERTY + " '" + value + "' for '" + getCompletePath() + "'");
                 }
-                return result;
             }
-        };
-        
-        if( jobControl!=null )
-        {
-            jobControl.functionFinished();
         }
+        return filteringParallelism;
     }
 
+    /**
+     * Sets number of threads used to filter large primary collection when filtered names are initialized.
+     * Elements are loaded and checked in chunks, the filter and the primary collection must be thread safe.
+     * Affects subsequent initializations, to set it for the initial one use {@link #FILTERING_PARALLELISM_PROPERTY}.
+     *
+     * @param parallelism number of threads, 1 to filter in the current thread
+     */
+    public void setFilteringParallelism(int parallelism)
+    {
+        filteringParallelism = Math.max(1, parallelism);
+    }
+
+    private int filteringParallelism = -1;
+
     private boolean isTerminated(JobControl jobControl)
     {
         if( jobControl.getStatus() == JobControl.TERMINATED_BY_REQUEST || jobControl.getStatus() == JobControl.TERMINATED_BY_ERROR )
@@ -287,12 +522,249 @@ public class FilteredDataCollection<T extends DataElement> extends DerivedDataCo
     // Properties
     //
     
-    protected List<String> filteredNames;
+    /**
+     * Published list is never modified: incremental updates replace it with the modified copy under {@link #namesLock},
+     * so readers can iterate it without locking.
+     */
+    protected volatile List<String> filteredNames;
     protected List<String> getFilteredNames()
     {
         return filteredNames;
     }
 
+    /**
+     * Names of accepted elements backed by their positions in the snapshot of the primary name list
+     * taken when filtered names were initialized.
+     */
+    private static class PositionNameList extends AbstractList<String> implements RandomAccess
+    {
+        private final List<String> primaryNames;
+        private final CompressedBitmap positions;
+        /** Indexes of accepted names, created on the first lookup. */
+        private volatile Map<String, Integer> indexes;
+
+        PositionNameList(List<String> primaryNames, CompressedBitmap positions)
+        {
+            this.primaryNames = primaryNames;
+            this.positions = positions;
+        }
+
+        @Override
+        public String get(int index)
+        {
+            return primaryNames.get(positions.select(index));
+        }
+
+        @Override
+        public int size()
+        {
+            return positions.getCardinality();
+        }
+
+        @Override
+        public boolean contains(Object o)
+        {
+            return indexOf(o) >= 0;
+        }
+
+        /**
+         * Names are unique, so the name is looked up in the map instead of scanning the list.
+         */
+        @Override
+        public int indexOf(Object o)
+        {
+            Map<String, Integer> lookup = indexes;
+            if( lookup == null )
+            {
+                Map<String, Integer> map = new HashMap<>(size() * 2);
+                positions.forEach(pos -> map.put(primaryNames.get(pos), map.size()));
+                indexes = lookup = map;
+            }
+            Integer index = lookup.get(o);
+            return index == null ? -1 : index;
+        }
+
+        @Override
+        public int lastIndexOf(Object o)
+        {
+            return indexOf(o);
+        }
+    }
+
+    /** Guards incremental modifications of {@link #filteredNames} made on events of the primary collection. */
+    private final Object namesLock = new Object();
+
+    /**
+     * Filtered names for lookup when they are not sorted, created on the first incremental modification.
+     * Accessed under {@link #namesLock}.
+     */
+    private Set<String> filteredNameSet;
+
+    private Set<String> getFilteredNameSet()
+    {
+        if( filteredNameSet == null )
+            filteredNameSet = new HashSet<>(filteredNames == null ? Collections.emptyList() : filteredNames);
+        return filteredNameSet;
+    }
+
+    /**
+     * @return true if the name is among filtered names
+     */
+    private boolean isFiltered(String name)
+    {
+        List<String> names = filteredNames;
+        if( names == null )
+            return false;
+        if( sorted )
+            return Collections.binarySearch(names, name) >= 0;
+        synchronized( namesLock )
+        {
+            return filteredNameSet == null ? names.contains(name) : filteredNameSet.contains(name);
+        }
+    }
+
+    /**
+     * Publishes the copy of filtered names without removed names and with added ones. Sorted names are kept sorted,
+     * otherwise the names are kept in the order of the primary collection.
+     * Should be called under {@link #namesLock} with the names which are respectively present and absent.
+     * @param primaryNames name list of the primary collection, required only to add unsorted names
+     */
+    private void updateFilteredNames(Collection<String> removed, Collection<String> added, List<String> primaryNames)
+    {
+        List<String> names = filteredNames == null ? new ArrayList<>() : new ArrayList<>(filteredNames);
+        if( sorted )
+        {
+            for( String name : removed )
+                names.remove(Collections.binarySearch(names, name));
+            for( String name : added )
+                names.add(-Collections.binarySearch(names, name) - 1, name);
+        }
+        else
+        {
+            Set<String> nameSet = getFilteredNameSet();
+            nameSet.removeAll(removed);
+            if( !removed.isEmpty() )
+                names.removeAll(new HashSet<>(removed));
+            if( !added.isEmpty() )
+            {
+                nameSet.addAll(added);
+                names = orderAsPrimary(names, added, primaryNames);
+            }
+        }
+        filteredNames = names;
+    }
+
+    /**
+     * @return filtered names with added ones placed at their positions in the primary collection.
+     * Names not found in the primary collection are appended.
+     */
+    private static List<String> orderAsPrimary(List<String> names, Collection<String> added, List<String> primaryNames)
+    {
+        Set<String> remaining = new LinkedHashSet<>(names);
+        remaining.addAll(added);
+        List<String> result = new ArrayList<>(remaining.size());
+        for( String name : primaryNames )
+        {
+            if( remaining.remove(name) )
+                result.add(name);
+        }
+        result.addAll(remaining);
+        return result;
+    }
+
+    /**
+     * @return positions of accepted elements in the name list of the primary collection as it was when filtered names were initialized,
+     * or null if filtered names are not stored as bitmap (the filter is the query, or the names were modified on primary collection events)
+     */
+    public CompressedBitmap getAcceptedPositions()
+    {
+        List<String> names = filteredNames;
+        return names instanceof PositionNameList ? ( (PositionNameList)names ).positions : null;
+    }
+
+    /**
+     * @return names accepted both by this collection and the other one in the order of this collection.
+     * If both collections store names as bitmaps over the same primary names, the bitmaps are intersected without checking the elements.
+     */
+    public List<String> intersect(FilteredDataCollection<T> other)
+    {
+        List<String> names = filteredNames;
+        List<String> otherNames = other.filteredNames;
+        if( names instanceof PositionNameList && otherNames instanceof PositionNameList && primaryCollection == other.primaryCollection )
+        {
+            PositionNameList list = (PositionNameList)names;
+            PositionNameList otherList = (PositionNameList)otherNames;
+            // snapshots of unchanged primary collection are shared, so names are compared only for the snapshots taken separately
+            if( list.primaryNames == otherList.primaryNames || list.primaryNames.equals(otherList.primaryNames) )
+                return Collections.unmodifiableList(new PositionNameList(list.primaryNames, list.positions.and(otherList.positions)));
+        }
+        List<String> result = new ArrayList<>();
+        for( String name : getNameList() )
+        {
+            if( other.contains(name) )
+                result.add(name);
+        }
+        return result;
+    }
+
+    /**
+     * Inserts the name of accepted element into filtered names keeping them sorted if they are
+     * or in the order of the primary collection otherwise.
+     * @return true if the name was not present
+     */
+    protected boolean filteredNameAdded(String name)
+    {
+        // taken outside the lock, as the primary collection may lock its names
+        List<String> primaryNames = sorted ? null : primaryCollection.getNameList();
+        synchronized( namesLock )
+        {
+            if( isFiltered(name) )
+                return false;
+            updateFilteredNames(Collections.emptyList(), Collections.singletonList(name), primaryNames);
+            return true;
+        }
+    }
+
+    /**
+     * Removes the name from filtered names.
+     * @return true if the name was present
+     */
+    protected boolean filteredNameRemoved(String name)
+    {
+        synchronized( namesLock )
+        {
+            if( !isFiltered(name) )
+                return false;
+            updateFilteredNames(Collections.singletonList(name), Collections.emptyList(), null);
+            return true;
+        }
+    }
+
+    /**
+     * Updates filtered names on the batch event publishing single copy of them.
+     */
+    private void filteredNamesChanged(List<String> removed, List<String> added)
+    {
+        List<String> primaryNames = sorted || added.isEmpty() ? null : primaryCollection.getNameList();
+        synchronized( namesLock )
+        {
+            List<String> present = new ArrayList<>();
+            for( String name : removed )
+            {
+                if( isFiltered(name) )
+                    present.add(name);
+            }
+            Set<String> absent = new LinkedHashSet<>();
+            for( String name : added )
+            {
+                if( !isFiltered(name) )
+                    absent.add(name);
+            }
+            if( !present.isEmpty() || !absent.isEmpty() )
+                updateFilteredNames(present, absent, primaryNames);
+        }
+    }
+
     public Filter<? super T> getFilter()
     {
         return filter;
@@ -316,14 +788,18 @@ public class FilteredDataCollection<T extends DataElement> extends DerivedDataCo
     //
 
    
+    @Override
+    protected boolean isNameListIndexed()
+    {
+        return filteredNames != null;
+    }
+
     @Override
     public boolean contains(String name)
     {
-        if( sorted )
-        {
-            return ( Collections.binarySearch(getFilteredNames(), name) >= 0 );
-        }
-        return getFilteredNames().contains(name);
+        if( isKnownMissing(name) )
+            return false;
+        return isFiltered(name);
     }
 
     /**
@@ -342,18 +818,38 @@ public class FilteredDataCollection<T extends DataElement> extends DerivedDataCo
     @Override
     public T get(String name) throws Exception
     {
+        if( isKnownMissing(name) || !isDescriptorAccepted(doGetPrimaryCollection(), name) )
+            return null;
         T de = doGetPrimaryCollection().get(name);
         if(de == null || !filter.isAcceptable(de)) return null;
         return de;
     }
 
     @Override
-    public T put(T de) throws DataElementPutException
+    public Map<String, T> getAll(Collection<String> names) throws Exception
+    {
+        List<String> candidates = new ArrayList<>();
+        for( String name : names )
+        {
+            if( !isKnownMissing(name) && isDescriptorAccepted(doGetPrimaryCollection(), name) )
+                candidates.add(name);
+        }
+        Map<String, T> result = new LinkedHashMap<>();
+        for( Map.Entry<String, T> entry : doGetPrimaryCollection().getAll(candidates).entrySet() )
+        {
+            if( filter.isAcceptable(entry.getValue()) )
+                result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    @Override
+    protected T putElement(T de, boolean returnPrevious) throws DataElementPutException
     {
         T added = null;
         if( filter.isAcceptable(de) )
         {
-            added = super.put(de);
+            added = super.putElement(de, returnPrevious);
             if( !super.contains(de.getName()) )
             {
                 added = null;
@@ -362,6 +858,37 @@ public class FilteredDataCollection<T extends DataElement> extends DerivedDataCo
         return added;
     }
 
+    @Override
+    public void putAll(Collection<? extends T> elements) throws DataElementPutException
+    {
+        List<T> acceptable = new ArrayList<>();
+        for( T de : elements )
+        {
+            if( de != null && filter.isAcceptable(de) )
+                acceptable.add(de);
+        }
+        super.putAll(acceptable);
+    }
+
+    @Override
+    public void removeAll(Collection<String> names) throws Exception
+    {
+        List<String> toRemove = new ArrayList<>();
+        for( String name : names )
+        {
+            if( name != null && contains(name) )
+                toRemove.add(name);
+        }
+        if( toRemove.isEmpty() )
+            return;
+        super.removeAll(toRemove);
+        for( String name : toRemove )
+        {
+            if( !super.contains(name) )
+                filteredNameRemoved(name);
+        }
+    }
+
     @Override
     public void remove(String name) throws Exception
     {
@@ -371,7 +898,7 @@ public class FilteredDataCollection<T extends DataElement> extends DerivedDataCo
         {
             super.remove(name);
             if( !super.contains(name) )
-                getFilteredNames().remove(name);
+                filteredNameRemoved(name);
         }
     }
 
@@ -381,6 +908,15 @@ public class FilteredDataCollection<T extends DataElement> extends DerivedDataCo
         primaryCollection.removeDataCollectionListener(this);
     }
 
+    /**
+     * Events are retranslated without old element.
+     */
+    @Override
+    public boolean needsOldElement()
+    {
+        return false;
+    }
+
     ////////////////////////////////////////////////////////////////////////////
     // Listeners
     //
@@ -405,7 +941,7 @@ public class FilteredDataCollection<T extends DataElement> extends DerivedDataCo
         if( name.equals(removedElementName) )
         {
             removedElementName = null;
-            initNames(null);
+            filteredNameRemoved(name);
             fireElementRemoved(event.getSource(), name, null);
         }
     }
@@ -422,9 +958,9 @@ public class FilteredDataCollection<T extends DataElement> extends DerivedDataCo
     public void elementAdded(DataCollectionEvent event) throws Exception
     {
         String name = event.getDataElementName();
-        if( filter.isAcceptable((T)event.getOwner().get(name)) )
+        if( isAccepted((DataCollection<T>)event.getOwner(), name) )
         {
-            initNames(null);
+            filteredNameAdded(name);
             fireElementAdded(event.getSource(), name);
         }
     }
@@ -441,26 +977,95 @@ public class FilteredDataCollection<T extends DataElement> extends DerivedDataCo
         }
     }
     /**
-     * @todo URGENT Use filter
+     * Only the changed element is re-evaluated: it may enter or leave the collection.
      * @pending firing events removed because of endless loop, should be checked
      */
     @Override
     public void elementChanged(DataCollectionEvent event) throws Exception
     {
         String name = event.getDataElementName();
-        initNames(null);
-        if( contains(name) )
+        boolean wasAccepted = contains(name);
+        if( isAccepted((DataCollection<T>)event.getOwner(), name) )
         {
-            if( filter.isAcceptable((T)event.getOwner().get(name)) )
+            if( wasAccepted )
             {
                 fireElementChanged(this, this, name, null, null);
             }
             else
             {
-                fireElementWillRemove(this, name);
-                fireElementRemoved(this, name, null);
+                filteredNameAdded(name);
+                fireElementAdded(this, name);
             }
         }
+        else if( wasAccepted )
+        {
+            fireElementWillRemove(this, name);
+            filteredNameRemoved(name);
+            fireElementRemoved(this, name, null);
+        }
+    }
+
+    /**
+     * Added and changed elements are loaded and re-evaluated at once. Elements rejected by name or descriptor are not loaded.
+     */
+    @Override
+    public void elementsChanged(DataCollectionBatchEvent event) throws Exception
+    {
+        List<String> removed = new ArrayList<>();
+        for( String name : event.getRemovedNames() )
+        {
+            if( contains(name) )
+                removed.add(name);
+        }
+        Set<String> wasChanged = new HashSet<>();
+        for( String name : event.getChangedNames() )
+        {
+            if( contains(name) )
+                wasChanged.add(name);
+        }
+        removedElementName = null;
+
+        DataCollection<T> owner = (DataCollection<T>)event.getOwner();
+        Set<String> accepted = new HashSet<>();
+        List<String> toCheck = new ArrayList<>();
+        for( String name : event.getAddedNames() )
+        {
+            if( isDescriptorAccepted(owner, name) )
+                toCheck.add(name);
+        }
+        for( String name : event.getChangedNames() )
+        {
+            if( isDescriptorAccepted(owner, name) )
+                toCheck.add(name);
+        }
+        if( isElementRequired() )
+        {
+            for( Map.Entry<String, T> entry : owner.getAll(toCheck).entrySet() )
+            {
+                if( filter.isAcceptable(entry.getValue()) )
+                    accepted.add(entry.getKey());
+            }
+        }
+        else
+        {
+            accepted.addAll(toCheck);
+        }
+        List<String> added = new ArrayList<>();
+        for( String name : event.getAddedNames() )
+        {
+            if( accepted.contains(name) )
+                added.add(name);
+        }
+        List<String> changed = new ArrayList<>();
+        for( String name : event.getChangedNames() )
+        {
+            if( accepted.contains(name) )
+                ( wasChanged.contains(name) ? changed : added ).add(name);
+            else if( wasChanged.contains(name) )
+                removed.add(name);
+        }
+        filteredNamesChanged(removed, added);
+        fireElementsChanged(new DataCollectionBatchEvent(event.getSource(), this, added, changed, removed, null, null));
     }
 
     ////////////////////////////////////////////////////////////////////////////
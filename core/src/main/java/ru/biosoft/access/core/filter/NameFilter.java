@@ -0,0 +1,35 @@
+package ru.biosoft.access.core.filter;
+
+import ru.biosoft.access.core.DataElement;
+import ru.biosoft.access.core.DataElementDescriptor;
+
+/**
+ * Filter which checks only the name of data element, so it can be applied without loading the element.
+ * Simple name filters may be written as lambdas.
+ */
+public interface NameFilter<T extends DataElement> extends DescriptorFilter<T>
+{
+    /**
+     * @param name name of data element
+     * @return <code>true</code> if the element with such name is accepted by filter
+     */
+    boolean isNameAcceptable(String name);
+
+    @Override
+    default boolean isDescriptorAcceptable(String name, DataElementDescriptor descriptor)
+    {
+        return isNameAcceptable( name );
+    }
+
+    @Override
+    default boolean isDescriptorRequired()
+    {
+        return false;
+    }
+
+    @Override
+    default boolean isAcceptable(T de)
+    {
+        return de != null && isNameAcceptable( de.getName() );
+    }
+}
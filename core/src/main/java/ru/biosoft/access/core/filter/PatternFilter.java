@@ -1,13 +1,13 @@
 package ru.biosoft.access.core.filter;
 
-import java.util.regex.Pattern;
-
 import ru.biosoft.access.core.DataElement;
 
 
 /**
  * Abstract filter to check some <code>DataElement</code> property
  * to correspond regular expression.
+ *
+ * The expression is compiled once into {@link PatternMatcher} and recompiled when it's changed.
  */
 @SuppressWarnings("serial")
 abstract public class PatternFilter<T extends DataElement> extends MutableFilter<T>
@@ -27,6 +27,20 @@ abstract public class PatternFilter<T extends DataElement> extends MutableFilter
 
     protected String pattern = ".*";
     protected String match = ".*";
+    private transient volatile PatternMatcher matcher;
+
+    /**
+     * @return matcher compiled from {@link #match}, which may be also changed by subclasses directly
+     */
+    protected PatternMatcher getMatcher()
+    {
+        PatternMatcher current = matcher;
+        String expression = match;
+        if( current == null || current.getPattern() != expression )
+            matcher = current = PatternMatcher.compile(expression);
+        return current;
+    }
+
     public String getPattern()
     {
         return pattern;
@@ -63,7 +77,7 @@ abstract public class PatternFilter<T extends DataElement> extends MutableFilter
         if(value == null)
             return acceptEmpty;
 
-        return Pattern.compile(match, Pattern.CASE_INSENSITIVE).matcher(value).find();
+        return getMatcher().find(value);
     }
 }
 
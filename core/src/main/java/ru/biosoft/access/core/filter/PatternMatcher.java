@@ -0,0 +1,292 @@
+package ru.biosoft.access.core.filter;
+
+import java.util.regex.Pattern;
+
+/**
+ * Compiled case insensitive pattern, searched in the value like {@link java.util.regex.Matcher#find()}
+ * for the pattern compiled with {@link Pattern#CASE_INSENSITIVE}.
+ *
+ * Patterns which are plain literals, optionally anchored by <code>^</code> and <code>$</code> or surrounded by <code>.*</code>,
+ * are matched without regular expression engine: by comparison of the prefix, suffix or whole value,
+ * or by Boyer-Moore-Horspool scanning. As in {@link Pattern#CASE_INSENSITIVE}, only US-ASCII letters are compared ignoring case.
+ * Instances are immutable and thread safe.
+ */
+public abstract class PatternMatcher
+{
+    private final String pattern;
+
+    private PatternMatcher(String pattern)
+    {
+        this.pattern = pattern;
+    }
+
+    /**
+     * @param regex regular expression
+     * @throws java.util.regex.PatternSyntaxException if the expression is invalid
+     */
+    public static PatternMatcher compile(String regex)
+    {
+        String literal = regex;
+        boolean anchoredStart = false, anchoredEnd = false;
+        while( literal.startsWith( ".*" ) )
+            literal = literal.substring( 2 );
+        if( literal.startsWith( "^" ) )
+        {
+            anchoredStart = true;
+            literal = literal.substring( 1 );
+        }
+        if( literal.endsWith( "$" ) && !isEscaped( literal, literal.length() - 1 ) )
+        {
+            anchoredEnd = true;
+            literal = literal.substring( 0, literal.length() - 1 );
+        }
+        else
+        {
+            while( literal.endsWith( ".*" ) && !isEscaped( literal, literal.length() - 2 ) )
+                literal = literal.substring( 0, literal.length() - 2 );
+        }
+        String unescaped = unescapeLiteral( literal );
+        if( unescaped == null )
+            return new RegexMatcher( regex );
+        if( anchoredStart && anchoredEnd )
+            return new EqualsMatcher( regex, unescaped );
+        if( anchoredStart )
+            return new PrefixMatcher( regex, unescaped );
+        if( anchoredEnd )
+            return new SuffixMatcher( regex, unescaped );
+        if( unescaped.isEmpty() )
+            return new AnyMatcher( regex );
+        return new ContainsMatcher( regex, unescaped );
+    }
+
+    /**
+     * @return the expression this matcher was compiled from
+     */
+    public String getPattern()
+    {
+        return pattern;
+    }
+
+    /**
+     * @return <code>true</code> if the pattern is found in the value
+     */
+    public abstract boolean find(String value);
+
+    @Override
+    public String toString()
+    {
+        return getClass().getSimpleName() + "[" + pattern + "]";
+    }
+
+    /**
+     * @return the literal without escapes or <code>null</code> if the expression contains regular expression constructs
+     */
+    private static String unescapeLiteral(String expression)
+    {
+        StringBuilder result = new StringBuilder( expression.length() );
+        for( int i = 0; i < expression.length(); i++ )
+        {
+            char c = expression.charAt( i );
+            if( c == '\\' )
+            {
+                if( ++i == expression.length() )
+                    return null;
+                c = expression.charAt( i );
+                // escaped letters and digits are character classes, back references etc.
+                if( Character.isLetterOrDigit( c ) )
+                    return null;
+            }
+            else if( "^$.|?*+()[]{}".indexOf( c ) >= 0 )
+            {
+                return null;
+            }
+            result.append( c );
+        }
+        return result.toString();
+    }
+
+    private static boolean isEscaped(String expression, int pos)
+    {
+        int count = 0;
+        while( pos > 0 && expression.charAt( pos - 1 ) == '\\' )
+        {
+            count++;
+            pos--;
+        }
+        return count % 2 == 1;
+    }
+
+    /**
+     * Case folding of {@link Pattern#CASE_INSENSITIVE} without {@link Pattern#UNICODE_CASE}.
+     */
+    static char fold(char c)
+    {
+        return c >= 'A' && c <= 'Z' ? (char) ( c + ( 'a' - 'A' ) ) : c;
+    }
+
+    static String fold(String s)
+    {
+        char[] chars = s.toCharArray();
+        for( int i = 0; i < chars.length; i++ )
+            chars[i] = fold( chars[i] );
+        return new String( chars );
+    }
+
+    /**
+     * @param literal folded literal
+     */
+    static boolean regionMatches(String value, int offset, String literal)
+    {
+        for( int i = 0; i < literal.length(); i++ )
+        {
+            if( fold( value.charAt( offset + i ) ) != literal.charAt( i ) )
+                return false;
+        }
+        return true;
+    }
+
+    private static class RegexMatcher extends PatternMatcher
+    {
+        private final Pattern compiled;
+
+        RegexMatcher(String regex)
+        {
+            super( regex );
+            compiled = Pattern.compile( regex, Pattern.CASE_INSENSITIVE );
+        }
+
+        @Override
+        public boolean find(String value)
+        {
+            return compiled.matcher( value ).find();
+        }
+    }
+
+    private static class AnyMatcher extends PatternMatcher
+    {
+        AnyMatcher(String regex)
+        {
+            super( regex );
+        }
+
+        @Override
+        public boolean find(String value)
+        {
+            return true;
+        }
+    }
+
+    private static class EqualsMatcher extends PatternMatcher
+    {
+        private final String literal;
+
+        EqualsMatcher(String regex, String literal)
+        {
+            super( regex );
+            this.literal = fold( literal );
+        }
+
+        @Override
+        public boolean find(String value)
+        {
+            int length = value.length();
+            if( length != literal.length() )
+                length = endBeforeTerminator( value );
+            return length == literal.length() && regionMatches( value, 0, literal );
+        }
+    }
+
+    private static class PrefixMatcher extends PatternMatcher
+    {
+        private final String literal;
+
+        PrefixMatcher(String regex, String literal)
+        {
+            super( regex );
+            this.literal = fold( literal );
+        }
+
+        @Override
+        public boolean find(String value)
+        {
+            return value.length() >= literal.length() && regionMatches( value, 0, literal );
+        }
+    }
+
+    private static class SuffixMatcher extends PatternMatcher
+    {
+        private final String literal;
+
+        SuffixMatcher(String regex, String literal)
+        {
+            super( regex );
+            this.literal = fold( literal );
+        }
+
+        @Override
+        public boolean find(String value)
+        {
+            int end = value.length();
+            if( end >= literal.length() && regionMatches( value, end - literal.length(), literal ) )
+                return true;
+            end = endBeforeTerminator( value );
+            return end >= literal.length() && regionMatches( value, end - literal.length(), literal );
+        }
+    }
+
+    /**
+     * <code>$</code> matches at the end of input and before the final line terminator.
+     * @return position of the final line terminator or -1 if the value doesn't end with it
+     */
+    private static int endBeforeTerminator(String value)
+    {
+        int end = value.length();
+        if( end == 0 )
+            return -1;
+        char c = value.charAt( end - 1 );
+        if( c == '\n' )
+            return end > 1 && value.charAt( end - 2 ) == '\r' ? end - 2 : end - 1;
+        if( c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029' )
+            return end - 1;
+        return -1;
+    }
+
+    /**
+     * Boyer-Moore-Horspool search of the folded literal. Shifts are kept for 256 buckets of characters,
+     * the shift of the bucket is the smallest shift of its characters.
+     */
+    private static class ContainsMatcher extends PatternMatcher
+    {
+        private static final int BUCKETS = 256;
+
+        private final String literal;
+        private final int[] shifts;
+
+        ContainsMatcher(String regex, String literal)
+        {
+            super( regex );
+            this.literal = fold( literal );
+            int length = literal.length();
+            shifts = new int[BUCKETS];
+            java.util.Arrays.fill( shifts, length );
+            for( int i = 0; i < length - 1; i++ )
+                shifts[this.literal.charAt( i ) & ( BUCKETS - 1 )] = length - 1 - i;
+        }
+
+        @Override
+        public boolean find(String value)
+        {
+            int length = literal.length();
+            int last = length - 1;
+            char lastChar = literal.charAt( last );
+            for( int pos = 0; pos + length <= value.length(); )
+            {
+                char c = fold( value.charAt( pos + last ) );
+                if( c == lastChar && regionMatches( value, pos, literal ) )
+                    return true;
+                pos += shifts[c & ( BUCKETS - 1 )];
+            }
+            return false;
+        }
+    }
+}
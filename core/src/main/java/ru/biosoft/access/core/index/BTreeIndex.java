@@ -0,0 +1,824 @@
+package ru.biosoft.access.core.index;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+import ru.biosoft.access.core.Index;
+import ru.biosoft.access.core.Key;
+import ru.biosoft.access.core.QuerySystem;
+import ru.biosoft.exception.ExceptionRegistry;
+
+/**
+ * Persistent {@link Index} of {@link IndexEntry} records stored as B+tree in pages of fixed size
+ * (see {@link QuerySystem#INDEX_BLOCK_SIZE}). Keys are kept in leaves ordered by {@link String#compareTo(String)},
+ * leaves are linked in both directions, so keys can be iterated in order starting from any key
+ * and listed page by page without loading the whole index. Recently used pages are kept in small cache,
+ * changed pages are written when they leave the cache and on {@link #flush()}.
+ *
+ * <p>Pages are changed in place and there is no journal. If pages were allocated since the last write of the file header,
+ * all changed pages are written followed by the header before any page leaves the cache, so the file on disk never refers
+ * to the pages which are not written. Still the changes made after the last {@link #flush()} may be lost or be partially present
+ * in the file after the process crash, and the file may be corrupt after the system crash, as only {@link #flush()} forces writes
+ * to the device. The index built from the data which is available otherwise should be rebuilt after an unclean shutdown.
+ *
+ * <p>Sorting index of a collection may use keys built by {@link #sortKey(String, String)}: then
+ * {@link #getSortedNameList(boolean, int, int)} returns the element names ordered by the sorting value,
+ * which serves {@link ru.biosoft.access.core.SortableDataCollection#getSortedNameList(String, boolean)} without sorting in memory.
+ *
+ * <p>Pages are not merged when keys are removed. Iterators are weakly consistent: they don't fail
+ * if the index is changed, but may miss the concurrent changes.
+ */
+public class BTreeIndex extends AbstractMap<String, Index.IndexEntry> implements Index<Index.IndexEntry>
+{
+    public static final int DEFAULT_PAGE_SIZE = 4096;
+    public static final int DEFAULT_CACHE_PAGES = 64;
+
+    /** Separates the value and the element name in the keys built by {@link #sortKey(String, String)}. */
+    public static final char SORT_KEY_SEPARATOR = '\u0000';
+
+    private static final int MAGIC = 0x42535442;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int MIN_PAGE_SIZE = 256;
+    private static final int MAX_PAGE_SIZE = 32768;
+    /** Type, key count, previous and next leaf. */
+    private static final int PAGE_HEADER_SIZE = 1 + 2 + 8 + 8;
+    private static final byte LEAF = 0;
+    private static final byte INTERNAL = 1;
+    private static final long NONE = -1;
+
+    private final String name;
+    private final File file;
+    private final FileChannel channel;
+    private final int pageSize;
+    /** Maximal size of key entry, so at least four entries fit the page. */
+    private final int maxEntrySize;
+    private final int cachePages;
+    /** Recently used pages in the access order. */
+    private final LinkedHashMap<Long, Node> cache;
+    private long root;
+    private long pageCount;
+    private int size;
+    private long firstLeaf;
+    private long lastLeaf;
+    private volatile boolean closed;
+    /** Pages were allocated since the header was written, so the header and all changed pages should be written together. */
+    private boolean structureChanged;
+    /** The header on disk is out of date. */
+    private boolean headerChanged;
+
+    public BTreeIndex(File file, String name) throws IOException
+    {
+        this(file, name, DEFAULT_PAGE_SIZE, DEFAULT_CACHE_PAGES);
+    }
+
+    /**
+     * Opens the index file, the file is created if it doesn't exist.
+     * @param pageSize size of page for the new file, page size of existing file is read from it
+     * @param cachePages number of pages kept in memory
+     */
+    public BTreeIndex(File file, String name, int pageSize, int cachePages) throws IOException
+    {
+        this.file = file;
+        this.name = name;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.cachePages = cachePages;
+        cache = new LinkedHashMap<>(cachePages * 2, 0.75f, true);
+        if( channel.size() == 0 )
+        {
+            if( pageSize < MIN_PAGE_SIZE || pageSize > MAX_PAGE_SIZE )
+                throw new IllegalArgumentException("Page size should be between " + MIN_PAGE_SIZE + " and " + MAX_PAGE_SIZE + ": " + pageSize);
+            this.pageSize = pageSize;
+            pageCount = 1;
+            Node node = newNode(true);
+            root = firstLeaf = lastLeaf = node.id;
+            flush();
+        }
+        else
+        {
+            ByteBuffer header = read(0, HEADER_SIZE);
+            if( header.getInt() != MAGIC )
+                throw new IOException("Not an index file: " + file);
+            int version = header.getInt();
+            if( version != VERSION )
+                throw new IOException("Unsupported version " + version + " of index file " + file);
+            this.pageSize = header.getInt();
+            size = header.getInt();
+            root = header.getLong();
+            pageCount = header.getLong();
+            firstLeaf = header.getLong();
+            lastLeaf = header.getLong();
+        }
+        maxEntrySize = ( this.pageSize - PAGE_HEADER_SIZE - 8 ) / 4;
+    }
+
+    @Override
+    public String getName()
+    {
+        return name;
+    }
+
+    public int getPageSize()
+    {
+        return pageSize;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Map methods
+    //
+
+    @Override
+    public synchronized IndexEntry get(Object key)
+    {
+        checkOpen();
+        if( ! ( key instanceof String ) )
+            return null;
+        Node leaf = findLeaf((String)key, null);
+        int pos = Collections.binarySearch(leaf.keys, (String)key);
+        evict();
+        return pos < 0 ? null : copy(leaf.values.get(pos));
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return get(key) != null;
+    }
+
+    @Override
+    public synchronized IndexEntry put(String key, IndexEntry value)
+    {
+        checkOpen();
+        Objects.requireNonNull(value);
+        if( entrySize(key, true) > maxEntrySize )
+            throw new IllegalArgumentException("Key is too long for index page of " + pageSize + " bytes: " + key);
+        List<Node> path = new ArrayList<>();
+        Node node = findLeaf(key, path);
+        int pos = Collections.binarySearch(node.keys, key);
+        if( pos >= 0 )
+        {
+            IndexEntry previous = node.values.set(pos, copy(value));
+            markDirty(node);
+            evict();
+            return previous;
+        }
+        node.keys.add(-pos - 1, key);
+        node.values.add(-pos - 1, copy(value));
+        size++;
+        headerChanged = true;
+        markDirty(node);
+        // pages don't leave the cache until the split is complete
+        while( node.byteSize() > pageSize )
+        {
+            Node parent = path.isEmpty() ? null : path.remove(path.size() - 1);
+            split(node, parent);
+            if( parent == null )
+                break;
+            node = parent;
+        }
+        evict();
+        return null;
+    }
+
+    @Override
+    public synchronized IndexEntry remove(Object key)
+    {
+        checkOpen();
+        if( ! ( key instanceof String ) )
+            return null;
+        Node leaf = findLeaf((String)key, null);
+        int pos = Collections.binarySearch(leaf.keys, (String)key);
+        if( pos < 0 )
+            return null;
+        leaf.keys.remove(pos);
+        IndexEntry previous = leaf.values.remove(pos);
+        size--;
+        headerChanged = true;
+        markDirty(leaf);
+        evict();
+        return previous;
+    }
+
+    @Override
+    public synchronized void clear()
+    {
+        checkOpen();
+        try
+        {
+            cache.clear();
+            channel.truncate(pageSize);
+            pageCount = 1;
+            size = 0;
+            Node node = newNode(true);
+            root = firstLeaf = lastLeaf = node.id;
+            flush();
+        }
+        catch( IOException e )
+        {
+            throw ExceptionRegistry.translateException(e);
+        }
+    }
+
+    @Override
+    public synchronized int size()
+    {
+        checkOpen();
+        return size;
+    }
+
+    /**
+     * @return view of entries in the order of keys
+     */
+    @Override
+    public Set<Map.Entry<String, IndexEntry>> entrySet()
+    {
+        return new AbstractSet<Map.Entry<String, IndexEntry>>()
+        {
+            @Override
+            public Iterator<Map.Entry<String, IndexEntry>> iterator()
+            {
+                return entryIterator(null, true);
+            }
+
+            @Override
+            public int size()
+            {
+                return BTreeIndex.this.size();
+            }
+        };
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Ordered access
+    //
+
+    /**
+     * @param from the first key (inclusive) or <code>null</code> to start from the first or the last key
+     * @param ascending direction of iteration
+     */
+    public Iterator<Map.Entry<String, IndexEntry>> entryIterator(String from, boolean ascending)
+    {
+        return new Cursor(from, ascending);
+    }
+
+    /**
+     * Iterates keys in ascending order starting from {@link Key#serializeToString()} of the given key while they are accepted by it,
+     * so the key defines the range, e.g. all keys with some prefix. All keys are iterated if key is <code>null</code>.
+     * Iteration stops at the first rejected key, so {@link Key#accept(Object)} must accept a contiguous range of keys
+     * which starts at {@link Key#serializeToString()}: keys accepted after the rejected one or before the start are not returned.
+     */
+    @Override
+    public Iterator<String> nodeIterator(Key key)
+    {
+        Cursor cursor = new Cursor(key == null ? null : key.serializeToString(), true);
+        return new Iterator<String>()
+        {
+            private String next = advance();
+
+            private String advance()
+            {
+                if( !cursor.hasNext() )
+                    return null;
+                String candidate = cursor.next().getKey();
+                return key == null || key.accept(candidate) ? candidate : null;
+            }
+
+            @Override
+            public boolean hasNext()
+            {
+                return next != null;
+            }
+
+            @Override
+            public String next()
+            {
+                if( next == null )
+                    throw new NoSuchElementException();
+                String result = next;
+                next = advance();
+                return result;
+            }
+        };
+    }
+
+    /**
+     * @param prefix prefix of keys, empty string for all keys
+     * @param ascending order of keys
+     * @param offset number of keys to skip
+     * @param limit maximal number of keys to return
+     * @return page of keys starting with the prefix
+     */
+    public List<String> getKeys(String prefix, boolean ascending, int offset, int limit)
+    {
+        String from = prefix.isEmpty() ? null : ascending ? prefix : upperBound(prefix);
+        Iterator<Map.Entry<String, IndexEntry>> iterator = entryIterator(from, ascending);
+        List<String> result = new ArrayList<>();
+        int skipped = 0;
+        while( result.size() < limit && iterator.hasNext() )
+        {
+            String key = iterator.next().getKey();
+            if( !key.startsWith(prefix) )
+            {
+                // descending iteration starts from the upper bound which is not in the range
+                if( ascending || key.compareTo(prefix) < 0 )
+                    break;
+                continue;
+            }
+            if( skipped < offset )
+                skipped++;
+            else
+                result.add(key);
+        }
+        return result;
+    }
+
+    /**
+     * @return key for sorting index: elements are ordered by the value, then by name
+     */
+    public static String sortKey(String value, String name)
+    {
+        return value + SORT_KEY_SEPARATOR + name;
+    }
+
+    /**
+     * @return element name from the key built by {@link #sortKey(String, String)}
+     */
+    public static String getNameFromSortKey(String key)
+    {
+        return key.substring(key.indexOf(SORT_KEY_SEPARATOR) + 1);
+    }
+
+    /**
+     * @return page of element names from the sorting index with keys built by {@link #sortKey(String, String)}
+     */
+    public List<String> getSortedNameList(boolean ascending, int offset, int limit)
+    {
+        List<String> keys = getKeys("", ascending, offset, limit);
+        List<String> names = new ArrayList<>(keys.size());
+        for( String key : keys )
+            names.add(getNameFromSortKey(key));
+        return names;
+    }
+
+    /**
+     * @return the smallest string greater than all strings with the given prefix or <code>null</code> if there is no such string
+     */
+    private static String upperBound(String prefix)
+    {
+        int end = prefix.length();
+        while( end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE )
+            end--;
+        if( end == 0 )
+            return null;
+        return prefix.substring(0, end - 1) + (char) ( prefix.charAt(end - 1) + 1 );
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Index methods
+    //
+
+    @Override
+    public synchronized void flush() throws IOException
+    {
+        checkOpen();
+        writeChanges();
+        channel.force(false);
+    }
+
+    /**
+     * Writes all changed pages and then the header.
+     */
+    private void writeChanges()
+    {
+        for( Node node : cache.values() )
+        {
+            if( node.dirty )
+                writeNode(node);
+        }
+        writeHeader();
+    }
+
+    private void writeHeader()
+    {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(pageSize).putInt(size).putLong(root).putLong(pageCount).putLong(firstLeaf).putLong(lastLeaf);
+        header.clear();
+        try
+        {
+            write(0, header);
+        }
+        catch( IOException e )
+        {
+            throw ExceptionRegistry.translateException(e);
+        }
+        structureChanged = false;
+        headerChanged = false;
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if( closed )
+            return;
+        flush();
+        closed = true;
+        cache.clear();
+        channel.close();
+    }
+
+    @Override
+    public boolean isValid()
+    {
+        return !closed;
+    }
+
+    @Override
+    public File getIndexFile()
+    {
+        return file;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Tree operations
+    //
+
+    /**
+     * @param path if not <code>null</code>, internal nodes from the root to the leaf are added to it
+     */
+    private Node findLeaf(String key, List<Node> path)
+    {
+        Node node = getNode(root);
+        while( !node.leaf )
+        {
+            if( path != null )
+                path.add(node);
+            node = getNode(node.children.get(childIndex(node, key)));
+        }
+        return node;
+    }
+
+    /**
+     * Separator keys are the first keys of the right subtrees.
+     */
+    private static int childIndex(Node node, String key)
+    {
+        int pos = Collections.binarySearch(node.keys, key);
+        return pos >= 0 ? pos + 1 : -pos - 1;
+    }
+
+    /**
+     * Moves the upper half of the node by size to the new node and inserts the separator into the parent.
+     * @param parent parent node or <code>null</code> if the node is the root
+     */
+    private void split(Node node, Node parent)
+    {
+        int count = node.keys.size();
+        int half = node.byteSize() / 2;
+        int bytes = PAGE_HEADER_SIZE;
+        int m = 0;
+        while( m < count && bytes < half )
+            bytes += entrySize(node.keys.get(m++), node.leaf);
+        Node right = newNode(node.leaf);
+        String separator;
+        if( node.leaf )
+        {
+            m = Math.max(1, Math.min(m, count - 1));
+            right.keys.addAll(node.keys.subList(m, count));
+            right.values.addAll(node.values.subList(m, count));
+            node.keys.subList(m, count).clear();
+            node.values.subList(m, count).clear();
+            separator = right.keys.get(0);
+            right.prev = node.id;
+            right.next = node.next;
+            if( node.next == NONE )
+            {
+                lastLeaf = right.id;
+            }
+            else
+            {
+                Node next = getNode(node.next);
+                next.prev = right.id;
+                markDirty(next);
+            }
+            node.next = right.id;
+        }
+        else
+        {
+            m = Math.max(1, Math.min(m, count - 2));
+            separator = node.keys.get(m);
+            right.keys.addAll(node.keys.subList(m + 1, count));
+            right.children.addAll(node.children.subList(m + 1, count + 1));
+            node.keys.subList(m, count).clear();
+            node.children.subList(m + 1, count + 1).clear();
+        }
+        markDirty(node);
+        markDirty(right);
+        if( parent == null )
+        {
+            Node newRoot = newNode(false);
+            newRoot.children.add(node.id);
+            newRoot.keys.add(separator);
+            newRoot.children.add(right.id);
+            root = newRoot.id;
+            markDirty(newRoot);
+        }
+        else
+        {
+            int pos = parent.children.indexOf(node.id);
+            parent.keys.add(pos, separator);
+            parent.children.add(pos + 1, right.id);
+            markDirty(parent);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Pages
+    //
+
+    private Node getNode(long id)
+    {
+        Node node = cache.get(id);
+        if( node == null )
+        {
+            node = readNode(id);
+            cache.put(id, node);
+        }
+        return node;
+    }
+
+    private Node newNode(boolean leaf)
+    {
+        Node node = new Node(pageCount++, leaf);
+        structureChanged = true;
+        markDirty(node);
+        return node;
+    }
+
+    /**
+     * Removes least recently used pages exceeding the cache size. Called when the tree is consistent,
+     * not in the middle of the split. If pages were allocated since the header was written, all changes are written first,
+     * otherwise page written alone might refer to the page which is not written yet.
+     */
+    private void evict()
+    {
+        if( cache.size() <= cachePages )
+            return;
+        if( structureChanged )
+            writeChanges();
+        Iterator<Node> iterator = cache.values().iterator();
+        while( cache.size() > cachePages && iterator.hasNext() )
+        {
+            Node node = iterator.next();
+            if( node.dirty )
+                writeNode(node);
+            iterator.remove();
+        }
+        if( headerChanged )
+            writeHeader();
+    }
+
+    /**
+     * Node may have left the cache while it was changed, so it's put back.
+     */
+    private void markDirty(Node node)
+    {
+        node.dirty = true;
+        cache.put(node.id, node);
+    }
+
+    private Node readNode(long id)
+    {
+        try
+        {
+            ByteBuffer buffer = read(id * pageSize, pageSize);
+            Node node = new Node(id, buffer.get() == LEAF);
+            int count = buffer.getShort() & 0xFFFF;
+            node.prev = buffer.getLong();
+            node.next = buffer.getLong();
+            if( !node.leaf )
+                node.children.add(buffer.getLong());
+            for( int i = 0; i < count; i++ )
+            {
+                byte[] key = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(key);
+                node.keys.add(new String(key, UTF_8));
+                if( node.leaf )
+                    node.values.add(new IndexEntry(buffer.getLong(), buffer.getLong()));
+                else
+                    node.children.add(buffer.getLong());
+            }
+            return node;
+        }
+        catch( IOException e )
+        {
+            throw ExceptionRegistry.translateException(e);
+        }
+    }
+
+    private void writeNode(Node node)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(pageSize);
+        buffer.put(node.leaf ? LEAF : INTERNAL).putShort((short)node.keys.size()).putLong(node.prev).putLong(node.next);
+        if( !node.leaf )
+            buffer.putLong(node.children.get(0));
+        for( int i = 0; i < node.keys.size(); i++ )
+        {
+            byte[] key = node.keys.get(i).getBytes(UTF_8);
+            buffer.putShort((short)key.length).put(key);
+            if( node.leaf )
+                buffer.putLong(node.values.get(i).from).putLong(node.values.get(i).len);
+            else
+                buffer.putLong(node.children.get(i + 1));
+        }
+        buffer.clear();
+        try
+        {
+            write(node.id * pageSize, buffer);
+        }
+        catch( IOException e )
+        {
+            throw ExceptionRegistry.translateException(e);
+        }
+        node.dirty = false;
+    }
+
+    private void write(long position, ByteBuffer buffer) throws IOException
+    {
+        while( buffer.hasRemaining() )
+            position += channel.write(buffer, position);
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while( buffer.hasRemaining() )
+        {
+            if( channel.read(buffer, position + buffer.position()) < 0 )
+                throw new IOException("Index file is truncated: " + file);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private void checkOpen()
+    {
+        if( closed )
+            throw new IllegalStateException("Index is closed: " + file);
+    }
+
+    private static IndexEntry copy(IndexEntry entry)
+    {
+        return new IndexEntry(entry.from, entry.len);
+    }
+
+    /**
+     * @return size of the entry in the page
+     */
+    private static int entrySize(String key, boolean leaf)
+    {
+        return 2 + utf8Length(key) + ( leaf ? 16 : 8 );
+    }
+
+    /**
+     * @return length of the key in UTF-8, unpaired surrogates are counted as three bytes, so it's never underestimated
+     */
+    private static int utf8Length(String key)
+    {
+        int length = 0;
+        for( int i = 0; i < key.length(); i++ )
+        {
+            char c = key.charAt(i);
+            if( c < 0x80 )
+                length++;
+            else if( c < 0x800 )
+                length += 2;
+            else if( Character.isHighSurrogate(c) && i + 1 < key.length() && Character.isLowSurrogate(key.charAt(i + 1)) )
+            {
+                length += 4;
+                i++;
+            }
+            else
+                length += 3;
+        }
+        return length;
+    }
+
+    private static class Node
+    {
+        final long id;
+        final boolean leaf;
+        final List<String> keys = new ArrayList<>();
+        /** Entries of leaf. */
+        final List<IndexEntry> values;
+        /** Children of internal node, one more than keys. */
+        final List<Long> children;
+        /** Neighbour leaves. */
+        long prev = NONE;
+        long next = NONE;
+        boolean dirty;
+
+        Node(long id, boolean leaf)
+        {
+            this.id = id;
+            this.leaf = leaf;
+            values = leaf ? new ArrayList<>() : null;
+            children = leaf ? null : new ArrayList<>();
+        }
+
+        int byteSize()
+        {
+            int bytes = PAGE_HEADER_SIZE + ( leaf ? 0 : 8 );
+            for( String key : keys )
+                bytes += entrySize(key, leaf);
+            return bytes;
+        }
+    }
+
+    /**
+     * Iterates the leaves loading one leaf at a time. Position is kept as the last returned key and the leaf is found by it
+     * on every fill, so the cursor continues correctly in both directions if leaves were split meanwhile.
+     */
+    private class Cursor implements Iterator<Map.Entry<String, IndexEntry>>
+    {
+        private final boolean ascending;
+        private final ArrayDeque<Map.Entry<String, IndexEntry>> buffer = new ArrayDeque<>();
+        private String last;
+        private boolean inclusive = true;
+
+        Cursor(String from, boolean ascending)
+        {
+            this.ascending = ascending;
+            this.last = from;
+            synchronized( BTreeIndex.this )
+            {
+                checkOpen();
+            }
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            if( buffer.isEmpty() )
+                fill();
+            return !buffer.isEmpty();
+        }
+
+        @Override
+        public Map.Entry<String, IndexEntry> next()
+        {
+            if( !hasNext() )
+                throw new NoSuchElementException();
+            return buffer.poll();
+        }
+
+        private void fill()
+        {
+            synchronized( BTreeIndex.this )
+            {
+                checkOpen();
+                long leaf = last == null ? ( ascending ? firstLeaf : lastLeaf ) : findLeaf(last, null).id;
+                while( buffer.isEmpty() && leaf != NONE )
+                {
+                    Node node = getNode(leaf);
+                    int count = node.keys.size();
+                    for( int i = 0; i < count; i++ )
+                    {
+                        int index = ascending ? i : count - 1 - i;
+                        String key = node.keys.get(index);
+                        if( last != null )
+                        {
+                            int cmp = key.compareTo(last);
+                            if( ascending ? cmp < 0 || ( cmp == 0 && !inclusive ) : cmp > 0 || ( cmp == 0 && !inclusive ) )
+                                continue;
+                        }
+                        buffer.add(new SimpleImmutableEntry<>(key, copy(node.values.get(index))));
+                    }
+                    leaf = ascending ? node.next : node.prev;
+                }
+                if( !buffer.isEmpty() )
+                {
+                    last = buffer.getLast().getKey();
+                    inclusive = false;
+                }
+                evict();
+            }
+        }
+    }
+}
@@ -0,0 +1,640 @@
+package ru.biosoft.access.core.index;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import ru.biosoft.access.core.Index;
+import ru.biosoft.access.core.Key;
+import ru.biosoft.exception.ExceptionRegistry;
+
+/**
+ * Persistent {@link Index} of {@link IndexEntry} records stored in memory-mapped file.
+ *
+ * <p>File consists of the header, the sorted table and the log. The sorted table holds fixed-size slots
+ * (key offset and length, entry offset and length) ordered by UTF-8 bytes of the keys, followed by the key bytes.
+ * It's mapped by {@link java.nio.MappedByteBuffer} and searched in place, so opening the index doesn't depend on its size.
+ * Changes are appended to the log; on opening only the log is read. When the log exceeds the fixed size, the file is compacted
+ * in background: the log is merged into new sorted table which replaces the file.
+ *
+ * <p>Header stores the end of the log, it's updated by {@link #flush()} and {@link #close()},
+ * changes which were not flushed may be lost if the process is terminated.
+ * The size of the sorted table is limited by 2 Gb.
+ */
+public class MappedIndex extends AbstractMap<String, Index.IndexEntry> implements Index<Index.IndexEntry>
+{
+    protected static final Logger log = Logger.getLogger(MappedIndex.class.getName());
+
+    private static final int MAGIC = 0x42534958;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int LOG_END_OFFSET = 16;
+    private static final int SLOT_SIZE = 24;
+    /** Log is compacted when it's larger than this, so opening the index reads at most this number of bytes. */
+    private static final long MAX_LOG_SIZE = 8 << 20;
+
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Index compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Marks removed keys in the log. */
+    private static final IndexEntry REMOVED = new IndexEntry(-1, -1);
+
+    private final String name;
+    private final File file;
+    private FileChannel channel;
+    private Table table;
+    private long logStart;
+    private long logEnd;
+    /** Size of the log which triggers the compaction, it's raised if the compacted file can't replace the current one. */
+    private long compactionThreshold = MAX_LOG_SIZE;
+    /** Entries changed since the sorted table was written, {@link #REMOVED} for removed ones. */
+    private Map<String, IndexEntry> changes;
+    private int size;
+    private boolean dirty;
+    private boolean compacting;
+    private volatile boolean closed;
+
+    public MappedIndex(File file) throws IOException
+    {
+        this(file, DEFAULT_INDEX_NAME);
+    }
+
+    /**
+     * Opens the index file, the file is created if it doesn't exist.
+     */
+    public MappedIndex(File file, String name) throws IOException
+    {
+        this.file = file;
+        this.name = name;
+        open();
+    }
+
+    private void open() throws IOException
+    {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if( channel.size() == 0 )
+        {
+            writeHeader(channel, 0, 0, HEADER_SIZE);
+            channel.force(true);
+        }
+        ByteBuffer header = read(channel, 0, HEADER_SIZE);
+        if( header.getInt() != MAGIC )
+            throw new IOException("Not an index file: " + file);
+        int version = header.getInt();
+        if( version != VERSION )
+            throw new IOException("Unsupported version " + version + " of index file " + file);
+        int count = header.getInt();
+        int keyAreaSize = header.getInt();
+        logEnd = header.getLong();
+        long keyAreaStart = HEADER_SIZE + (long)count * SLOT_SIZE;
+        logStart = keyAreaStart + keyAreaSize;
+        table = new Table(channel.map(FileChannel.MapMode.READ_ONLY, 0, logStart), count, (int)keyAreaStart);
+
+        changes = new HashMap<>();
+        ByteBuffer records = read(channel, logStart, (int) ( logEnd - logStart ));
+        while( records.hasRemaining() )
+        {
+            int length = records.getInt();
+            byte[] key = new byte[length < 0 ? -length - 1 : length];
+            records.get(key);
+            changes.put(new String(key, UTF_8), length < 0 ? REMOVED : new IndexEntry(records.getLong(), records.getLong()));
+        }
+        size = count;
+        for( Map.Entry<String, IndexEntry> entry : changes.entrySet() )
+        {
+            boolean inTable = table.find(entry.getKey().getBytes(UTF_8)) >= 0;
+            if( entry.getValue() == REMOVED && inTable )
+                size--;
+            else if( entry.getValue() != REMOVED && !inTable )
+                size++;
+        }
+        dirty = false;
+    }
+
+    @Override
+    public String getName()
+    {
+        return name;
+    }
+
+    @Override
+    public synchronized IndexEntry get(Object key)
+    {
+        checkOpen();
+        if( ! ( key instanceof String ) )
+            return null;
+        IndexEntry entry = changes.get(key);
+        if( entry != null )
+            return entry == REMOVED ? null : copy(entry);
+        int slot = table.find( ( (String)key ).getBytes(UTF_8));
+        return slot < 0 ? null : table.getEntry(slot);
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return get(key) != null;
+    }
+
+    @Override
+    public synchronized IndexEntry put(String key, IndexEntry value)
+    {
+        Objects.requireNonNull(value);
+        IndexEntry previous = get(key);
+        IndexEntry entry = copy(value);
+        append(key, entry);
+        changes.put(key, entry);
+        if( previous == null )
+            size++;
+        compactIfNeeded();
+        return previous;
+    }
+
+    @Override
+    public synchronized IndexEntry remove(Object key)
+    {
+        IndexEntry previous = get(key);
+        if( previous != null )
+        {
+            append((String)key, REMOVED);
+            changes.put((String)key, REMOVED);
+            size--;
+            compactIfNeeded();
+        }
+        return previous;
+    }
+
+    @Override
+    public synchronized void clear()
+    {
+        for( String key : new ArrayList<>(keySet()) )
+            remove(key);
+    }
+
+    @Override
+    public synchronized int size()
+    {
+        checkOpen();
+        return size;
+    }
+
+    /**
+     * @return snapshot of entries in the order of keys
+     */
+    @Override
+    public synchronized Set<Map.Entry<String, IndexEntry>> entrySet()
+    {
+        checkOpen();
+        Map<String, IndexEntry> result = new LinkedHashMap<>();
+        for( Map.Entry<String, IndexEntry> entry : merge(table, changes) )
+            result.put(entry.getKey(), entry.getValue());
+        return Collections.unmodifiableMap(result).entrySet();
+    }
+
+    /**
+     * @return iterator over keys accepted by the given key (all keys if it's <code>null</code>) in the order of their UTF-8 bytes
+     */
+    @Override
+    public synchronized Iterator<String> nodeIterator(Key key)
+    {
+        checkOpen();
+        List<String> result = new ArrayList<>();
+        for( Map.Entry<String, IndexEntry> entry : merge(table, changes) )
+        {
+            if( key == null || key.accept(entry.getKey()) )
+                result.add(entry.getKey());
+        }
+        return result.iterator();
+    }
+
+    @Override
+    public synchronized void flush() throws IOException
+    {
+        checkOpen();
+        if( dirty )
+        {
+            writeLogEnd(channel, logEnd);
+            channel.force(false);
+            dirty = false;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if( closed )
+            return;
+        flush();
+        closed = true;
+        channel.close();
+        changes = null;
+        table = null;
+    }
+
+    @Override
+    public boolean isValid()
+    {
+        return !closed;
+    }
+
+    @Override
+    public File getIndexFile()
+    {
+        return file;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Compaction
+    //
+
+    /**
+     * Merges the log into the sorted table. Waits for the background compaction if it's in progress.
+     */
+    public void compact() throws IOException
+    {
+        synchronized( this )
+        {
+            checkOpen();
+            while( compacting )
+            {
+                try
+                {
+                    wait();
+                }
+                catch( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            compacting = true;
+        }
+        doCompact();
+    }
+
+    private void compactIfNeeded()
+    {
+        if( !compacting && logEnd - logStart > compactionThreshold )
+        {
+            compacting = true;
+            COMPACTOR.execute(() -> {
+                try
+                {
+                    doCompact();
+                }
+                catch( IOException e )
+                {
+                    log.log(Level.WARNING, "Can not compact index " + file, e);
+                }
+            });
+        }
+    }
+
+    /**
+     * The new sorted table is written without holding the lock, so the index may be changed meanwhile.
+     * Such changes are written to the log of the new file before it replaces the current one.
+     */
+    private void doCompact() throws IOException
+    {
+        File temp = new File(file.getPath() + ".compact");
+        try
+        {
+            Table current;
+            Map<String, IndexEntry> snapshot;
+            synchronized( this )
+            {
+                if( closed )
+                    return;
+                current = table;
+                snapshot = new HashMap<>(changes);
+            }
+            List<Map.Entry<String, IndexEntry>> entries = merge(current, snapshot);
+            try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE))
+            {
+                long end = writeTable(out, entries);
+                synchronized( this )
+                {
+                    if( closed )
+                        return;
+                    for( Map.Entry<String, IndexEntry> entry : changes.entrySet() )
+                    {
+                        if( snapshot.get(entry.getKey()) != entry.getValue() )
+                            end += write(out, end, encode(entry.getKey(), entry.getValue()));
+                    }
+                    writeLogEnd(out, end);
+                    out.force(true);
+                    out.close();
+                    // the current file is reopened if it can't be replaced
+                    flush();
+                    // mapped file can't be replaced on some platforms, the table isn't read outside the lock by now
+                    unmap(table.buffer);
+                    table = null;
+                    channel.close();
+                    boolean moved = false;
+                    try
+                    {
+                        move(temp, file);
+                        moved = true;
+                    }
+                    finally
+                    {
+                        open();
+                        // failed compaction is not retried on every change, but after the log doubles
+                        compactionThreshold = moved ? MAX_LOG_SIZE : Math.max(MAX_LOG_SIZE, 2 * ( logEnd - logStart ));
+                    }
+                }
+            }
+        }
+        finally
+        {
+            synchronized( this )
+            {
+                compacting = false;
+                notifyAll();
+            }
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /**
+     * Releases the mapping without waiting for garbage collection. The buffer must not be accessed after that.
+     */
+    private void unmap(ByteBuffer buffer)
+    {
+        try
+        {
+            Field field = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            unsafe.getClass().getMethod("invokeCleaner", ByteBuffer.class).invoke(unsafe, buffer);
+        }
+        catch( Exception e )
+        {
+            log.log(Level.FINE, "Can not unmap index " + file + ", it's released by garbage collector", e);
+        }
+    }
+
+    private static void move(File source, File target) throws IOException
+    {
+        try
+        {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch( AtomicMoveNotSupportedException e )
+        {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * @return entries of the table updated by changes, in the order of keys
+     */
+    private static List<Map.Entry<String, IndexEntry>> merge(Table table, Map<String, IndexEntry> changes)
+    {
+        byte[][] changedKeys = new byte[changes.size()][];
+        int n = 0;
+        for( String key : changes.keySet() )
+            changedKeys[n++] = key.getBytes(UTF_8);
+        Arrays.sort(changedKeys, Arrays::compareUnsigned);
+
+        List<Map.Entry<String, IndexEntry>> result = new ArrayList<>(table.count + n);
+        int slot = 0, i = 0;
+        while( slot < table.count || i < n )
+        {
+            int cmp = slot == table.count ? 1 : i == n ? -1 : table.compare(slot, changedKeys[i]);
+            if( cmp < 0 )
+            {
+                String key = table.getKey(slot);
+                result.add(new SimpleImmutableEntry<>(key, table.getEntry(slot)));
+                slot++;
+                continue;
+            }
+            String key = new String(changedKeys[i], UTF_8);
+            IndexEntry entry = changes.get(key);
+            if( entry != REMOVED )
+                result.add(new SimpleImmutableEntry<>(key, copy(entry)));
+            i++;
+            if( cmp == 0 )
+                slot++;
+        }
+        return result;
+    }
+
+    /**
+     * Writes the header and the sorted table.
+     * @return the start of the log
+     */
+    private static long writeTable(FileChannel out, List<Map.Entry<String, IndexEntry>> entries) throws IOException
+    {
+        byte[][] keys = new byte[entries.size()][];
+        long keyAreaSize = 0;
+        for( int i = 0; i < keys.length; i++ )
+        {
+            keys[i] = entries.get(i).getKey().getBytes(UTF_8);
+            keyAreaSize += keys[i].length;
+        }
+        long logStart = HEADER_SIZE + (long)keys.length * SLOT_SIZE + keyAreaSize;
+        if( logStart > Integer.MAX_VALUE )
+            throw new IOException("Index is too large: " + entries.size() + " keys");
+
+        out.position(HEADER_SIZE);
+        DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(out), 1 << 16));
+        int offset = 0;
+        for( int i = 0; i < keys.length; i++ )
+        {
+            IndexEntry entry = entries.get(i).getValue();
+            stream.writeInt(offset);
+            stream.writeInt(keys[i].length);
+            stream.writeLong(entry.from);
+            stream.writeLong(entry.len);
+            offset += keys[i].length;
+        }
+        for( byte[] key : keys )
+            stream.write(key);
+        stream.flush();
+        writeHeader(out, keys.length, (int)keyAreaSize, logStart);
+        return logStart;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // File access
+    //
+
+    private void append(String key, IndexEntry entry)
+    {
+        checkOpen();
+        try
+        {
+            logEnd += write(channel, logEnd, encode(key, entry));
+            dirty = true;
+        }
+        catch( IOException e )
+        {
+            throw ExceptionRegistry.translateException(e);
+        }
+    }
+
+    private static ByteBuffer encode(String key, IndexEntry entry)
+    {
+        byte[] bytes = key.getBytes(UTF_8);
+        boolean removed = entry == REMOVED;
+        ByteBuffer buffer = ByteBuffer.allocate(4 + bytes.length + ( removed ? 0 : 16 ));
+        buffer.putInt(removed ? -bytes.length - 1 : bytes.length);
+        buffer.put(bytes);
+        if( !removed )
+        {
+            buffer.putLong(entry.from);
+            buffer.putLong(entry.len);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void writeHeader(FileChannel out, int count, int keyAreaSize, long logEnd) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(keyAreaSize).putLong(logEnd).putLong(0);
+        header.flip();
+        write(out, 0, header);
+    }
+
+    private static void writeLogEnd(FileChannel out, long logEnd) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        buffer.putLong(logEnd).flip();
+        write(out, LOG_END_OFFSET, buffer);
+    }
+
+    /**
+     * @return number of bytes written
+     */
+    private static int write(FileChannel out, long position, ByteBuffer buffer) throws IOException
+    {
+        int length = buffer.remaining();
+        while( buffer.hasRemaining() )
+            position += out.write(buffer, position);
+        return length;
+    }
+
+    private ByteBuffer read(FileChannel in, long position, int length) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while( buffer.hasRemaining() )
+        {
+            if( in.read(buffer, position + buffer.position()) < 0 )
+                throw new IOException("Index file is truncated: " + file);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private void checkOpen()
+    {
+        if( closed )
+            throw new IllegalStateException("Index is closed: " + file);
+    }
+
+    private static IndexEntry copy(IndexEntry entry)
+    {
+        return new IndexEntry(entry.from, entry.len);
+    }
+
+    /**
+     * Sorted table mapped from the file. Read only, so it can be read without locking.
+     */
+    private static class Table
+    {
+        final ByteBuffer buffer;
+        final int count;
+        final int keyAreaStart;
+
+        Table(ByteBuffer buffer, int count, int keyAreaStart)
+        {
+            this.buffer = buffer;
+            this.count = count;
+            this.keyAreaStart = keyAreaStart;
+        }
+
+        /**
+         * @return slot of the key or <code>-(insertion point) - 1</code>
+         */
+        int find(byte[] key)
+        {
+            int low = 0, high = count - 1;
+            while( low <= high )
+            {
+                int mid = ( low + high ) >>> 1;
+                int cmp = compare(mid, key);
+                if( cmp < 0 )
+                    low = mid + 1;
+                else if( cmp > 0 )
+                    high = mid - 1;
+                else
+                    return mid;
+            }
+            return -low - 1;
+        }
+
+        /**
+         * Compares the key of the slot with the given one as unsigned bytes.
+         */
+        int compare(int slot, byte[] key)
+        {
+            int pos = HEADER_SIZE + slot * SLOT_SIZE;
+            int offset = keyAreaStart + buffer.getInt(pos);
+            int length = buffer.getInt(pos + 4);
+            int n = Math.min(length, key.length);
+            for( int i = 0; i < n; i++ )
+            {
+                int cmp = ( buffer.get(offset + i) & 0xFF ) - ( key[i] & 0xFF );
+                if( cmp != 0 )
+                    return cmp;
+            }
+            return length - key.length;
+        }
+
+        String getKey(int slot)
+        {
+            int pos = HEADER_SIZE + slot * SLOT_SIZE;
+            byte[] key = new byte[buffer.getInt(pos + 4)];
+            buffer.get(keyAreaStart + buffer.getInt(pos), key);
+            return new String(key, UTF_8);
+        }
+
+        IndexEntry getEntry(int slot)
+        {
+            int pos = HEADER_SIZE + slot * SLOT_SIZE;
+            return new IndexEntry(buffer.getLong(pos + 8), buffer.getLong(pos + 16));
+        }
+    }
+}
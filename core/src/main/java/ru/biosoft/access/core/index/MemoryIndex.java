@@ -0,0 +1,305 @@
+package ru.biosoft.access.core.index;
+
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ru.biosoft.access.core.DataElement;
+import ru.biosoft.access.core.Index;
+import ru.biosoft.access.core.Key;
+
+/**
+ * In-memory index of {@link MemoryQuerySystem}: maps element names to the values of element bean property.
+ * It also keeps the reverse mapping from values to names, either hashed or sorted by value,
+ * so elements can be found by property value or listed in the order of values.
+ *
+ * <p>The index is read-only, it's updated by its query system. Methods returning collections return copies.
+ */
+public class MemoryIndex extends AbstractMap<String, Object> implements Index<Object>
+{
+    /**
+     * Order of values in sorted index: numbers go first and are compared by their double value,
+     * other values are ordered by their class name, then naturally if they are comparable or by their string representation.
+     */
+    @SuppressWarnings ( {"unchecked", "rawtypes"} )
+    public static final Comparator<Object> VALUE_ORDER = (v1, v2) -> {
+        boolean number1 = v1 instanceof Number;
+        boolean number2 = v2 instanceof Number;
+        if( number1 && number2 )
+            return Double.compare( ( (Number)v1 ).doubleValue(), ( (Number)v2 ).doubleValue());
+        if( number1 != number2 )
+            return number1 ? -1 : 1;
+        if( v1.getClass() != v2.getClass() )
+            return v1.getClass().getName().compareTo(v2.getClass().getName());
+        if( v1 instanceof Comparable )
+            return ( (Comparable)v1 ).compareTo(v2);
+        return v1.toString().compareTo(v2.toString());
+    };
+
+    private final MemoryQuerySystem querySystem;
+    private final String property;
+    private final boolean sorted;
+    /** Accessed under the lock on the query system. */
+    private Content content = new Content();
+    private final Map<Class<?>, Optional<Method>> getters = new ConcurrentHashMap<>();
+
+    /**
+     * @param property name of the bean property which is indexed, also used as the index name
+     * @param sorted whether values should be kept sorted
+     */
+    public MemoryIndex(MemoryQuerySystem querySystem, String property, boolean sorted)
+    {
+        this.querySystem = querySystem;
+        this.property = property;
+        this.sorted = sorted;
+    }
+
+    @Override
+    public String getName()
+    {
+        return property;
+    }
+
+    public boolean isSorted()
+    {
+        return sorted;
+    }
+
+    /**
+     * @return value of the indexed property or <code>null</code> if element has no such property
+     */
+    protected Object getValue(DataElement de)
+    {
+        Method getter = getters.computeIfAbsent(de.getClass(), this::findGetter).orElse(null);
+        if( getter == null )
+            return null;
+        try
+        {
+            return getter.invoke(de);
+        }
+        catch( Exception e )
+        {
+            MemoryQuerySystem.log.fine("Can not get property " + property + " of " + de.getName() + ": " + e);
+            return null;
+        }
+    }
+
+    private Optional<Method> findGetter(Class<?> clazz)
+    {
+        try
+        {
+            for( PropertyDescriptor descriptor : Introspector.getBeanInfo(clazz).getPropertyDescriptors() )
+            {
+                if( descriptor.getName().equals(property) )
+                    return Optional.ofNullable(descriptor.getReadMethod());
+            }
+        }
+        catch( Exception e )
+        {
+            MemoryQuerySystem.log.fine("Can not introspect " + clazz.getName() + ": " + e);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Values of elements and the reverse mapping. Built from scratch without the lock and then installed by {@link #install(Content)}.
+     */
+    class Content
+    {
+        private final Map<String, Object> values = new HashMap<>();
+        private final Map<Object, Set<String>> names = sorted ? new TreeMap<>(VALUE_ORDER) : new HashMap<>();
+
+        /**
+         * @param value new value or <code>null</code> to remove the element from index
+         */
+        void update(String name, Object value)
+        {
+            Object old = value == null ? values.remove(name) : values.put(name, value);
+            if( old != null )
+            {
+                Set<String> set = names.get(old);
+                if( set != null )
+                {
+                    set.remove(name);
+                    if( set.isEmpty() )
+                        names.remove(old);
+                }
+            }
+            if( value != null )
+                names.computeIfAbsent(value, v -> sorted ? new TreeSet<>() : new HashSet<>()).add(name);
+        }
+    }
+
+    /**
+     * Replaces the content of the index, called under the lock on the query system.
+     */
+    void install(Content content)
+    {
+        this.content = content;
+    }
+
+    /**
+     * Updates the value of single element, called under the lock on the query system.
+     * @param value new value or <code>null</code> to remove the element from index
+     */
+    void update(String name, Object value)
+    {
+        content.update(name, value);
+    }
+
+    /**
+     * @return names of elements having the given property value
+     */
+    public Set<String> getNames(Object value)
+    {
+        querySystem.update();
+        synchronized( querySystem )
+        {
+            Set<String> set = value == null ? null : content.names.get(value);
+            return set == null ? Collections.emptySet() : new HashSet<>(set);
+        }
+    }
+
+    /**
+     * @param from lower bound of values, inclusive, or <code>null</code> for no bound
+     * @param to upper bound of values, exclusive, or <code>null</code> for no bound
+     * @return names of elements with property values in the range, in the order of values
+     * @throws UnsupportedOperationException if index is not sorted
+     */
+    public List<String> getNames(Object from, Object to)
+    {
+        if( !sorted )
+            throw new UnsupportedOperationException("Index " + property + " is not sorted");
+        querySystem.update();
+        synchronized( querySystem )
+        {
+            TreeMap<Object, Set<String>> map = (TreeMap<Object, Set<String>>)content.names;
+            Map<Object, Set<String>> range = from == null ? ( to == null ? map : map.headMap(to) )
+                    : to == null ? map.tailMap(from) : map.subMap(from, to);
+            return flatten(range.values());
+        }
+    }
+
+    /**
+     * @return names of elements in the order of their property values, elements without value are omitted
+     * @throws UnsupportedOperationException if index is not sorted
+     */
+    public List<String> getSortedNames()
+    {
+        return getNames(null, null);
+    }
+
+    /**
+     * @return iterator over names of elements which values are accepted by key (all elements if key is <code>null</code>),
+     * in the order of values for sorted index
+     */
+    @Override
+    public Iterator<String> nodeIterator(Key key)
+    {
+        querySystem.update();
+        synchronized( querySystem )
+        {
+            List<String> result = new ArrayList<>();
+            for( Map.Entry<Object, Set<String>> entry : content.names.entrySet() )
+            {
+                if( key == null || key.accept(entry.getKey()) )
+                    result.addAll(entry.getValue());
+            }
+            return result.iterator();
+        }
+    }
+
+    private static List<String> flatten(Collection<Set<String>> sets)
+    {
+        List<String> result = new ArrayList<>();
+        for( Set<String> set : sets )
+            result.addAll(set);
+        return result;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Map methods
+    //
+
+    @Override
+    public Object get(Object name)
+    {
+        querySystem.update();
+        synchronized( querySystem )
+        {
+            return content.values.get(name);
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object name)
+    {
+        querySystem.update();
+        synchronized( querySystem )
+        {
+            return content.values.containsKey(name);
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        querySystem.update();
+        synchronized( querySystem )
+        {
+            return content.values.size();
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet()
+    {
+        querySystem.update();
+        synchronized( querySystem )
+        {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(content.values)).entrySet();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Index methods
+    //
+
+    @Override
+    public void close()
+    {
+        synchronized( querySystem )
+        {
+            content = new Content();
+        }
+    }
+
+    @Override
+    public boolean isValid()
+    {
+        return querySystem.isValid();
+    }
+
+    @Override
+    public File getIndexFile()
+    {
+        return null;
+    }
+}
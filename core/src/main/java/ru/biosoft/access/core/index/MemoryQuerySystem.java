@@ -0,0 +1,288 @@
+package ru.biosoft.access.core.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import ru.biosoft.access.core.DataCollection;
+import ru.biosoft.access.core.DataCollectionBatchEvent;
+import ru.biosoft.access.core.DataCollectionEvent;
+import ru.biosoft.access.core.DataCollectionInfo;
+import ru.biosoft.access.core.DataElement;
+import ru.biosoft.access.core.Index;
+import ru.biosoft.access.core.ListenerSubscription;
+import ru.biosoft.access.core.QuerySystem;
+
+/**
+ * {@link QuerySystem} which keeps indexes over bean properties of elements in memory.
+ *
+ * <p>Indexes are listed in {@link QuerySystem#INDEX_LIST} property of the collection as <code>property[:hash|:sorted]</code>,
+ * hash index is created by default. The sorted {@value #TITLE_INDEX} index used by
+ * {@link ru.biosoft.access.core.AbstractDataCollection#sortNameList(java.util.List)} is always available,
+ * element name is used as the title if element has no <code>title</code> property. Example:
+ * <pre>
+ * querySystem=ru.biosoft.access.core.index.MemoryQuerySystem
+ * querySystem.indexes=species;length:sorted
+ * </pre>
+ *
+ * <p>Indexes are built on first access. Later changes of the collection are tracked by listener callbacks,
+ * which only remember the names of changed elements, so writes are not slowed down.
+ * The elements are re-read and indexes are updated before the next index access.
+ * Elements are read without holding the lock on the query system, so the collection may access indexes
+ * while it's locking its own state.
+ */
+public class MemoryQuerySystem implements QuerySystem
+{
+    protected static final Logger log = Logger.getLogger(MemoryQuerySystem.class.getName());
+
+    public static final String TITLE_INDEX = "title";
+
+    /** Index type suffixes in {@link QuerySystem#INDEX_LIST}. */
+    public static final String HASH = "hash";
+    public static final String SORTED = "sorted";
+
+    private final DataCollection<?> dc;
+    private final Map<String, MemoryIndex> indexes = new LinkedHashMap<>();
+    /** Names of elements changed since the last update mapped to the number of their latest change. */
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+    private final AtomicLong changeCount = new AtomicLong();
+    /** Set when the indexes start to be built, changes are remembered since then. */
+    private volatile boolean tracking;
+    private volatile boolean built;
+    private volatile boolean closed;
+    /** Set while the thread updates the indexes, so the collection read by the update sees indexes as they are. */
+    private final ThreadLocal<Boolean> updating = new ThreadLocal<>();
+
+    public MemoryQuerySystem(DataCollection<?> dc)
+    {
+        this.dc = dc;
+        DataCollectionInfo info = dc.getInfo();
+        String list = info == null ? null : info.getProperty(INDEX_LIST);
+        if( list != null )
+        {
+            for( String entry : list.split(";") )
+            {
+                entry = entry.trim();
+                if( entry.isEmpty() )
+                    continue;
+                int pos = entry.indexOf(':');
+                String property = pos < 0 ? entry : entry.substring(0, pos).trim();
+                String type = pos < 0 ? HASH : entry.substring(pos + 1).trim();
+                if( !HASH.equals(type) && !SORTED.equals(type) )
+                {
+                    log.warning("Unknown type of index " + property + " for " + dc.getCompletePath() + ": " + type + ", hash index is used");
+                    type = HASH;
+                }
+                indexes.put(property, createIndex(property, SORTED.equals(type)));
+            }
+        }
+        if( !indexes.containsKey(TITLE_INDEX) )
+            indexes.put(TITLE_INDEX, createIndex(TITLE_INDEX, true));
+        dc.addDataCollectionListener(this, ListenerSubscription.of(ListenerSubscription.DONE_ALL));
+    }
+
+    protected MemoryIndex createIndex(String property, boolean sorted)
+    {
+        return TITLE_INDEX.equals(property) ? new TitleIndex(this, sorted) : new MemoryIndex(this, property, sorted);
+    }
+
+    public DataCollection<?> getDataCollection()
+    {
+        return dc;
+    }
+
+    @Override
+    public Index[] getIndexes()
+    {
+        return indexes.values().toArray(new Index[indexes.size()]);
+    }
+
+    @Override
+    public Index getIndex(String name)
+    {
+        return indexes.get(name);
+    }
+
+    @Override
+    public void close()
+    {
+        closed = true;
+        dc.removeDataCollectionListener(this);
+        for( MemoryIndex index : indexes.values() )
+            index.close();
+        pending.clear();
+    }
+
+    public boolean isValid()
+    {
+        return !closed;
+    }
+
+    /**
+     * Builds the indexes or applies the changes remembered since the last call.
+     * Called by indexes before every access without holding the lock on this query system: elements are read first,
+     * then the lock is taken only to install their values.
+     */
+    void update()
+    {
+        if( closed || updating.get() != null )
+            return;
+        updating.set(Boolean.TRUE);
+        try
+        {
+            if( !built )
+                build();
+            applyChanges();
+        }
+        finally
+        {
+            updating.remove();
+        }
+    }
+
+    private void build()
+    {
+        tracking = true;
+        List<MemoryIndex> indexList = new ArrayList<>(indexes.values());
+        List<MemoryIndex.Content> contents = new ArrayList<>();
+        for( MemoryIndex index : indexList )
+            contents.add(index.new Content());
+        for( String name : new ArrayList<>(dc.getNameList()) )
+        {
+            DataElement de = read(name);
+            if( de == null )
+                continue;
+            for( int i = 0; i < indexList.size(); i++ )
+                contents.get(i).update(name, indexList.get(i).getValue(de));
+        }
+        synchronized( this )
+        {
+            // another thread might build the indexes at the same time
+            if( built || closed )
+                return;
+            for( int i = 0; i < indexList.size(); i++ )
+                indexList.get(i).install(contents.get(i));
+            built = true;
+        }
+    }
+
+    private void applyChanges()
+    {
+        if( pending.isEmpty() )
+            return;
+        List<MemoryIndex> indexList = new ArrayList<>(indexes.values());
+        Map<String, Long> changes = new HashMap<>(pending);
+        Map<String, Object[]> values = new HashMap<>();
+        for( String name : changes.keySet() )
+        {
+            DataElement de = read(name);
+            Object[] elementValues = new Object[indexList.size()];
+            for( int i = 0; de != null && i < elementValues.length; i++ )
+                elementValues[i] = indexList.get(i).getValue(de);
+            values.put(name, elementValues);
+        }
+        synchronized( this )
+        {
+            if( closed )
+                return;
+            for( Map.Entry<String, Long> change : changes.entrySet() )
+            {
+                // element changed again might be read before the change, so it's left for the next update
+                if( !pending.remove(change.getKey(), change.getValue()) )
+                    continue;
+                Object[] elementValues = values.get(change.getKey());
+                for( int i = 0; i < elementValues.length; i++ )
+                    indexList.get(i).update(change.getKey(), elementValues[i]);
+            }
+        }
+    }
+
+    private DataElement read(String name)
+    {
+        try
+        {
+            if( dc.contains(name) )
+                return dc.get(name);
+        }
+        catch( Exception e )
+        {
+            log.log(Level.WARNING, "Can not index element " + name + " of " + dc.getCompletePath(), e);
+        }
+        return null;
+    }
+
+    private void changed(String name)
+    {
+        if( tracking && !closed )
+            pending.put(name, changeCount.incrementAndGet());
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // DataCollectionListener methods
+    //
+
+    @Override
+    public void elementAdded(DataCollectionEvent e)
+    {
+        changed(e.getDataElementName());
+    }
+
+    @Override
+    public void elementWillAdd(DataCollectionEvent e)
+    {
+    }
+
+    @Override
+    public void elementChanged(DataCollectionEvent e)
+    {
+        changed(e.getDataElementName());
+    }
+
+    @Override
+    public void elementWillChange(DataCollectionEvent e)
+    {
+    }
+
+    @Override
+    public void elementRemoved(DataCollectionEvent e)
+    {
+        changed(e.getDataElementName());
+    }
+
+    @Override
+    public void elementWillRemove(DataCollectionEvent e)
+    {
+    }
+
+    @Override
+    public void elementsChanged(DataCollectionBatchEvent e)
+    {
+        e.getAddedNames().forEach(this::changed);
+        e.getChangedNames().forEach(this::changed);
+        e.getRemovedNames().forEach(this::changed);
+    }
+
+    /**
+     * Index of element titles, element name is used if there is no title.
+     */
+    private static class TitleIndex extends MemoryIndex
+    {
+        TitleIndex(MemoryQuerySystem querySystem, boolean sorted)
+        {
+            super(querySystem, TITLE_INDEX, sorted);
+        }
+
+        @Override
+        protected Object getValue(DataElement de)
+        {
+            Object title = super.getValue(de);
+            return title == null ? de.getName() : title.toString();
+        }
+    }
+}
@@ -2,10 +2,13 @@ package ru.biosoft.access.core.undo;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.util.HashMap;
+import java.util.Map;
 
 import com.developmentontheedge.beans.undo.PropertyChangeUndo;
 import com.developmentontheedge.beans.undo.TransactionListener;
 
+import ru.biosoft.access.core.DataCollectionBatchEvent;
 import ru.biosoft.access.core.DataCollectionEvent;
 import ru.biosoft.access.core.DataCollectionListener;
 import ru.biosoft.access.core.DataCollectionVetoException;
@@ -34,6 +37,12 @@ public class DataCollectionUndoListener implements PropertyChangeListener, DataC
     @Override
     public void elementWillAdd(DataCollectionEvent e) throws DataCollectionVetoException, Exception { }
 
+    @Override
+    public boolean needsOldElement()
+    {
+        return false;
+    }
+
     @Override
     public void elementAdded(DataCollectionEvent e) throws Exception
     {
@@ -45,24 +54,60 @@ public class DataCollectionUndoListener implements PropertyChangeListener, DataC
         }
     }
 
-    protected DataElement elementToRemove = null;
+    /**
+     * Elements which are going to be removed by name. Several elements may be going to be removed by single removeAll call.
+     * Entries of removals which were vetoed by other listeners are discarded when the next removal completes.
+     */
+    private final Map<String, DataElement> elementsToRemove = new HashMap<>();
 
     @Override
     public void elementWillRemove(DataCollectionEvent e) throws DataCollectionVetoException, Exception
     {
-        elementToRemove = e.getDataElement();
+        DataElement element = e.getDataElement();
+        if (element != null)
+            elementsToRemove.put(e.getDataElementName(), element);
+        else
+            elementsToRemove.remove(e.getDataElementName());
     }
 
     @Override
     public void elementRemoved(DataCollectionEvent e) throws Exception
     {
-        if (elementToRemove != null )
+        addRemoveUndo(e.getDataElementName(), e);
+        elementsToRemove.clear();
+    }
+
+    @Override
+    public void elementsChanged(DataCollectionBatchEvent e) throws Exception
+    {
+        for (DataCollectionEvent event : e.toElementEvents())
         {
-            DataCollectionRemoveUndo undo = new DataCollectionRemoveUndo(elementToRemove, e.getOwner());
+            if (event.getType() == DataCollectionEvent.ELEMENT_ADDED)
+                elementAdded(event);
+            else if (event.getType() == DataCollectionEvent.ELEMENT_REMOVED)
+                addRemoveUndo(event.getDataElementName(), event);
+        }
+        elementsToRemove.clear();
+    }
+
+    private void addRemoveUndo(String name, DataCollectionEvent e)
+    {
+        DataElement removed = elementsToRemove.remove(name);
+        if (removed != null)
+        {
+            DataCollectionRemoveUndo undo = new DataCollectionRemoveUndo(removed, e.getOwner());
             transactionListener.addEdit(undo);
         }
     }
 
+    /**
+     * Discards elements remembered for removals which were not completed. Should be called when the transaction ends.
+     */
+    public void reset()
+    {
+        elementsToRemove.clear();
+    }
+
     // elementChange event we should get as PropertyChangeEvent
     @Override
     public void elementWillChange(DataCollectionEvent e) throws DataCollectionVetoException, Exception
@@ -80,6 +125,9 @@ public class DataCollectionUndoListener implements PropertyChangeListener, DataC
         while (e.getPrimaryEvent() != null)
             e = e.getPrimaryEvent();
 
+        if (e instanceof DataCollectionBatchEvent)
+            elementsChanged((DataCollectionBatchEvent)e);
+
         if (e.getType() == DataCollectionEvent.ELEMENT_ADDED)
             elementAdded(e);
         if (e.getType() == DataCollectionEvent.ELEMENT_REMOVED)
@@ -0,0 +1,206 @@
+package ru.biosoft.access.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestEventCoalescer
+{
+    private static class BatchCollector implements DataCollectionListener
+    {
+        final List<DataCollectionBatchEvent> batches = new ArrayList<>();
+
+        @Override
+        public void elementsChanged(DataCollectionBatchEvent e)
+        {
+            batches.add( e );
+        }
+        @Override
+        public void elementAdded(DataCollectionEvent e)
+        {
+        }
+        @Override
+        public void elementWillAdd(DataCollectionEvent e)
+        {
+        }
+        @Override
+        public void elementChanged(DataCollectionEvent e)
+        {
+        }
+        @Override
+        public void elementWillChange(DataCollectionEvent e)
+        {
+        }
+        @Override
+        public void elementRemoved(DataCollectionEvent e)
+        {
+        }
+        @Override
+        public void elementWillRemove(DataCollectionEvent e)
+        {
+        }
+    }
+
+    private static class BlockingCollector extends BatchCollector
+    {
+        final CountDownLatch started = new CountDownLatch( 1 );
+        final CountDownLatch gate = new CountDownLatch( 1 );
+
+        @Override
+        public void elementsChanged(DataCollectionBatchEvent e)
+        {
+            started.countDown();
+            try
+            {
+                gate.await();
+            }
+            catch( InterruptedException ex )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static VectorDataCollection<DataElement> createCollection()
+    {
+        Properties properties = new Properties();
+        properties.setProperty( DataCollectionConfigConstants.NAME_PROPERTY, "test" );
+        return new VectorDataCollection<>( null, properties );
+    }
+
+    @Test
+    public void testAddRemoveCancel()
+    {
+        VectorDataCollection<DataElement> dc = createCollection();
+        BatchCollector collector = new BatchCollector();
+        dc.addDataCollectionListener( collector );
+        EventCoalescer coalescer = new EventCoalescer( dc, 60000 );
+        coalescer.add( DataCollectionEvent.ELEMENT_ADDED, "a", null );
+        coalescer.add( DataCollectionEvent.ELEMENT_CHANGED, "a", null );
+        coalescer.add( DataCollectionEvent.ELEMENT_REMOVED, "a", new DataElementSupport( "a", dc ) );
+        coalescer.flush();
+        assertTrue( "Element unknown to listeners should not be reported", collector.batches.isEmpty() );
+
+        coalescer.add( DataCollectionEvent.ELEMENT_ADDED, "a", null );
+        coalescer.add( DataCollectionEvent.ELEMENT_REMOVED, "a", null );
+        coalescer.add( DataCollectionEvent.ELEMENT_ADDED, "b", null );
+        coalescer.flush();
+        assertEquals( 1, collector.batches.size() );
+        DataCollectionBatchEvent batch = collector.batches.get( 0 );
+        assertEquals( Arrays.asList( "b" ), batch.getAddedNames() );
+        assertEquals( Collections.emptyList(), batch.getChangedNames() );
+        assertEquals( Collections.emptyList(), batch.getRemovedNames() );
+    }
+
+    @Test
+    public void testChangeChange()
+    {
+        VectorDataCollection<DataElement> dc = createCollection();
+        BatchCollector collector = new BatchCollector();
+        dc.addDataCollectionListener( collector );
+        EventCoalescer coalescer = new EventCoalescer( dc, 60000 );
+        DataElement first = new DataElementSupport( "a", dc );
+        coalescer.add( DataCollectionEvent.ELEMENT_CHANGED, "a", first );
+        coalescer.add( DataCollectionEvent.ELEMENT_CHANGED, "a", new DataElementSupport( "a", dc ) );
+        coalescer.flush();
+        assertEquals( 1, collector.batches.size() );
+        DataCollectionBatchEvent batch = collector.batches.get( 0 );
+        assertEquals( Arrays.asList( "a" ), batch.getChangedNames() );
+        assertEquals( Collections.emptyList(), batch.getAddedNames() );
+        // listeners should see the element as it was before the first change
+        assertSame( first, batch.getOldElement( "a" ) );
+    }
+
+    @Test
+    public void testAddChange()
+    {
+        VectorDataCollection<DataElement> dc = createCollection();
+        BatchCollector collector = new BatchCollector();
+        dc.addDataCollectionListener( collector );
+        EventCoalescer coalescer = new EventCoalescer( dc, 60000 );
+        coalescer.add( DataCollectionEvent.ELEMENT_ADDED, "a", null );
+        coalescer.add( DataCollectionEvent.ELEMENT_CHANGED, "a", new DataElementSupport( "a", dc ) );
+        coalescer.flush();
+        assertEquals( 1, collector.batches.size() );
+        DataCollectionBatchEvent batch = collector.batches.get( 0 );
+        assertEquals( Arrays.asList( "a" ), batch.getAddedNames() );
+        assertEquals( Collections.emptyList(), batch.getChangedNames() );
+    }
+
+    @Test
+    public void testRemoveAddAndChangeRemove()
+    {
+        VectorDataCollection<DataElement> dc = createCollection();
+        BatchCollector collector = new BatchCollector();
+        dc.addDataCollectionListener( collector );
+        EventCoalescer coalescer = new EventCoalescer( dc, 60000 );
+        DataElement removed = new DataElementSupport( "a", dc );
+        DataElement changed = new DataElementSupport( "b", dc );
+        coalescer.add( DataCollectionEvent.ELEMENT_REMOVED, "a", removed );
+        coalescer.add( DataCollectionEvent.ELEMENT_ADDED, "a", null );
+        coalescer.add( DataCollectionEvent.ELEMENT_CHANGED, "b", changed );
+        coalescer.add( DataCollectionEvent.ELEMENT_REMOVED, "b", null );
+        coalescer.flush();
+        assertEquals( 1, collector.batches.size() );
+        DataCollectionBatchEvent batch = collector.batches.get( 0 );
+        assertEquals( Arrays.asList( "a" ), batch.getChangedNames() );
+        assertEquals( Arrays.asList( "b" ), batch.getRemovedNames() );
+        assertSame( removed, batch.getOldElement( "a" ) );
+        assertSame( changed, batch.getOldElement( "b" ) );
+    }
+
+    @Test
+    public void testCoalescingWindow() throws Exception
+    {
+        VectorDataCollection<DataElement> dc = createCollection();
+        BatchCollector collector = new BatchCollector();
+        dc.addDataCollectionListener( collector );
+        dc.setEventCoalescingWindow( 60000 );
+        dc.put( new DataElementSupport( "a", dc ) );
+        dc.put( new DataElementSupport( "b", dc ) );
+        dc.put( new DataElementSupport( "a", dc ) );
+        dc.remove( "b" );
+        assertTrue( "Events should be delayed", collector.batches.isEmpty() );
+        dc.flushEvents();
+        assertEquals( 1, collector.batches.size() );
+        assertEquals( Arrays.asList( "a" ), collector.batches.get( 0 ).getAddedNames() );
+        assertEquals( Collections.emptyList(), collector.batches.get( 0 ).getRemovedNames() );
+    }
+
+    @Test
+    public void testBlockedListenerDoesNotDelayOtherCollections() throws Exception
+    {
+        VectorDataCollection<DataElement> slow = createCollection();
+        BlockingCollector blocking = new BlockingCollector();
+        slow.addDataCollectionListener( blocking );
+        slow.setEventCoalescingWindow( 1 );
+        slow.put( new DataElementSupport( "a", slow ) );
+        assertTrue( blocking.started.await( 10, TimeUnit.SECONDS ) );
+
+        VectorDataCollection<DataElement> dc = createCollection();
+        CountDownLatch delivered = new CountDownLatch( 1 );
+        dc.addDataCollectionListener( new BatchCollector()
+        {
+            @Override
+            public void elementsChanged(DataCollectionBatchEvent e)
+            {
+                delivered.countDown();
+            }
+        } );
+        dc.setEventCoalescingWindow( 1 );
+        dc.put( new DataElementSupport( "b", dc ) );
+        assertTrue( "Blocked listener of one collection should not delay batches of the other", delivered.await( 10, TimeUnit.SECONDS ) );
+        blocking.gate.countDown();
+        slow.flushEvents();
+    }
+}
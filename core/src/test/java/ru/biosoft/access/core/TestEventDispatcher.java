@@ -0,0 +1,190 @@
+package ru.biosoft.access.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import ru.biosoft.access.core.EventDispatcher.OverflowPolicy;
+
+public class TestEventDispatcher
+{
+    @Test
+    public void testOrder() throws Exception
+    {
+        EventDispatcher dispatcher = new EventDispatcher( "test", 100, OverflowPolicy.BLOCK );
+        List<Integer> executed = Collections.synchronizedList( new ArrayList<>() );
+        List<Integer> expected = new ArrayList<>();
+        for( int i = 0; i < 10000; i++ )
+        {
+            int value = i;
+            dispatcher.execute( () -> executed.add( value ) );
+            expected.add( i );
+        }
+        dispatcher.awaitIdle();
+        assertEquals( expected, executed );
+        assertEquals( 0, dispatcher.getDroppedCount() );
+    }
+
+    @Test
+    public void testCollectionOrder() throws Exception
+    {
+        Properties properties = new Properties();
+        properties.setProperty( DataCollectionConfigConstants.NAME_PROPERTY, "test" );
+        VectorDataCollection<DataElement> dc = new VectorDataCollection<>( null, properties );
+        dc.setAsyncEventDispatch( true );
+        List<String> notified = Collections.synchronizedList( new ArrayList<>() );
+        dc.addDataCollectionListener( new DataCollectionListener()
+        {
+            @Override
+            public void elementAdded(DataCollectionEvent e)
+            {
+                notified.add( "added " + e.getDataElementName() );
+            }
+            @Override
+            public void elementWillAdd(DataCollectionEvent e)
+            {
+            }
+            @Override
+            public void elementChanged(DataCollectionEvent e)
+            {
+                notified.add( "changed " + e.getDataElementName() );
+            }
+            @Override
+            public void elementWillChange(DataCollectionEvent e)
+            {
+            }
+            @Override
+            public void elementRemoved(DataCollectionEvent e)
+            {
+                notified.add( "removed " + e.getDataElementName() );
+            }
+            @Override
+            public void elementWillRemove(DataCollectionEvent e)
+            {
+            }
+        } );
+        List<String> expected = new ArrayList<>();
+        for( int i = 0; i < 1000; i++ )
+        {
+            String name = "e" + ( i % 10 );
+            if( dc.contains( name ) && i % 3 == 0 )
+            {
+                dc.remove( name );
+                expected.add( "removed " + name );
+            }
+            else
+            {
+                expected.add( ( dc.contains( name ) ? "changed " : "added " ) + name );
+                dc.put( new DataElementSupport( name, dc ) );
+            }
+        }
+        dc.flushEvents();
+        assertEquals( expected, notified );
+    }
+
+    @Test
+    public void testCollectionsAreIndependent() throws Exception
+    {
+        EventDispatcher first = new EventDispatcher( "first", 10, OverflowPolicy.BLOCK );
+        EventDispatcher second = new EventDispatcher( "second", 10, OverflowPolicy.BLOCK );
+        CountDownLatch gate = new CountDownLatch( 1 );
+        first.execute( () -> await( gate ) );
+        CountDownLatch done = new CountDownLatch( 1 );
+        second.execute( done::countDown );
+        assertTrue( "Blocked listener of one collection should not delay the other", done.await( 10, TimeUnit.SECONDS ) );
+        gate.countDown();
+        first.awaitIdle();
+    }
+
+    @Test
+    public void testBlock() throws Exception
+    {
+        EventDispatcher dispatcher = new EventDispatcher( "test", 2, OverflowPolicy.BLOCK );
+        List<Integer> executed = Collections.synchronizedList( new ArrayList<>() );
+        CountDownLatch gate = fillQueue( dispatcher, executed );
+        Thread submitter = new Thread( () -> dispatcher.execute( () -> executed.add( 3 ) ) );
+        submitter.start();
+        submitter.join( 200 );
+        assertTrue( "Submitter should wait for the free space", submitter.isAlive() );
+        gate.countDown();
+        submitter.join( 10000 );
+        assertFalse( submitter.isAlive() );
+        dispatcher.awaitIdle();
+        assertEquals( Arrays.asList( 0, 1, 2, 3 ), executed );
+        assertEquals( 0, dispatcher.getDroppedCount() );
+    }
+
+    @Test
+    public void testDrop() throws Exception
+    {
+        EventDispatcher dispatcher = new EventDispatcher( "test", 2, OverflowPolicy.DROP );
+        List<Integer> executed = Collections.synchronizedList( new ArrayList<>() );
+        CountDownLatch gate = fillQueue( dispatcher, executed );
+        dispatcher.execute( () -> executed.add( 3 ) );
+        assertEquals( 1, dispatcher.getDroppedCount() );
+        gate.countDown();
+        dispatcher.awaitIdle();
+        assertEquals( Arrays.asList( 0, 1, 2 ), executed );
+    }
+
+    @Test
+    public void testCallerRuns() throws Exception
+    {
+        EventDispatcher dispatcher = new EventDispatcher( "test", 2, OverflowPolicy.CALLER_RUNS );
+        List<Integer> executed = Collections.synchronizedList( new ArrayList<>() );
+        CountDownLatch gate = fillQueue( dispatcher, executed );
+        Thread caller = Thread.currentThread();
+        List<Thread> threads = new ArrayList<>();
+        dispatcher.execute( () -> {
+            threads.add( Thread.currentThread() );
+            executed.add( 3 );
+        } );
+        assertEquals( Arrays.asList( caller ), threads );
+        gate.countDown();
+        dispatcher.awaitIdle();
+        // overflowing notification outruns the queued ones
+        assertEquals( Arrays.asList( 3, 0, 1, 2 ), executed );
+        assertEquals( 0, dispatcher.getDroppedCount() );
+    }
+
+    /**
+     * Submits notification 0 which waits for the returned gate and notifications 1, 2 filling the queue of capacity 2.
+     */
+    private static CountDownLatch fillQueue(EventDispatcher dispatcher, List<Integer> executed) throws InterruptedException
+    {
+        CountDownLatch gate = new CountDownLatch( 1 );
+        CountDownLatch started = new CountDownLatch( 1 );
+        dispatcher.execute( () -> {
+            started.countDown();
+            await( gate );
+            executed.add( 0 );
+        } );
+        assertTrue( started.await( 10, TimeUnit.SECONDS ) );
+        dispatcher.execute( () -> executed.add( 1 ) );
+        dispatcher.execute( () -> executed.add( 2 ) );
+        assertEquals( 2, dispatcher.getQueueSize() );
+        return gate;
+    }
+
+    private static void await(CountDownLatch latch)
+    {
+        try
+        {
+            latch.await();
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package ru.biosoft.access.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.util.Properties;
+
+import org.junit.Test;
+
+public class TestListenerRegistry
+{
+    private static class CountingListener implements DataCollectionListener
+    {
+        int added;
+
+        @Override
+        public void elementAdded(DataCollectionEvent e)
+        {
+            added++;
+        }
+        @Override
+        public void elementWillAdd(DataCollectionEvent e)
+        {
+        }
+        @Override
+        public void elementChanged(DataCollectionEvent e)
+        {
+        }
+        @Override
+        public void elementWillChange(DataCollectionEvent e)
+        {
+        }
+        @Override
+        public void elementRemoved(DataCollectionEvent e)
+        {
+        }
+        @Override
+        public void elementWillRemove(DataCollectionEvent e)
+        {
+        }
+    }
+
+    /**
+     * Forces garbage collection until the referent is collected.
+     */
+    private static void collect(WeakReference<?> reference) throws InterruptedException
+    {
+        for( int i = 0; i < 100 && reference.get() != null; i++ )
+        {
+            System.gc();
+            Thread.sleep( 10 );
+        }
+        assertTrue( "Listener was not garbage collected", reference.get() == null );
+    }
+
+    @Test
+    public void testWeakListenerPurge() throws Exception
+    {
+        ListenerRegistry registry = new ListenerRegistry();
+        CountingListener strong = new CountingListener();
+        registry.add( strong );
+        CountingListener weak = new CountingListener();
+        registry.addWeak( weak, null );
+        assertEquals( 2, registry.getRegistrations().length );
+
+        WeakReference<CountingListener> reference = new WeakReference<>( weak );
+        weak = null;
+        collect( reference );
+        // reference queue is filled by GC asynchronously
+        for( int i = 0; i < 100 && registry.getRegistrations().length > 1; i++ )
+        {
+            registry.purge();
+            Thread.sleep( 10 );
+        }
+        assertEquals( 1, registry.getRegistrations().length );
+        assertSame( strong, registry.getRegistrations()[0].getListener() );
+    }
+
+    @Test
+    public void testWeakListenerNotification() throws Exception
+    {
+        Properties properties = new Properties();
+        properties.setProperty( DataCollectionConfigConstants.NAME_PROPERTY, "test" );
+        VectorDataCollection<DataElement> dc = new VectorDataCollection<>( null, properties );
+        CountingListener strong = new CountingListener();
+        dc.addDataCollectionListener( strong );
+        CountingListener weak = new CountingListener();
+        dc.addWeakDataCollectionListener( weak, ListenerSubscription.ALL );
+        dc.put( new DataElementSupport( "a", dc ) );
+        assertEquals( 1, strong.added );
+        assertEquals( "Weakly registered listener should be notified while it is alive", 1, weak.added );
+
+        WeakReference<CountingListener> reference = new WeakReference<>( weak );
+        weak = null;
+        collect( reference );
+        // notification purges registrations of collected listeners
+        dc.put( new DataElementSupport( "b", dc ) );
+        assertEquals( 2, strong.added );
+    }
+}
@@ -0,0 +1,33 @@
+package ru.biosoft.access.core.cache;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestBloomFilter
+{
+    @Test
+    public void testFalsePositiveRate()
+    {
+        List<String> names = new ArrayList<>();
+        for( int i = 0; i < 10000; i++ )
+            names.add( "element" + i );
+        BloomFilter filter = BloomFilter.of( names );
+        for( String name : names )
+            assertTrue( filter.mightContain( name ) );
+
+        int falsePositives = 0;
+        for( int i = 1; i <= 10000; i++ )
+            if( filter.mightContain( "element0 (" + i + ")" ) )
+                falsePositives++;
+        assertTrue( "Too many false positives: " + falsePositives, falsePositives < 200 );
+
+        filter.add( "element0 (1)" );
+        assertTrue( filter.mightContain( "element0 (1)" ) );
+        assertFalse( filter.isSaturated() );
+    }
+}
@@ -0,0 +1,119 @@
+package ru.biosoft.access.core.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestBoundedCache
+{
+    @Test
+    public void testBasicOperations()
+    {
+        BoundedCache<String, String> cache = new BoundedCache<>( 10 );
+        cache.put( "a", "1" );
+        cache.put( "b", "2" );
+        assertEquals( "1", cache.get( "a" ) );
+        assertEquals( "1", cache.put( "a", "3" ) );
+        assertEquals( "3", cache.get( "a" ) );
+        assertEquals( "2", cache.remove( "b" ) );
+        assertNull( cache.get( "b" ) );
+        assertEquals( 1, cache.size() );
+        cache.clear();
+        assertTrue( cache.isEmpty() );
+    }
+
+    @Test
+    public void testSizeIsBounded()
+    {
+        BoundedCache<Integer, Integer> cache = new BoundedCache<>( 100 );
+        for( int i = 0; i < 10000; i++ )
+        {
+            cache.put( i, i );
+            cache.get( i / 2 );
+        }
+        assertTrue( "Cache exceeds its maximum: " + cache.size(), cache.size() <= 100 );
+    }
+
+    @Test
+    public void testEvictionListener()
+    {
+        BoundedCache<Integer, Integer> cache = new BoundedCache<>( 100 );
+        CacheStatsCounter counter = new CacheStatsCounter();
+        cache.setEvictionListener( (key, value) -> counter.recordEviction() );
+        for( int i = 0; i < 1000; i++ )
+            cache.put( i, i );
+        cache.remove( 999 );
+        CacheStats stats = counter.snapshot( cache.size() );
+        assertEquals( 1000 - 1 - stats.getSize(), stats.getEvictionCount() );
+    }
+
+    @Test
+    public void testWeights()
+    {
+        BoundedCache<String, String> cache = new BoundedCache<>( 100 );
+        cache.setWeigher( String::length );
+        cache.setMaximumWeight( 20 );
+        cache.setMaximumEntryWeight( 10 );
+        cache.put( "a", "aaaaa" );
+        cache.put( "b", "bbbbb" );
+        assertEquals( 10, cache.getWeightedSize() );
+        cache.put( "a", "aaaaaaaaaaaaaaa" );
+        assertNull( cache.get( "a" ) );
+        assertEquals( 5, cache.getWeightedSize() );
+        for( int i = 0; i < 10; i++ )
+            cache.put( "c" + i, "cccc" );
+        assertTrue( "Maximum weight exceeded: " + cache.getWeightedSize(), cache.getWeightedSize() <= 20 );
+    }
+
+    @Test
+    public void testWeightOverflowKeepsRecentEntry()
+    {
+        BoundedCache<String, String> cache = new BoundedCache<>( 100 );
+        cache.setWeigher( String::length );
+        cache.setMaximumWeight( 20 );
+        for( String key : new String[] {"a", "b", "c", "d"} )
+            cache.put( key, "xxxxx" );
+        cache.put( "e", "xxxxx" );
+        assertEquals( "xxxxx", cache.get( "e" ) );
+        assertNull( "The oldest entry should be evicted", cache.get( "a" ) );
+        assertEquals( 20, cache.getWeightedSize() );
+    }
+
+    @Test
+    public void testZipfianHitRate()
+    {
+        int keys = 10000;
+        int maximum = 500;
+        double[] cumulative = new double[keys];
+        double sum = 0;
+        for( int i = 0; i < keys; i++ )
+        {
+            sum += 1.0 / ( i + 1 );
+            cumulative[i] = sum;
+        }
+        // hit rate of the ideal cache which keeps the most popular keys
+        double optimal = cumulative[maximum - 1] / sum;
+
+        BoundedCache<Integer, Integer> cache = new BoundedCache<>( maximum );
+        Random random = new Random( 42 );
+        int hits = 0;
+        int requests = 500000;
+        for( int i = 0; i < requests; i++ )
+        {
+            double value = random.nextDouble() * sum;
+            int pos = java.util.Arrays.binarySearch( cumulative, value );
+            int key = pos >= 0 ? pos : -pos - 1;
+            if( cache.get( key ) != null )
+                hits++;
+            else
+                cache.put( key, key );
+        }
+        double hitRate = (double)hits / requests;
+        assertTrue( "Hit rate is too low: " + hitRate + ", optimal is " + optimal, hitRate > optimal * 0.9 );
+        assertTrue( cache.size() <= maximum );
+    }
+}
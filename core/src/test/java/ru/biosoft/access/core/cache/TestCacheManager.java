@@ -0,0 +1,67 @@
+package ru.biosoft.access.core.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TestCacheManager
+{
+    @Test
+    public void testBudget()
+    {
+        CacheManager manager = new CacheManager( 100 * BoundedCache.DEFAULT_WEIGHT );
+        BoundedCache<Integer, Integer> first = new BoundedCache<>( 1000 );
+        BoundedCache<Integer, Integer> second = new BoundedCache<>( 1000 );
+        first.register( manager, 0 );
+        second.register( manager, 0 );
+        for( int i = 0; i < 500; i++ )
+        {
+            first.put( i, i );
+            second.put( i, i );
+        }
+        assertTrue( "Budget exceeded: " + manager.getWeight(), manager.getWeight() <= manager.getBudget() );
+        assertEquals( first.getWeightedSize() + second.getWeightedSize(), manager.getWeight() );
+        assertEquals( 2, manager.getCacheCount() );
+    }
+
+    @Test
+    public void testColdHeavyEntriesEvictedFirst()
+    {
+        CacheManager manager = new CacheManager( 10000 );
+        BoundedCache<String, String> heavy = new BoundedCache<>( 100 );
+        heavy.setWeigher( value -> 1000 );
+        BoundedCache<String, String> light = new BoundedCache<>( 100 );
+        light.setWeigher( value -> 10 );
+        heavy.register( manager, 0 );
+        light.register( manager, 0 );
+        heavy.put( "cold", "cold" );
+        for( int i = 0; i < 50; i++ )
+            light.put( "light" + i, "light" );
+        for( int i = 0; i < 9; i++ )
+            heavy.put( "hot" + i, "hot" );
+        assertNull( heavy.get( "cold" ) );
+        assertNotNull( light.get( "light0" ) );
+        assertTrue( manager.getWeight() <= manager.getBudget() );
+    }
+
+    @Test
+    public void testFloorAndCeiling()
+    {
+        CacheManager manager = new CacheManager( 0 );
+        BoundedCache<Integer, Integer> cache = new BoundedCache<>( 1000 );
+        cache.setWeigher( value -> 10 );
+        cache.setMaximumWeight( 500 );
+        cache.register( manager, 200 );
+        for( int i = 0; i < 100; i++ )
+            cache.put( i, i );
+        assertEquals( 200, cache.getWeightedSize() );
+
+        manager.setBudget( Long.MAX_VALUE );
+        for( int i = 0; i < 100; i++ )
+            cache.put( i, i );
+        assertEquals( 500, cache.getWeightedSize() );
+    }
+}
@@ -0,0 +1,62 @@
+package ru.biosoft.access.core.filter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class TestCompressedBitmap
+{
+    @Test
+    public void testSparseAndDenseGroups()
+    {
+        Random random = new Random( 1 );
+        TreeSet<Integer> expected = new TreeSet<>();
+        CompressedBitmap bitmap = new CompressedBitmap();
+        // first group becomes dense, others stay sparse
+        for( int i = 0; i < 50000; i++ )
+        {
+            int value = i < 30000 ? random.nextInt( 65536 ) : random.nextInt( 1000000 );
+            expected.add( value );
+            bitmap.add( value );
+        }
+        assertEquals( expected.size(), bitmap.getCardinality() );
+        int[] values = expected.stream().mapToInt( Integer::intValue ).toArray();
+        assertArrayEquals( values, bitmap.toArray() );
+        for( int i = 0; i < values.length; i += 7 )
+        {
+            assertEquals( values[i], bitmap.select( i ) );
+            assertEquals( i, bitmap.rank( values[i] ) );
+        }
+        for( int i = 0; i < 10000; i++ )
+        {
+            int value = random.nextInt( 1100000 );
+            assertEquals( expected.contains( value ), bitmap.contains( value ) );
+        }
+    }
+
+    @Test
+    public void testAnd()
+    {
+        CompressedBitmap even = new CompressedBitmap();
+        CompressedBitmap third = new CompressedBitmap();
+        for( int i = 0; i < 300000; i++ )
+        {
+            if( i % 2 == 0 )
+                even.add( i );
+            if( i % 3 == 0 )
+                third.add( i );
+        }
+        CompressedBitmap both = even.and( third );
+        assertEquals( 50000, both.getCardinality() );
+        assertTrue( both.contains( 6 ) );
+        assertFalse( both.contains( 4 ) );
+        assertEquals( 299994, both.select( 49999 ) );
+        assertTrue( even.and( new CompressedBitmap() ).isEmpty() );
+    }
+}
@@ -0,0 +1,364 @@
+package ru.biosoft.access.core.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import ru.biosoft.access.core.DataCollection;
+import ru.biosoft.access.core.DataCollectionConfigConstants;
+import ru.biosoft.access.core.DataCollectionEvent;
+import ru.biosoft.access.core.DataCollectionListener;
+import ru.biosoft.access.core.DataElement;
+import ru.biosoft.access.core.DataElementDescriptor;
+import ru.biosoft.access.core.DataElementSupport;
+import ru.biosoft.access.core.VectorDataCollection;
+import ru.biosoft.jobcontrol.FunctionJobControl;
+import ru.biosoft.jobcontrol.JobControl;
+
+public class TestFilteredDataCollection
+{
+    public static class Element extends DataElementSupport
+    {
+        private final int value;
+
+        public Element(String name, DataCollection<?> origin, int value)
+        {
+            super( name, origin );
+            this.value = value;
+        }
+
+        public int getValue()
+        {
+            return value;
+        }
+    }
+
+    /** Accepts elements with positive value. */
+    private static class PositiveFilter implements Filter<DataElement>
+    {
+        @Override
+        public boolean isEnabled()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean isAcceptable(DataElement de)
+        {
+            return de instanceof Element && ( (Element)de ).getValue() > 0;
+        }
+    }
+
+    private static class EventRecorder implements DataCollectionListener
+    {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void elementAdded(DataCollectionEvent e)
+        {
+            events.add( "added " + e.getDataElementName() );
+        }
+        @Override
+        public void elementWillAdd(DataCollectionEvent e)
+        {
+        }
+        @Override
+        public void elementChanged(DataCollectionEvent e)
+        {
+            events.add( "changed " + e.getDataElementName() );
+        }
+        @Override
+        public void elementWillChange(DataCollectionEvent e)
+        {
+        }
+        @Override
+        public void elementRemoved(DataCollectionEvent e)
+        {
+            events.add( "removed " + e.getDataElementName() );
+        }
+        @Override
+        public void elementWillRemove(DataCollectionEvent e)
+        {
+        }
+    }
+
+    private static Properties createProperties()
+    {
+        Properties properties = new Properties();
+        properties.setProperty( DataCollectionConfigConstants.NAME_PROPERTY, "primary" );
+        return properties;
+    }
+
+    /**
+     * @return primary collection keeping names sorted
+     */
+    private static VectorDataCollection<DataElement> createSortedPrimary()
+    {
+        return new VectorDataCollection<>( null, createProperties() );
+    }
+
+    /**
+     * @return primary collection keeping names in the insertion order
+     */
+    private static VectorDataCollection<DataElement> createUnsortedPrimary()
+    {
+        return new VectorDataCollection<DataElement>( null, createProperties() )
+        {
+            {
+                elements = new LinkedHashMap<>();
+            }
+        };
+    }
+
+    @Test
+    public void testSortedIncrementalUpdate() throws Exception
+    {
+        VectorDataCollection<DataElement> primary = createSortedPrimary();
+        for( String name : Arrays.asList( "b", "d", "f", "h" ) )
+            primary.put( new Element( name, primary, name.equals( "d" ) ? 0 : 1 ) );
+        FilteredDataCollection<DataElement> filtered = new FilteredDataCollection<>( primary, new PositiveFilter() );
+        EventRecorder recorder = new EventRecorder();
+        filtered.addDataCollectionListener( recorder );
+        assertEquals( Arrays.asList( "b", "f", "h" ), filtered.getNameList() );
+
+        primary.put( new Element( "a", primary, 1 ) );
+        primary.put( new Element( "e", primary, 1 ) );
+        primary.put( new Element( "c", primary, 0 ) );
+        assertEquals( Arrays.asList( "a", "b", "e", "f", "h" ), filtered.getNameList() );
+        assertFalse( filtered.contains( "c" ) );
+
+        // changed element enters and leaves the filtered collection
+        primary.put( new Element( "d", primary, 1 ) );
+        primary.put( new Element( "f", primary, 0 ) );
+        primary.put( new Element( "h", primary, 2 ) );
+        assertEquals( Arrays.asList( "a", "b", "d", "e", "h" ), filtered.getNameList() );
+
+        primary.remove( "b" );
+        primary.remove( "c" );
+        assertEquals( Arrays.asList( "a", "d", "e", "h" ), filtered.getNameList() );
+        assertTrue( filtered.contains( "d" ) );
+        assertFalse( filtered.contains( "b" ) );
+        assertEquals( 4, filtered.getSize() );
+        assertEquals( Arrays.asList( "added a", "added e", "added d", "removed f", "changed h", "removed b" ), recorder.events );
+    }
+
+    @Test
+    public void testUnsortedIncrementalUpdate() throws Exception
+    {
+        VectorDataCollection<DataElement> primary = createUnsortedPrimary();
+        for( String name : Arrays.asList( "h", "d", "f", "b" ) )
+            primary.put( new Element( name, primary, name.equals( "d" ) ? 0 : 1 ) );
+        FilteredDataCollection<DataElement> filtered = new FilteredDataCollection<>( primary, new PositiveFilter() );
+        EventRecorder recorder = new EventRecorder();
+        filtered.addDataCollectionListener( recorder );
+        assertEquals( Arrays.asList( "h", "f", "b" ), filtered.getNameList() );
+
+        primary.put( new Element( "e", primary, 1 ) );
+        primary.put( new Element( "a", primary, 1 ) );
+        primary.put( new Element( "c", primary, 0 ) );
+        assertEquals( Arrays.asList( "h", "f", "b", "e", "a" ), filtered.getNameList() );
+        assertFalse( filtered.contains( "c" ) );
+
+        // accepted element takes its position in the primary collection
+        List<String> names = filtered.getNameList();
+        primary.put( new Element( "d", primary, 1 ) );
+        primary.put( new Element( "f", primary, 0 ) );
+        primary.put( new Element( "h", primary, 2 ) );
+        assertEquals( Arrays.asList( "h", "d", "b", "e", "a" ), filtered.getNameList() );
+        assertEquals( "Name list obtained before is not affected by the updates", Arrays.asList( "h", "f", "b", "e", "a" ), names );
+
+        primary.remove( "b" );
+        primary.remove( "c" );
+        assertEquals( Arrays.asList( "h", "d", "e", "a" ), filtered.getNameList() );
+        assertTrue( filtered.contains( "d" ) );
+        assertFalse( filtered.contains( "b" ) );
+        assertFalse( filtered.contains( "f" ) );
+        assertEquals( 4, filtered.getSize() );
+        assertEquals( Arrays.asList( "added e", "added a", "added d", "removed f", "changed h", "removed b" ), recorder.events );
+    }
+
+    @Test
+    public void testPositionNamesSnapshot() throws Exception
+    {
+        VectorDataCollection<DataElement> primary = createUnsortedPrimary();
+        for( String name : Arrays.asList( "h", "d", "f", "b" ) )
+            primary.put( new Element( name, primary, name.equals( "d" ) ? 0 : 1 ) );
+        FilteredDataCollection<DataElement> filtered = new FilteredDataCollection<>( primary, new PositiveFilter() );
+        FilteredDataCollection<DataElement> other = new FilteredDataCollection<>( primary,
+                (NameFilter<DataElement>)name -> name.compareTo( "c" ) > 0 );
+        assertEquals( Arrays.asList( "h", "f", "b" ), filtered.getNameList() );
+        assertTrue( filtered.contains( "b" ) );
+        assertFalse( filtered.contains( "d" ) );
+        assertFalse( filtered.contains( "x" ) );
+        assertEquals( 1, filtered.getNameList().indexOf( "f" ) );
+        assertEquals( Arrays.asList( "h", "f" ), filtered.intersect( other ) );
+
+        // primary names change without events, filtered names still refer to the names they were built of
+        primary.setNotificationEnabled( false );
+        primary.put( new Element( "a", primary, 1 ) );
+        primary.remove( "h" );
+        primary.setNotificationEnabled( true );
+        assertEquals( Arrays.asList( "h", "f", "b" ), filtered.getNameList() );
+        assertEquals( Arrays.asList( "h", "f" ), filtered.intersect( other ) );
+    }
+
+    @Test
+    public void testDescriptorsFetchedOnlyWhenRequired() throws Exception
+    {
+        AtomicInteger descriptorCalls = new AtomicInteger();
+        VectorDataCollection<DataElement> primary = new VectorDataCollection<DataElement>( null, createProperties() )
+        {
+            @Override
+            public DataElementDescriptor getDescriptor(String name)
+            {
+                descriptorCalls.incrementAndGet();
+                return super.getDescriptor( name );
+            }
+        };
+        for( String name : Arrays.asList( "a", "b", "c", "d" ) )
+            primary.put( new Element( name, primary, 1 ) );
+
+        CompositeFilter<DataElement> names = new CompositeFilter<>();
+        names.add( (NameFilter<DataElement>)name -> !name.equals( "b" ) );
+        names.add( (NameFilter<DataElement>)name -> !name.equals( "c" ) );
+        assertFalse( names.isDescriptorRequired() );
+        FilteredDataCollection<DataElement> filtered = new FilteredDataCollection<>( primary, names );
+        assertEquals( Arrays.asList( "a", "d" ), filtered.getNameList() );
+        assertEquals( 0, descriptorCalls.get() );
+
+        CompositeFilter<DataElement> descriptors = new CompositeFilter<>();
+        descriptors.add( (NameFilter<DataElement>)name -> !name.equals( "b" ) );
+        descriptors.add( (DescriptorFilter<DataElement>) ( name, descriptor ) -> !name.equals( "c" ) );
+        assertTrue( descriptors.isDescriptorRequired() );
+        filtered = new FilteredDataCollection<>( primary, descriptors );
+        assertEquals( Arrays.asList( "a", "d" ), filtered.getNameList() );
+        assertTrue( descriptorCalls.get() > 0 );
+    }
+
+    private static class TerminatingJobControl extends FunctionJobControl
+    {
+        volatile boolean terminated;
+
+        TerminatingJobControl()
+        {
+            super( null );
+        }
+
+        @Override
+        public int getStatus()
+        {
+            return terminated ? JobControl.TERMINATED_BY_REQUEST : super.getStatus();
+        }
+    }
+
+    /** Accepts elements with value not divisible by 3, terminates the job after the given number of checks. */
+    private static class CountingFilter implements Filter<DataElement>
+    {
+        final AtomicInteger count = new AtomicInteger();
+        private final TerminatingJobControl jobControl;
+        private final int limit;
+
+        CountingFilter(TerminatingJobControl jobControl, int limit)
+        {
+            this.jobControl = jobControl;
+            this.limit = limit;
+        }
+
+        @Override
+        public boolean isEnabled()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean isAcceptable(DataElement de)
+        {
+            if( count.incrementAndGet() >= limit && jobControl != null )
+                jobControl.terminated = true;
+            return ( (Element)de ).getValue() % 3 != 0;
+        }
+    }
+
+    private static final int PARALLEL_SIZE = 25000;
+
+    private static void fill(VectorDataCollection<DataElement> primary, boolean shuffle) throws Exception
+    {
+        List<Integer> values = new ArrayList<>();
+        for( int i = 0; i < PARALLEL_SIZE; i++ )
+            values.add( i );
+        if( shuffle )
+            Collections.shuffle( values, new Random( 1 ) );
+        List<DataElement> elements = new ArrayList<>();
+        for( int value : values )
+            elements.add( new Element( String.format( "e%05d", value ), primary, value ) );
+        primary.putAll( elements );
+    }
+
+    private static FilteredDataCollection<DataElement> filter(VectorDataCollection<DataElement> primary, Filter<DataElement> filter,
+            int parallelism, FunctionJobControl jobControl)
+    {
+        Properties properties = new Properties();
+        properties.setProperty( FilteredDataCollection.FILTERING_PARALLELISM_PROPERTY, String.valueOf( parallelism ) );
+        return new FilteredDataCollection<>( null, "filtered", primary, filter, jobControl, properties );
+    }
+
+    private static void checkParallelFiltering(VectorDataCollection<DataElement> primary) throws Exception
+    {
+        FilteredDataCollection<DataElement> serial = filter( primary, new CountingFilter( null, 0 ), 1, null );
+        FilteredDataCollection<DataElement> parallel = filter( primary, new CountingFilter( null, 0 ), 4, null );
+        assertEquals( PARALLEL_SIZE - ( PARALLEL_SIZE + 2 ) / 3, serial.getSize() );
+        assertEquals( serial.getNameList(), parallel.getNameList() );
+        // added name is inserted in order only if the names are known to be sorted
+        primary.put( new Element( "e12345a", primary, 1 ) );
+        assertEquals( serial.getNameList(), parallel.getNameList() );
+    }
+
+    @Test
+    public void testParallelFilteringSorted() throws Exception
+    {
+        VectorDataCollection<DataElement> primary = createSortedPrimary();
+        fill( primary, false );
+        checkParallelFiltering( primary );
+        FilteredDataCollection<DataElement> parallel = filter( primary, new CountingFilter( null, 0 ), 4, null );
+        List<String> names = new ArrayList<>( parallel.getNameList() );
+        Collections.sort( names );
+        assertEquals( names, parallel.getNameList() );
+    }
+
+    @Test
+    public void testParallelFilteringUnsorted() throws Exception
+    {
+        VectorDataCollection<DataElement> primary = createUnsortedPrimary();
+        fill( primary, true );
+        checkParallelFiltering( primary );
+        FilteredDataCollection<DataElement> parallel = filter( primary, new CountingFilter( null, 0 ), 4, null );
+        assertEquals( "e12345a", parallel.getNameList().get( parallel.getSize() - 1 ) );
+    }
+
+    @Test
+    public void testParallelFilteringTermination() throws Exception
+    {
+        VectorDataCollection<DataElement> primary = createSortedPrimary();
+        fill( primary, false );
+        TerminatingJobControl serialJob = new TerminatingJobControl();
+        FilteredDataCollection<DataElement> serial = filter( primary, new CountingFilter( serialJob, 5000 ), 1, serialJob );
+        TerminatingJobControl parallelJob = new TerminatingJobControl();
+        CountingFilter parallelFilter = new CountingFilter( parallelJob, 5000 );
+        FilteredDataCollection<DataElement> parallel = filter( primary, parallelFilter, 4, parallelJob );
+        assertNull( serial.getFilteredNames() );
+        assertNull( parallel.getFilteredNames() );
+        assertTrue( "Filtering should stop after the termination: " + parallelFilter.count.get(), parallelFilter.count.get() < PARALLEL_SIZE );
+    }
+}
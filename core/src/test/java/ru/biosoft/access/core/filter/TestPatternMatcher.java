@@ -0,0 +1,48 @@
+package ru.biosoft.access.core.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class TestPatternMatcher
+{
+    private static final String[] PATTERNS = {".*", "", "ab", "AB", "^ab", "ab$", "^ab$", ".*ab.*", "^$", "a\\.b", "a.b", "b\\$",
+            "äB", "aab", "bab", "^.*b", "[ab]+", "a|b", "abab", "\\d"};
+
+    @Test
+    public void testSameAsRegex()
+    {
+        Random random = new Random( 1 );
+        String alphabet = "aAbB.$\n\räÄ1";
+        for( String pattern : PATTERNS )
+        {
+            PatternMatcher matcher = PatternMatcher.compile( pattern );
+            Pattern regex = Pattern.compile( pattern, Pattern.CASE_INSENSITIVE );
+            for( int i = 0; i < 2000; i++ )
+            {
+                StringBuilder value = new StringBuilder();
+                int length = random.nextInt( 8 );
+                for( int j = 0; j < length; j++ )
+                    value.append( alphabet.charAt( random.nextInt( alphabet.length() ) ) );
+                String s = value.toString();
+                assertEquals( "Pattern '" + pattern + "', value '" + s + "'", regex.matcher( s ).find(), matcher.find( s ) );
+            }
+        }
+    }
+
+    @Test
+    public void testLiteralsAvoidRegex()
+    {
+        assertTrue( PatternMatcher.compile( "^gene" ).toString().startsWith( "PrefixMatcher" ) );
+        assertTrue( PatternMatcher.compile( "_at$" ).toString().startsWith( "SuffixMatcher" ) );
+        assertTrue( PatternMatcher.compile( ".*kinase.*" ).toString().startsWith( "ContainsMatcher" ) );
+        assertTrue( PatternMatcher.compile( "g.n[0-9]" ).toString().startsWith( "RegexMatcher" ) );
+        assertTrue( PatternMatcher.compile( "Kinase" ).find( "protein KINASE 2" ) );
+        assertFalse( PatternMatcher.compile( "kinase" ).find( "protein kinas" ) );
+    }
+}
@@ -0,0 +1,136 @@
+package ru.biosoft.access.core.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ru.biosoft.access.core.Index.IndexEntry;
+
+public class TestBTreeIndex
+{
+    @Test
+    public void testOrderedAccess() throws Exception
+    {
+        File file = File.createTempFile( "index", ".btree" );
+        file.delete();
+        try
+        {
+            // small pages and cache, so the tree has several levels and pages are evicted
+            BTreeIndex index = new BTreeIndex( file, "id", 256, 4 );
+            for( int i = 0; i < 2000; i++ )
+                index.put( String.format( "key%04d", i ), new IndexEntry( i, 1 ) );
+            index.remove( "key0101" );
+            index.close();
+
+            index = new BTreeIndex( file, "id" );
+            assertEquals( 256, index.getPageSize() );
+            assertEquals( 1999, index.size() );
+            assertNull( index.get( "key0101" ) );
+            assertEquals( 1500, index.get( "key1500" ).from );
+            assertEquals( Arrays.asList( "key0100", "key0102", "key0103" ), index.getKeys( "key010", true, 0, 3 ) );
+            assertEquals( Arrays.asList( "key0108", "key0107" ), index.getKeys( "key010", false, 1, 2 ) );
+            Iterator<Map.Entry<String, IndexEntry>> iterator = index.entryIterator( "key1998", true );
+            assertEquals( "key1998", iterator.next().getKey() );
+            assertEquals( "key1999", iterator.next().getKey() );
+            assertEquals( false, iterator.hasNext() );
+
+            index.clear();
+            index.put( BTreeIndex.sortKey( "beta", "b" ), new IndexEntry( 0, 0 ) );
+            index.put( BTreeIndex.sortKey( "alpha", "a" ), new IndexEntry( 0, 0 ) );
+            assertEquals( Arrays.asList( "a", "b" ), index.getSortedNameList( true, 0, 10 ) );
+            index.close();
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testDescendingIterationWithSplits() throws Exception
+    {
+        File file = File.createTempFile( "index", ".btree" );
+        file.delete();
+        try
+        {
+            BTreeIndex index = new BTreeIndex( file, "id", 256, 4 );
+            List<String> expected = new ArrayList<>();
+            for( int i = 0; i < 400; i += 2 )
+            {
+                index.put( String.format( "key%04d", i ), new IndexEntry( i, 1 ) );
+                if( i < 300 )
+                    expected.add( String.format( "key%04d", i ) );
+            }
+            Collections.reverse( expected );
+            Iterator<Map.Entry<String, IndexEntry>> iterator = index.entryIterator( "key0300", false );
+            assertEquals( "key0300", iterator.next().getKey() );
+            // leaves preceding the position are split
+            for( int i = 1; i < 300; i += 2 )
+                index.put( String.format( "key%04d", i ), new IndexEntry( i, 1 ) );
+            List<String> keys = new ArrayList<>();
+            String previous = "key0300";
+            while( iterator.hasNext() )
+            {
+                String key = iterator.next().getKey();
+                assertTrue( key + " after " + previous, key.compareTo( previous ) < 0 );
+                previous = key;
+                // inserted keys are returned unless they got into the leaf which was already read
+                if( index.get( key ).from % 2 == 0 )
+                    keys.add( key );
+            }
+            assertEquals( expected, keys );
+            index.close();
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    /**
+     * The file is read by another instance while the writer evicts pages but is not flushed, as after the process crash.
+     */
+    @Test
+    public void testFileConsistentWithoutFlush() throws Exception
+    {
+        File file = File.createTempFile( "index", ".btree" );
+        file.delete();
+        try
+        {
+            BTreeIndex index = new BTreeIndex( file, "id", 256, 4 );
+            List<Integer> values = new ArrayList<>();
+            for( int i = 0; i < 2000; i++ )
+                values.add( i );
+            Collections.shuffle( values, new Random( 1 ) );
+            for( int i = 0; i < values.size(); i++ )
+            {
+                index.put( String.format( "key%04d", values.get( i ) ), new IndexEntry( values.get( i ), 1 ) );
+                BTreeIndex copy = new BTreeIndex( file, "id" );
+                String previous = "";
+                for( Map.Entry<String, IndexEntry> entry : copy.entrySet() )
+                {
+                    assertTrue( entry.getKey().compareTo( previous ) > 0 );
+                    assertEquals( entry.getKey(), String.format( "key%04d", entry.getValue().from ) );
+                    previous = entry.getKey();
+                }
+                copy.close();
+            }
+            index.close();
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+}
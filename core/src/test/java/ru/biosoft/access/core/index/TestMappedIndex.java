@@ -0,0 +1,82 @@
+package ru.biosoft.access.core.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import ru.biosoft.access.core.Index.IndexEntry;
+
+public class TestMappedIndex
+{
+    @Test
+    public void testReopenAndCompact() throws Exception
+    {
+        File file = File.createTempFile( "index", ".idx" );
+        file.delete();
+        try
+        {
+            MappedIndex index = new MappedIndex( file );
+            index.put( "b", new IndexEntry( 10, 5 ) );
+            index.put( "a", new IndexEntry( 0, 10 ) );
+            index.put( "c", new IndexEntry( 15, 1 ) );
+            index.close();
+
+            index = new MappedIndex( file );
+            assertEquals( 3, index.size() );
+            assertEquals( 10, index.get( "b" ).from );
+            index.compact();
+            index.remove( "b" );
+            index.put( "a", new IndexEntry( 20, 3 ) );
+            index.put( "d", new IndexEntry( 23, 4 ) );
+            index.close();
+
+            index = new MappedIndex( file );
+            assertNull( index.get( "b" ) );
+            assertEquals( 20, index.get( "a" ).from );
+            assertEquals( 4, index.get( "d" ).len );
+            List<String> keys = new ArrayList<>();
+            index.nodeIterator( null ).forEachRemaining( keys::add );
+            assertEquals( Arrays.asList( "a", "c", "d" ), keys );
+            index.close();
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testLogSizeIsBounded() throws Exception
+    {
+        File file = File.createTempFile( "index", ".idx" );
+        file.delete();
+        try
+        {
+            MappedIndex index = new MappedIndex( file );
+            // the log grows while it has the single key
+            for( int i = 0; i < 500000; i++ )
+                index.put( "a", new IndexEntry( i, 1 ) );
+            for( int i = 0; i < 1000 && file.length() > 8 << 20; i++ )
+                Thread.sleep( 10 );
+            assertTrue( "Log was not compacted: " + file.length(), file.length() <= 8 << 20 );
+            assertEquals( 499999, index.get( "a" ).from );
+            index.close();
+
+            index = new MappedIndex( file );
+            assertEquals( 1, index.size() );
+            assertEquals( 499999, index.get( "a" ).from );
+            index.close();
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+}
\ No newline at end of file
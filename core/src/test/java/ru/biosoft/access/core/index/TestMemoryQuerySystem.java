@@ -0,0 +1,114 @@
+package ru.biosoft.access.core.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Test;
+
+import ru.biosoft.access.core.DataCollection;
+import ru.biosoft.access.core.DataCollectionConfigConstants;
+import ru.biosoft.access.core.DataElement;
+import ru.biosoft.access.core.DataElementSupport;
+import ru.biosoft.access.core.QuerySystem;
+import ru.biosoft.access.core.VectorDataCollection;
+
+public class TestMemoryQuerySystem
+{
+    public static class Element extends DataElementSupport
+    {
+        private final int length;
+        private final String title;
+
+        public Element(String name, DataCollection<?> origin, int length, String title)
+        {
+            super( name, origin );
+            this.length = length;
+            this.title = title;
+        }
+
+        public int getLength()
+        {
+            return length;
+        }
+
+        public String getTitle()
+        {
+            return title;
+        }
+    }
+
+    @Test
+    public void testIncrementalUpdate() throws Exception
+    {
+        Properties properties = new Properties();
+        properties.setProperty( DataCollectionConfigConstants.NAME_PROPERTY, "test" );
+        properties.setProperty( QuerySystem.INDEX_LIST, "length:sorted" );
+        VectorDataCollection<DataElement> dc = new VectorDataCollection<>( null, properties );
+        dc.put( new Element( "a", dc, 3, "Gamma" ) );
+        dc.put( new Element( "b", dc, 1, null ) );
+        dc.put( new Element( "c", dc, 2, "Alpha" ) );
+
+        MemoryQuerySystem querySystem = new MemoryQuerySystem( dc );
+        MemoryIndex length = (MemoryIndex)querySystem.getIndex( "length" );
+        assertEquals( Arrays.asList( "b", "c", "a" ), length.getSortedNames() );
+        assertEquals( Arrays.asList( "c", "a" ), length.getNames( 2, null ) );
+        assertEquals( "Gamma", querySystem.getIndex( MemoryQuerySystem.TITLE_INDEX ).get( "a" ) );
+        // element name is used as title
+        assertEquals( "b", querySystem.getIndex( MemoryQuerySystem.TITLE_INDEX ).get( "b" ) );
+
+        dc.put( new Element( "a", dc, 0, "Gamma" ) );
+        dc.remove( "c" );
+        dc.put( new Element( "d", dc, 1, "Delta" ) );
+        assertEquals( Arrays.asList( "a", "b", "d" ), length.getSortedNames() );
+        assertEquals( Collections.emptySet(), length.getNames( 2 ) );
+        assertEquals( 3, length.size() );
+
+        querySystem.close();
+        assertFalse( length.isValid() );
+    }
+
+    @Test
+    public void testMixedValueOrder()
+    {
+        List<Object> values = new ArrayList<>( Arrays.asList( "b", 2, true, 1.5, "a", 2L, false ) );
+        Collections.sort( values, MemoryIndex.VALUE_ORDER );
+        assertEquals( Arrays.asList( 1.5, 2, 2L, false, true, "a", "b" ), values );
+        for( Object v1 : values )
+        {
+            for( Object v2 : values )
+                assertEquals( Integer.signum( MemoryIndex.VALUE_ORDER.compare( v1, v2 ) ), -Integer.signum( MemoryIndex.VALUE_ORDER.compare( v2, v1 ) ) );
+        }
+    }
+
+    @Test
+    public void testElementsReadWithoutLock() throws Exception
+    {
+        Properties properties = new Properties();
+        properties.setProperty( DataCollectionConfigConstants.NAME_PROPERTY, "test" );
+        MemoryQuerySystem[] querySystem = new MemoryQuerySystem[1];
+        List<String> lockedReads = new ArrayList<>();
+        VectorDataCollection<DataElement> dc = new VectorDataCollection<DataElement>( null, properties )
+        {
+            @Override
+            public DataElement get(String name)
+            {
+                if( Thread.holdsLock( querySystem[0] ) )
+                    lockedReads.add( name );
+                return super.get( name );
+            }
+        };
+        dc.put( new Element( "a", dc, 1, "Beta" ) );
+        dc.put( new Element( "b", dc, 2, "Alpha" ) );
+        querySystem[0] = new MemoryQuerySystem( dc );
+        assertEquals( "Alpha", querySystem[0].getIndex( MemoryQuerySystem.TITLE_INDEX ).get( "b" ) );
+        dc.put( new Element( "a", dc, 1, "Gamma" ) );
+        assertEquals( "Gamma", querySystem[0].getIndex( MemoryQuerySystem.TITLE_INDEX ).get( "a" ) );
+        assertEquals( Collections.emptyList(), lockedReads );
+    }
+}
\ No newline at end of file
@@ -16,6 +16,7 @@ import ru.biosoft.access.core.DataCollectionHelper;
 import ru.biosoft.access.core.DataElement;
 import ru.biosoft.access.core.DataElementSupport;
 import ru.biosoft.access.core.Environment;
+import ru.biosoft.access.core.cache.WeightEstimators;
 import ru.biosoft.util.TextUtil;
 
 /**
@@ -26,6 +27,13 @@ import ru.biosoft.util.TextUtil;
 @ClassIcon("resources/leaf.gif")
 public class FileDataElement extends DataElementSupport implements CloneableDataElement
 {
+    static
+    {
+        // only the file metadata is kept in memory, content is read from the file on demand
+        WeightEstimators.register( FileDataElement.class,
+                de -> WeightEstimators.ELEMENT_OVERHEAD + 2L * de.getFile().getPath().length() );
+    }
+
     /** File stored in this FileDataElement */
     protected File file;
 
@@ -7,6 +7,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.WatchKey;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
@@ -27,6 +29,7 @@ import ru.biosoft.access.core.DataCollectionConfigConstants;
 import ru.biosoft.access.core.DataCollectionInfo;
 import ru.biosoft.access.core.DataElement;
 import ru.biosoft.access.core.DataElementDescriptor;
+import ru.biosoft.access.core.DataElementPartialPutException;
 import ru.biosoft.access.core.DataElementPutException;
 import ru.biosoft.access.core.Environment;
 import ru.biosoft.access.core.FolderCollection;
@@ -55,6 +58,8 @@ public class GenericFileDataCollection extends AbstractDataCollection<DataElemen
 
     private final Set<String> skipUpdate = ConcurrentHashMap.newKeySet();
     private final Object lock = new Object();
+    //file infos collected during bulk put, accessed only by the thread holding the lock
+    private List<Map<String, Object>> pendingFileInfos;
 
 	
 	//Constructor used by biouml framework
@@ -112,19 +117,27 @@ public class GenericFileDataCollection extends AbstractDataCollection<DataElemen
     public synchronized void reInitChanged(ChangedInfo changed) throws IOException
     {
         Set<String> toReinit = new HashSet<>( changed.added );
+        Set<String> removed = new HashSet<>();
         for ( String deleted : changed.deleted )
         {
+            if( skipUpdate.contains( deleted ) )
+                continue;
             v_cache.remove( deleted );
             descriptors.remove( deleted );
-            nameList.remove( deleted );
+            removed.add( deleted );
         }
         for ( String modified : changed.modified )
         {
+            //elements which are being stored by this collection are updated by it
+            if( skipUpdate.contains( modified ) )
+                continue;
             v_cache.remove( modified );
             descriptors.remove( modified );
-            nameList.remove( modified );
+            removed.add( modified );
             toReinit.add( modified );
         }
+        if( !removed.isEmpty() )
+            nameList.removeAll( removed );
         toReinit.removeAll( skipUpdate );
         if( toReinit.isEmpty() )
             return;
@@ -253,6 +266,37 @@ public class GenericFileDataCollection extends AbstractDataCollection<DataElemen
 		removeFromCache(name);
 		fireElementRemoved(GenericFileDataCollection.this, name, oldFromCache);
 	}
+
+    //called when files were added or modified by bulk put, events are fired by putAll
+    private synchronized void filesUpdated(List<File> files)
+    {
+        List<String> added = new ArrayList<>();
+        for( File file : files )
+        {
+            String name = file.getName();
+            if( descriptors.put( name, createDescriptor( file ) ) == null )
+                added.add( name );
+            else
+                removeFromCache( name );
+        }
+        if( added.isEmpty() )
+            return;
+        List<String> names = new ArrayList<>( nameList );
+        names.addAll( added );
+        sortNameList( names );
+        nameList = new CopyOnWriteArrayList<>( names );
+    }
+
+    //called when files were removed by bulk remove, events are fired by removeAll
+    private synchronized void filesRemoved(List<String> names)
+    {
+        for( String name : names )
+        {
+            descriptors.remove( name );
+            removeFromCache( name );
+        }
+        nameList.removeAll( new HashSet<>( names ) );
+    }
 	
 
 	@Override
@@ -280,8 +324,13 @@ public class GenericFileDataCollection extends AbstractDataCollection<DataElemen
 	}
 	
 	@Override
-	public synchronized DataElement get(String name) throws Exception {
-		return super.get(name);
+	protected boolean isKnownMissing(String name) {
+		return !descriptors.containsKey(name);
+	}
+	
+	@Override
+	public boolean contains(String name) {
+		return isValid() && descriptors.containsKey(name);
 	}
 	
 	@Override
@@ -295,8 +344,8 @@ public class GenericFileDataCollection extends AbstractDataCollection<DataElemen
 	}
 	
 	@Override
-	public synchronized DataElement put(DataElement element) throws DataElementPutException {
-		DataElement old = super.put(element);
+	protected synchronized DataElement putElement(DataElement element, boolean returnPrevious) throws DataElementPutException {
+		DataElement old = super.putElement(element, returnPrevious);
 		removeFromCache(element.getName());//AbstractDataCollection will put element into cache, but FileDataCollection wants to recreate it from file resulting in possibly distinct element
 		return old;
 	}
@@ -307,53 +356,126 @@ public class GenericFileDataCollection extends AbstractDataCollection<DataElemen
         //doPut may conflict with FileSystemWatcher and with YampProvider watcher, element is added to skipUPdate map to avoid update by watchers
         synchronized (lock)
         {
-            File file = null;
             skipUpdate.add( dataElement.getName() );
-            if( dataElement.getClass().equals( FileDataElement.class ) )
-            {
-                FileDataElement fde = (FileDataElement) dataElement;
-                File existing = fde.getFile();
-                file = getChildFile( dataElement.getName() );
+            File file = storeElement( dataElement );
+            fileUpdated( file );
+            skipUpdate.remove( dataElement.getName() );
+        }
+    }
 
-                if( !file.equals( existing ) )
+    /**
+     * Stores all elements holding the lock once. Element properties are written to the info provider by single call,
+     * name list is sorted once and no events are fired here: {@link #putAll(Collection)} fires single batch event.
+     */
+    @Override
+    protected void doPutAll(List<DataElement> elements, Set<String> newNames) throws Exception
+    {
+        synchronized (lock)
+        {
+            List<String> names = new ArrayList<>();
+            for( DataElement dataElement : elements )
+                names.add( dataElement.getName() );
+            skipUpdate.addAll( names );
+            List<File> files = new ArrayList<>();
+            pendingFileInfos = new ArrayList<>();
+            List<String> stored = new ArrayList<>();
+            try
+            {
+                for( DataElement dataElement : elements )
                 {
-                    try
-                    {
-                        Files.createLink( file.toPath(), existing.toPath() );
-                    }
-                    catch (IOException e)
-                    {
-                        Files.copy( existing.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING );
-                    }
+                    files.add( storeElement( dataElement ) );
+                    stored.add( dataElement.getName() );
                 }
             }
-            else if( dataElement instanceof GenericFileDataCollection )
+            catch( Exception e )
             {
-                GenericFileDataCollection fdc = (GenericFileDataCollection) dataElement;
-                file = fdc.rootFolder;
-                storeElementProperties( fdc, null );
+                //stored files are added to the name list below, putAll should notify listeners about them
+                if( stored.isEmpty() )
+                    throw e;
+                throw new DataElementPartialPutException( e, getCompletePath().getChildPath( elements.get( stored.size() ).getName() ), stored );
             }
-            else
+            finally
             {
-                ru.biosoft.access.file.v1.Environment ENV = ru.biosoft.access.file.v1.Environment.INSTANCE;
-                Transformer t = ENV.getTransformerForDataElement( dataElement );
-                if( t == null )
-                    throw new UnsupportedOperationException( "Can not save element of type " + dataElement.getClass() );
-                t.init( this, this );
-                FileDataElement fde = (FileDataElement) t.transformOutput( dataElement ); // Transformer will put file into folder
-                Properties properties = null;
-                if( dataElement instanceof PropertiesHolder )
-                    properties = ((PropertiesHolder) dataElement).getProperties();
-                else if( dataElement instanceof DataCollection )
-                    properties = ((DataCollection) dataElement).getInfo().getProperties();
-                storeElementProperties( fde, t.getClass(), properties );
-                file = fde.getFile();
+                List<Map<String, Object>> fileInfos = pendingFileInfos;
+                pendingFileInfos = null;
+                try
+                {
+                    if( !fileInfos.isEmpty() )
+                        infoProvider.setFileInfos( fileInfos );
+                }
+                finally
+                {
+                    filesUpdated( files );
+                    skipUpdate.removeAll( names );
+                }
             }
-            fileUpdated( file );
-            skipUpdate.remove( dataElement.getName() );
         }
     }
 
+    @Override
+    public synchronized void putAll(Collection<? extends DataElement> elements) throws DataElementPutException
+    {
+        try
+        {
+            super.putAll( elements );
+        }
+        finally
+        {
+            for( DataElement element : elements )
+                removeFromCache( element.getName() );
+        }
+    }
+
+    /**
+     * Writes the element into the folder.
+     * @return file corresponding to the element
+     */
+    private File storeElement(DataElement dataElement) throws Exception
+    {
+        File file = null;
+        if( dataElement.getClass().equals( FileDataElement.class ) )
+        {
+            FileDataElement fde = (FileDataElement) dataElement;
+            File existing = fde.getFile();
+            file = getChildFile( dataElement.getName() );
+
+            if( !file.equals( existing ) )
+            {
+                try
+                {
+                    Files.createLink( file.toPath(), existing.toPath() );
+                }
+                catch (IOException e)
+                {
+                    Files.copy( existing.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+                }
+            }
+        }
+        else if( dataElement instanceof GenericFileDataCollection )
+        {
+            GenericFileDataCollection fdc = (GenericFileDataCollection) dataElement;
+            file = fdc.rootFolder;
+            storeElementProperties( fdc, null );
+        }
+        else
+        {
+            ru.biosoft.access.file.v1.Environment ENV = ru.biosoft.access.file.v1.Environment.INSTANCE;
+            Transformer t = ENV.getTransformerForDataElement( dataElement );
+            if( t == null )
+                throw new UnsupportedOperationException( "Can not save element of type " + dataElement.getClass() );
+            t.init( this, this );
+            FileDataElement fde = (FileDataElement) t.transformOutput( dataElement ); // Transformer will put file into folder
+            Properties properties = null;
+            if( dataElement instanceof PropertiesHolder )
+                properties = ((PropertiesHolder) dataElement).getProperties();
+            else if( dataElement instanceof DataCollection )
+                properties = ((DataCollection) dataElement).getInfo().getProperties();
+            storeElementProperties( fde, t.getClass(), properties );
+            file = fde.getFile();
+        }
+        return file;
+    }
+
     public void storeElementProperties(DataElement de, Class<?> transformerClass) throws Exception
     {
         storeElementProperties(de, transformerClass, de instanceof DataCollection ? ((DataCollection) de).getInfo().getProperties() : null);
@@ -394,13 +516,49 @@ public class GenericFileDataCollection extends AbstractDataCollection<DataElemen
 	@Override
     protected void doRemove(String name) throws Exception
     {
-        DataElement oldElement = null;
+        deleteFiles( name );
+        fileRemoved( name );
+    }
+
+    /**
+     * Deletes files of all elements and updates the name list once, events are fired by {@link #removeAll(Collection)}.
+     */
+    @Override
+    protected void doRemoveAll(List<String> names) throws Exception
+    {
+        List<String> removed = new ArrayList<>();
         try
         {
-            oldElement = doGet(name);
+            for( String name : names )
+            {
+                deleteFiles( name );
+                removed.add( name );
+            }
         }
-        catch (Exception e)
+        finally
         {
+            filesRemoved( removed );
+        }
+    }
+
+    private void deleteFiles(String name) throws Exception
+    {
+        // old element is needed only to delete files used by collection
+        DataElement oldElement = null;
+        DataElementDescriptor descriptor = descriptors.get(name);
+        if( descriptor != null && DataCollection.class.isAssignableFrom(descriptor.getType()) )
+        {
+            oldElement = getFromCache(name);
+            if( oldElement == null )
+            {
+                try
+                {
+                    oldElement = doGet(name);
+                }
+                catch (Exception e)
+                {
+                }
+            }
         }
         File file = new File(rootFolder, name);
         if ( file.isDirectory() )
@@ -426,7 +584,6 @@ public class GenericFileDataCollection extends AbstractDataCollection<DataElemen
                     }
                 }
         }
-    	fileRemoved(name);
     }
     
     @Override
@@ -434,6 +591,22 @@ public class GenericFileDataCollection extends AbstractDataCollection<DataElemen
     {
        return descriptors.get(name);
     }
+
+    /**
+     * If size is not specified in the element properties, size of the file is used.
+     */
+    @Override
+    protected long getElementSize(String name)
+    {
+        long size = super.getElementSize( name );
+        if( size < 0 )
+        {
+            DataElementDescriptor descriptor = descriptors.get( name );
+            if( descriptor != null && descriptor.isLeaf() )
+                size = getFile( name ).length();
+        }
+        return size;
+    }
     
     @Override
     public boolean isAcceptable(Class<? extends DataElement> clazz) {
@@ -622,6 +795,11 @@ public class GenericFileDataCollection extends AbstractDataCollection<DataElemen
 	
 	public void setFileInfo(Map<String, Object> properties) throws Exception
 	{
+        if( Thread.holdsLock( lock ) && pendingFileInfos != null )
+        {
+            pendingFileInfos.add( properties );
+            return;
+        }
 		infoProvider.setFileInfo(properties);
 	}
 
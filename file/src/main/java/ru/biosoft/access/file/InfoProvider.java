@@ -1,5 +1,6 @@
 package ru.biosoft.access.file;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -20,6 +21,15 @@ public interface InfoProvider
     public Map<String, Object> getFileInfo(String fileName);
     
     public void setFileInfo(Map<String, Object> fileInfo) throws Exception;
+
+    /**
+     * Sets properties for several files at once, so persistent provider can store them by single write.
+     */
+    default void setFileInfos(Collection<Map<String, Object>> fileInfos) throws Exception
+    {
+        for( Map<String, Object> fileInfo : fileInfos )
+            setFileInfo( fileInfo );
+    }
     
     /**
      * Returns list of names for data collections that do not correspond files.
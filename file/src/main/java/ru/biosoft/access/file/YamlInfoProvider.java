@@ -10,6 +10,7 @@ import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.WatchKey;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -77,6 +78,20 @@ public class YamlInfoProvider extends MemoryInfoProvider
         fireInfoChanged( changed );
 	}
 
+    @Override
+    public synchronized void setFileInfos(Collection<Map<String, Object>> fileInfos) throws Exception
+    {
+        ChangedInfo changed = new ChangedInfo();
+        changed.allchanged = false;
+        for( Map<String, Object> fileInfo : fileInfos )
+        {
+            changed.modified.add( (String) fileInfo.get( "name" ) );
+            super.setFileInfo( fileInfo );
+        }
+        writeYaml();
+        fireInfoChanged( changed );
+    }
+
     @Override
     public void setFileFilter(List<String> filter) throws Exception
     {
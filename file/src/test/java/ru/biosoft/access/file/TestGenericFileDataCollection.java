@@ -5,6 +5,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
@@ -12,14 +13,21 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
 import org.apache.commons.io.FileUtils;
 import org.junit.Test;
 
+import ru.biosoft.access.core.DataCollectionBatchEvent;
 import ru.biosoft.access.core.DataCollectionConfigConstants;
+import ru.biosoft.access.core.DataCollectionEvent;
+import ru.biosoft.access.core.DataCollectionListener;
 import ru.biosoft.access.core.DataElement;
+import ru.biosoft.access.core.DataElementPartialPutException;
 import ru.biosoft.access.core.Environment;
 import ru.biosoft.access.core.TextDataElement;
 
@@ -126,6 +134,98 @@ public class TestGenericFileDataCollection
         dc.close();
     }
 
+    //Add and remove several elements at once, listeners should receive single batch event per operation
+    @Test
+    public void testPutAllRemoveAll() throws Exception
+    {
+        GenericFileDataCollection dc = getCleanCollection();
+        List<DataCollectionBatchEvent> events = collectBatchEvents( dc );
+        File file = new File( "src/test/resources/ExtraFiles/file4.txt" );
+        List<DataElement> elements = new ArrayList<>();
+        for( String name : Arrays.asList( "fileA.txt", "fileB.txt", "file2.txt" ) )
+            elements.add( new FileDataElement( name, dc, file ) );
+        dc.putAll( elements );
+        assertEquals( "Wrong number of elements", 5, dc.getSize() );
+        assertEquals( Arrays.asList( "file1.txt", "file2.txt", "file3", "fileA.txt", "fileB.txt" ), dc.getNameList() );
+        assertEquals( 1, events.size() );
+        assertEquals( Arrays.asList( "fileA.txt", "fileB.txt" ), events.get( 0 ).getAddedNames() );
+        assertEquals( Arrays.asList( "file2.txt" ), events.get( 0 ).getChangedNames() );
+
+        dc.removeAll( Arrays.asList( "fileA.txt", "file1.txt", "missing.txt" ) );
+        assertEquals( "Wrong number of elements", 3, dc.getSize() );
+        assertFalse( dc.contains( "fileA.txt" ) );
+        assertFalse( new File( "src/test/resources/GenericFDC/file1.txt" ).exists() );
+        assertEquals( 2, events.size() );
+        assertEquals( Arrays.asList( "fileA.txt", "file1.txt" ), events.get( 1 ).getRemovedNames() );
+        dc.close();
+    }
+
+    //Put several elements when one of them cannot be stored, listeners should receive batch event for the stored ones
+    @Test
+    public void testPutAllFailure() throws Exception
+    {
+        GenericFileDataCollection dc = getCleanCollection();
+        List<DataCollectionBatchEvent> events = collectBatchEvents( dc );
+        File file = new File( "src/test/resources/ExtraFiles/file4.txt" );
+        List<DataElement> elements = new ArrayList<>();
+        elements.add( new FileDataElement( "fileA.txt", dc, file ) );
+        elements.add( new FileDataElement( "file2.txt", dc, file ) );
+        elements.add( new FileDataElement( "fileB.txt", dc, new File( "src/test/resources/ExtraFiles/missing.txt" ) ) );
+        elements.add( new FileDataElement( "fileC.txt", dc, file ) );
+        try
+        {
+            dc.putAll( elements );
+            fail( "Put of missing file should fail" );
+        }
+        catch( DataElementPartialPutException e )
+        {
+            assertEquals( Arrays.asList( "fileA.txt", "file2.txt" ), e.getStoredNames() );
+        }
+        assertEquals( Arrays.asList( "file1.txt", "file2.txt", "file3", "fileA.txt" ), dc.getNameList() );
+        assertEquals( 1, events.size() );
+        assertEquals( Arrays.asList( "fileA.txt" ), events.get( 0 ).getAddedNames() );
+        assertEquals( Arrays.asList( "file2.txt" ), events.get( 0 ).getChangedNames() );
+        dc.close();
+    }
+
+    private static List<DataCollectionBatchEvent> collectBatchEvents(GenericFileDataCollection dc)
+    {
+        List<DataCollectionBatchEvent> events = new ArrayList<>();
+        dc.addDataCollectionListener( new DataCollectionListener()
+        {
+            @Override
+            public void elementsChanged(DataCollectionBatchEvent e)
+            {
+                events.add( e );
+            }
+            @Override
+            public void elementAdded(DataCollectionEvent e)
+            {
+            }
+            @Override
+            public void elementWillAdd(DataCollectionEvent e)
+            {
+            }
+            @Override
+            public void elementChanged(DataCollectionEvent e)
+            {
+            }
+            @Override
+            public void elementWillChange(DataCollectionEvent e)
+            {
+            }
+            @Override
+            public void elementRemoved(DataCollectionEvent e)
+            {
+            }
+            @Override
+            public void elementWillRemove(DataCollectionEvent e)
+            {
+            }
+        } );
+        return events;
+    }
+
     private GenericFileDataCollection getCleanCollection() throws IOException
     {
         Path pathInStorage = Paths.get( "src/test/resources/GenericFDCOriginal" );